@@ -1,31 +1,77 @@
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-
-import index.InvertedIndex;
-import index.Trie;
-import model.Product;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+
+import algorithm.SubstringMatcher;
+import model.BulkResult;
+import model.FacetCounts;
+import model.SearchCursor;
+import model.SearchRequest;
+import model.SearchResponse;
 import model.SearchResult;
 import service.*;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 // Основное приложение для запуска поискового движка
 
 public class ProductSearchEngineApp {
-    private SmartSearchEngine smartSearchEngine;
+    // Текущий движок; полная переиндексация подменяет его атомарно
+    private final AtomicReference<EngineHandle> currentEngine = new AtomicReference<>();
+    private final ReindexJob reindexJob;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final int DEFAULT_PORT = 8080;
-    private static final String PRODUCTS_FILE = "products.json";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final String FORMAT_NDJSON = "ndjson";
+    // Включает подстрочный индекс на суффиксном массиве: -Dsearch.suffixArray=true
+    private static final boolean SUFFIX_ARRAY_ENABLED = Boolean.getBoolean("search.suffixArray");
+    // Путь к файлу каталога вместо встроенного products.json: -Dsearch.catalog=/data/products.json.gz
+    private static final String CATALOG_PATH = System.getProperty("search.catalog");
+    // Период проверки файла каталога на изменения; 0 отключает перезагрузку
+    private static final long RELOAD_INTERVAL_MILLIS = Long.getLong("search.reloadIntervalMs", 5000);
+    // Потоки индексации при переиндексации на работающем сервере: часть ядер остается для запросов
+    private static final int REINDEX_THREADS = Integer.getInteger("search.reindexThreads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    // Пакетная загрузка: размер пакета, время его набора и емкость очереди операций
+    private static final int BULK_BATCH_SIZE = Integer.getInteger("search.bulkBatchSize", 1000);
+    private static final long BULK_MAX_DELAY_MILLIS = Long.getLong("search.bulkMaxDelayMs", 50);
+    private static final int BULK_QUEUE_CAPACITY = Integer.getInteger("search.bulkQueueCapacity", 10_000);
+    // Сколько операция ждет места в очереди, прежде чем будет отклонена
+    private static final long BULK_QUEUE_TIMEOUT_MILLIS = 30_000;
+    private final BulkIngestor bulkIngestor;
+    // Каталог журнала изменений: с ним подтвержденные операции пакетной загрузки переживают перезапуск
+    private static final String WAL_DIR = System.getProperty("search.walDir");
+    // Объем журнала, после которого пишется контрольная точка; ограничивает время восстановления
+    private static final long WAL_CHECKPOINT_BYTES = Long.getLong("search.walCheckpointBytes", 64L * 1024 * 1024);
+    private WriteAheadLog wal;
+    // Потоки обработки HTTP-запросов: пакетная загрузка может подолгу ждать места в очереди,
+    // и остальные запросы обслуживаются другими потоками
+    private static final int HTTP_THREADS = Integer.getInteger("search.httpThreads",
+            Math.max(8, 2 * Runtime.getRuntime().availableProcessors()));
     private final int port;
 
     public ProductSearchEngineApp() {
@@ -35,34 +81,49 @@ public class ProductSearchEngineApp {
     public ProductSearchEngineApp(int port) {
         this.port = port;
         initializeSystem();
+        this.reindexJob = new ReindexJob(currentEngine, () -> new SearchEngineBuilder(CATALOG_PATH, REINDEX_THREADS,
+                SUFFIX_ARRAY_ENABLED, RELOAD_INTERVAL_MILLIS, wal), wal);
+        this.bulkIngestor = new BulkIngestor(this::acquireEngine, BULK_BATCH_SIZE, BULK_MAX_DELAY_MILLIS,
+                BULK_QUEUE_CAPACITY, wal);
     }
 
     private void initializeSystem() {
         System.out.println("Initializing Web Search Engine...");
-        
-        // Инициализация компонентов
-        InvertedIndex invertedIndex = new InvertedIndex();
-        Trie trie = new Trie();
-        DataManager dataManager = new DataManager();
-        Indexer indexer = new Indexer(invertedIndex, trie);
-        
-        // Загрузка продуктов из JSON
-        List<Product> products = ProductLoader.loadProductsFromJson(PRODUCTS_FILE);
-        System.out.println("Loaded " + products.size() + " products from JSON");
-        
-        // Добавление продуктов в менеджер данных
-        for (Product product : products) {
-            dataManager.addProduct(product);
+
+        if (Boolean.getBoolean("search.simd")) {
+            System.out.println(SubstringMatcher.isVectorized()
+                    ? "SIMD substring search enabled (jdk.incubator.vector)"
+                    : "SIMD requested but jdk.incubator.vector is not available, using scalar Boyer-Moore");
         }
-        
-        // Индексация данных
-        indexer.indexProducts(dataManager.getAllProducts().values());
-        
-        // Инициализация smart search engine
-        smartSearchEngine = new SmartSearchEngine(invertedIndex, trie, dataManager);
-        
+
+        EngineHandle engine;
+        try {
+            if (WAL_DIR != null) {
+                wal = WriteAheadLog.open(Path.of(WAL_DIR), WAL_CHECKPOINT_BYTES);
+                System.out.println("Write-ahead log in " + WAL_DIR + ", last LSN " + wal.getLastLsn()
+                        + ", checkpoint LSN " + wal.getCheckpointLsn());
+            }
+            engine = new SearchEngineBuilder(CATALOG_PATH, Indexer.DEFAULT_THREADS, SUFFIX_ARRAY_ENABLED,
+                    RELOAD_INTERVAL_MILLIS, wal).build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading catalog: " + e.getMessage(), e);
+        }
+        currentEngine.set(engine);
+
         System.out.println("Web Search Engine initialized successfully!");
-        System.out.println("Indexed " + dataManager.getAllProducts().size() + " products");
+        System.out.println("Indexed " + engine.getDataManager().getDocumentCount() + " products, "
+                + engine.getDataManager().getTextColumnBytes() / 1024 + " KB of text columns");
+    }
+
+    // Ссылка на текущий движок на время обработки запроса; закрывается по завершении
+    private EngineHandle acquireEngine() {
+        while (true) {
+            EngineHandle engine = currentEngine.get();
+            if (engine.tryAcquire()) {
+                return engine;
+            }
+            // Движок отпущен между чтением ссылки и захватом: ссылка уже указывает на новый
+        }
     }
 
     public void start() throws IOException {
@@ -74,10 +135,25 @@ public class ProductSearchEngineApp {
         // API endpoint для поиска
         server.createContext("/api/search", new SearchHandler());
         
+        // API endpoint для пакетного поиска
+        server.createContext("/api/search/batch", new BatchSearchHandler());
+        
+        // API endpoint для трассировки выполнения запроса
+        server.createContext("/api/search/explain", new ExplainHandler());
+        
         // API endpoint для автодополнения
         server.createContext("/api/autocomplete", new AutocompleteHandler());
         
-        server.setExecutor(null);
+        // API endpoint для полной переиндексации без простоя
+        server.createContext("/api/admin/reindex", new ReindexHandler());
+        
+        // API endpoint для пакетной загрузки изменений каталога
+        server.createContext("/api/products/bulk", new BulkHandler());
+        bulkIngestor.start();
+        
+        AtomicInteger httpThreads = new AtomicInteger();
+        server.setExecutor(Executors.newFixedThreadPool(HTTP_THREADS,
+                task -> new Thread(task, "http-" + httpThreads.incrementAndGet())));
         server.start();
         
         System.out.println("Web server started at http://localhost:" + port);
@@ -121,7 +197,10 @@ public class ProductSearchEngineApp {
                 }
             }
 
-            List<String> suggestions = smartSearchEngine.getSearchSuggestions(query);
+            List<String> suggestions;
+            try (EngineHandle engine = acquireEngine()) {
+                suggestions = engine.getEngine().getSearchSuggestions(query);
+            }
             
             // Преобразование предложений в JSON
             String jsonResponse = objectMapper.writeValueAsString(suggestions);
@@ -149,26 +228,332 @@ public class ProductSearchEngineApp {
                 return;
             }
 
-            String query = "";
-            if ("GET".equals(exchange.getRequestMethod())) {
-                String queryString = exchange.getRequestURI().getQuery();
-                if (queryString != null) {
-                    Map<String, String> params = parseQuery(queryString);
-                    query = params.getOrDefault("q", "");
+            Map<String, String> params = new HashMap<>();
+            if ("GET".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getQuery() != null) {
+                params = parseQuery(exchange.getRequestURI().getQuery());
+            }
+
+            String format = params.get("format");
+            SearchRequest request;
+            try {
+                request = toSearchRequest(params);
+                if (format != null && !FORMAT_NDJSON.equals(format)) {
+                    throw new IllegalArgumentException("Unsupported format: " + format);
                 }
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
             }
 
-            List<SearchResult> results = smartSearchEngine.smartSearch(query);
+            // Движок удерживается до сериализации: результаты с выбранными полями читают его хранилище
+            SearchResponse response;
+            byte[] jsonResponse;
+            try (EngineHandle engine = acquireEngine()) {
+                if (FORMAT_NDJSON.equals(format)) {
+                    streamSearch(exchange, engine.getEngine(), request);
+                    return;
+                }
+
+                try {
+                    response = engine.getEngine().search(request);
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
+                }
+
+                // Преобразование результатов в JSON сразу в байты; с фасетами ответ — объект, иначе — массив результатов
+                jsonResponse = request.isFacets()
+                        ? objectMapper.writeValueAsBytes(response)
+                        : objectMapper.writeValueAsBytes(response.getResults());
+            }
+            
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            setPageHeaders(exchange, response.isPartial(), response.getNextCursor());
+            exchange.sendResponseHeaders(200, jsonResponse.length);
             
-            // Преобразование результатов в JSON
-            String jsonResponse = objectMapper.writeValueAsString(results);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(jsonResponse);
+            }
+        }
+
+        // NDJSON с chunked-передачей: каждый результат — отдельная строка, отправляемая сразу после создания
+        private void streamSearch(HttpExchange exchange, SmartSearchEngine engine, SearchRequest request)
+                throws IOException {
+            NdjsonSink sink = new NdjsonSink(exchange);
+            try {
+                engine.search(request, sink);
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            sink.finish();
+        }
+
+        private class NdjsonSink implements SearchResultSink {
+            private final HttpExchange exchange;
+            private JsonGenerator generator;
+
+            NdjsonSink(HttpExchange exchange) {
+                this.exchange = exchange;
+            }
+
+            @Override
+            public void start(boolean partial, SearchCursor nextCursor) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=UTF-8");
+                setPageHeaders(exchange, partial, nextCursor);
+                exchange.sendResponseHeaders(200, 0);
+                generator = objectMapper.getFactory().createGenerator(exchange.getResponseBody(), JsonEncoding.UTF8);
+                generator.setRootValueSeparator(null);
+            }
+
+            // Фасеты — первой строкой, до результатов
+            @Override
+            public void facets(FacetCounts facets) throws IOException {
+                generator.writeObject(Map.of("facets", facets));
+                generator.writeRaw('\n');
+                generator.flush();
+            }
+
+            @Override
+            public void accept(SearchResult result) throws IOException {
+                generator.writeObject(result);
+                generator.writeRaw('\n');
+                generator.flush();
+            }
+
+            void finish() throws IOException {
+                generator.close(); // закрывает и тело ответа, завершая chunked-передачу
+            }
+        }
+
+        private void setPageHeaders(HttpExchange exchange, boolean partial, SearchCursor nextCursor) {
+            // Часть стратегий не уложилась в бюджет времени
+            exchange.getResponseHeaders().set("X-Search-Partial", String.valueOf(partial));
+            // Курсор следующей страницы; отсутствует на последней странице
+            if (nextCursor != null) {
+                exchange.getResponseHeaders().set("X-Next-Cursor", nextCursor.encode());
+            }
+            exchange.getResponseHeaders().set("Access-Control-Expose-Headers", "X-Search-Partial, X-Next-Cursor");
+        }
+    }
+
+    class ExplainHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            // Включение CORS
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, OPTIONS");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type");
+            
+            if ("OPTIONS".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, 0);
+                exchange.getResponseBody().close();
+                return;
+            }
+
+            Map<String, String> params = new HashMap<>();
+            if ("GET".equals(exchange.getRequestMethod()) && exchange.getRequestURI().getQuery() != null) {
+                params = parseQuery(exchange.getRequestURI().getQuery());
+            }
+
+            byte[] jsonResponse;
+            try (EngineHandle engine = acquireEngine()) {
+                SearchExplanation explanation = engine.getEngine().explain(toSearchRequest(params));
+                // Результаты, курсор и профиль выполнения в одном JSON-объекте
+                jsonResponse = objectMapper.writeValueAsBytes(explanation);
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
             
             exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
-            exchange.sendResponseHeaders(200, jsonResponse.getBytes(StandardCharsets.UTF_8).length);
+            exchange.sendResponseHeaders(200, jsonResponse.length);
             
             try (OutputStream os = exchange.getResponseBody()) {
-                os.write(jsonResponse.getBytes(StandardCharsets.UTF_8));
+                os.write(jsonResponse);
+            }
+        }
+    }
+
+    class BatchSearchHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            // Включение CORS
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "POST, OPTIONS");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type");
+            
+            if ("OPTIONS".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, 0);
+                exchange.getResponseBody().close();
+                return;
             }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST, OPTIONS");
+                sendError(exchange, 405, "Use POST with a JSON array of queries");
+                return;
+            }
+
+            byte[] jsonResponse;
+            try (EngineHandle engine = acquireEngine()) {
+                List<SearchRequest> requests = objectMapper.readValue(exchange.getRequestBody(),
+                        new TypeReference<List<SearchRequest>>() {});
+                if (requests == null) {
+                    sendError(exchange, 400, "Batch must be a JSON array of queries");
+                    return;
+                }
+                List<SearchResponse> responses = engine.getEngine().searchBatch(requests);
+                // Один JSON-массив ответов в порядке запросов
+                jsonResponse = objectMapper.writeValueAsBytes(responses);
+            } catch (UnrecognizedPropertyException e) {
+                // Опечатка в имени параметра не должна превращаться в пустой успешный ответ
+                sendError(exchange, 400, "Query " + e.getPath().get(0).getIndex() + ": unknown field \""
+                        + e.getPropertyName() + "\", expected one of " + e.getKnownPropertyIds());
+                return;
+            } catch (JsonProcessingException e) {
+                sendError(exchange, 400, "Malformed batch: " + e.getOriginalMessage());
+                return;
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            } catch (IllegalStateException e) {
+                // Сбой стратегии или прерванный пакет: клиент получает ответ, а не ждет таймаута сокета
+                System.err.println(e.getMessage() + (e.getCause() != null ? ": " + e.getCause() : ""));
+                sendError(exchange, 500, e.getMessage());
+                return;
+            }
+            
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(200, jsonResponse.length);
+            
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(jsonResponse);
+            }
+        }
+    }
+
+    // POST запускает полную переиндексацию в фоне (202), GET возвращает ее состояние
+    class ReindexHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            ReindexStatus status;
+            int code;
+            if ("POST".equals(exchange.getRequestMethod())) {
+                try {
+                    status = reindexJob.start();
+                    code = 202;
+                } catch (IllegalStateException e) {
+                    sendError(exchange, 409, e.getMessage());
+                    return;
+                }
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                status = reindexJob.getStatus();
+                code = 200;
+            } else {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                sendError(exchange, 405, "Use POST to start a reindex or GET to read its status");
+                return;
+            }
+
+            byte[] jsonResponse = objectMapper.writeValueAsBytes(status);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(code, jsonResponse.length);
+            
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(jsonResponse);
+            }
+        }
+    }
+
+    // NDJSON-поток операций add/update/delete: строки разбираются по мере чтения тела и ставятся в очередь
+    // пакетной загрузки; ответ — итог каждой операции после применения ее пакета
+    class BulkHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendError(exchange, 405, "Use POST with NDJSON operations");
+                return;
+            }
+
+            long start = System.nanoTime();
+            List<CompletableFuture<BulkResult>> pending = new ArrayList<>();
+            boolean rejecting = false;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    // После первого отказа очередь не ждем: остальные операции запроса получают rejected сразу,
+                    // если места нет
+                    CompletableFuture<BulkResult> result = bulkIngestor.submit(lineNumber, line,
+                            rejecting ? 0 : BULK_QUEUE_TIMEOUT_MILLIS);
+                    rejecting |= result.isDone() && BulkResult.REJECTED.equals(result.join().getStatus());
+                    pending.add(result);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendError(exchange, 503, "Interrupted while waiting for the ingest queue");
+                return;
+            }
+
+            List<BulkResult> results = new ArrayList<>(pending.size());
+            int applied = 0;
+            for (CompletableFuture<BulkResult> result : pending) {
+                BulkResult bulkResult = result.join();
+                results.add(bulkResult);
+                if (bulkResult.isApplied()) {
+                    applied++;
+                }
+            }
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("tookMillis", (System.nanoTime() - start) / 1_000_000);
+            body.put("applied", applied);
+            body.put("failed", results.size() - applied);
+            body.put("results", results);
+            byte[] jsonResponse = objectMapper.writeValueAsBytes(body);
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            if (rejecting) {
+                // Индексация не успевает: отклоненные операции можно повторить позже
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+            exchange.sendResponseHeaders(200, jsonResponse.length);
+            
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(jsonResponse);
+            }
+        }
+    }
+
+    // Параметры поиска из строки запроса; нечисловые limit или цены дают IllegalArgumentException,
+    // остальное проверяет движок
+    private SearchRequest toSearchRequest(Map<String, String> params) {
+        String limit = params.get("limit");
+        SearchRequest request = new SearchRequest(params.getOrDefault("q", ""),
+                limit != null ? Integer.valueOf(limit) : DEFAULT_PAGE_SIZE, params.get("cursor"));
+        request.setFacets(Boolean.parseBoolean(params.get("facets")));
+        request.setMinPrice(params.containsKey("minPrice") ? Double.valueOf(params.get("minPrice")) : null);
+        request.setMaxPrice(params.containsKey("maxPrice") ? Double.valueOf(params.get("maxPrice")) : null);
+        request.setSort(params.get("sort"));
+        request.setFields(params.get("fields"));
+        return request;
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        byte[] body = objectMapper.writeValueAsBytes(error);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
         }
     }
 
@@ -656,6 +1041,8 @@ public class ProductSearchEngineApp {
             System.out.println("   - GET /                     - Web interface");
             System.out.println("   - GET /api/search?q=query   - Search products");
             System.out.println("   - GET /api/autocomplete?q=  - Autocomplete suggestions");
+            System.out.println("   - POST /api/products/bulk   - NDJSON add/update/delete operations");
+            System.out.println("   - POST /api/admin/reindex   - Full rebuild with atomic swap (GET for status)");
             System.out.println("\nPress Ctrl+C to stop the server");
             
             Thread.currentThread().join();
@@ -0,0 +1,190 @@
+package algorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+// Автомат Ахо-Корасик: находит все вхождения набора шаблонов за один проход по тексту.
+// Переходы хранятся в плотном массиве int[состояние * (размер алфавита + 1) + класс символа],
+// алфавит сжат до символов, встречающихся в шаблонах (класс 0 — любой другой символ).
+
+public class AhoCorasick {
+
+    // Получатель совпадений: индекс шаблона и границы вхождения [start, end)
+    public interface MatchConsumer {
+        void onMatch(int patternIndex, int start, int end);
+    }
+
+    private static final int ASCII_SIZE = 128;
+
+    private final String[] patterns;
+    private final char[] alphabet;       // отсортированные символы шаблонов вне ASCII
+    private final int[] asciiClasses;    // классы ASCII-символов
+    private final int classCount;
+    private final int[] transitions;
+    private final int[] outputs;         // индекс шаблона, заканчивающегося в состоянии, или -1
+    private final int[] outputLinks;     // ближайшее по суффиксным ссылкам состояние с выходом или -1
+
+    public AhoCorasick(Collection<String> patternSet) {
+        // Дубликаты и пустые шаблоны отбрасываются
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        for (String pattern : patternSet) {
+            if (pattern != null && !pattern.isEmpty()) {
+                unique.add(pattern);
+            }
+        }
+        this.patterns = unique.toArray(new String[0]);
+
+        // Сжатие алфавита
+        this.asciiClasses = new int[ASCII_SIZE];
+        StringBuilder nonAscii = new StringBuilder();
+        int totalLength = 0;
+        for (String pattern : patterns) {
+            totalLength += pattern.length();
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < ASCII_SIZE) {
+                    asciiClasses[c] = -1;
+                } else {
+                    nonAscii.append(c);
+                }
+            }
+        }
+        int nextClass = 1;
+        for (int c = 0; c < ASCII_SIZE; c++) {
+            if (asciiClasses[c] == -1) {
+                asciiClasses[c] = nextClass++;
+            }
+        }
+        char[] sorted = nonAscii.toString().toCharArray();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        this.alphabet = Arrays.copyOf(sorted, distinct);
+        int asciiClassCount = nextClass;
+        this.classCount = asciiClassCount + distinct;
+
+        // Построение бора
+        int maxStates = totalLength + 1;
+        int[] delta = new int[maxStates * classCount];
+        Arrays.fill(delta, -1);
+        int[] out = new int[maxStates];
+        Arrays.fill(out, -1);
+        int states = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            String pattern = patterns[p];
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int slot = state * classCount + classOf(pattern.charAt(i));
+                if (delta[slot] == -1) {
+                    delta[slot] = states++;
+                }
+                state = delta[slot];
+            }
+            out[state] = p;
+        }
+
+        // Обход в ширину: суффиксные ссылки и достраивание переходов до детерминированного автомата
+        int[] fail = new int[states];
+        int[] links = new int[states];
+        Arrays.fill(links, -1);
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < classCount; c++) {
+            int next = delta[c];
+            if (next == -1) {
+                delta[c] = 0;
+            } else {
+                fail[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int failState = fail[state];
+            links[state] = out[failState] != -1 ? failState : links[failState];
+            for (int c = 0; c < classCount; c++) {
+                int slot = state * classCount + c;
+                int next = delta[slot];
+                if (next == -1) {
+                    delta[slot] = delta[failState * classCount + c];
+                } else {
+                    fail[next] = delta[failState * classCount + c];
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        this.transitions = Arrays.copyOf(delta, states * classCount);
+        this.outputs = Arrays.copyOf(out, states);
+        this.outputLinks = links;
+    }
+
+    public static AhoCorasick of(String... patterns) {
+        return new AhoCorasick(Arrays.asList(patterns));
+    }
+
+    // Один проход по тексту; возвращает общее число вхождений
+    public int search(CharSequence text, MatchConsumer consumer) {
+        int count = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * classCount + classOf(text.charAt(i))];
+            int match = outputs[state] != -1 ? state : outputLinks[state];
+            while (match != -1) {
+                int patternIndex = outputs[match];
+                int end = i + 1;
+                consumer.onMatch(patternIndex, end - patterns[patternIndex].length(), end);
+                count++;
+                match = outputLinks[match];
+            }
+        }
+        return count;
+    }
+
+    // Возвращает, какие шаблоны встречаются в тексте (found[i] выставляется в true), и число новых найденных
+    public int markFound(CharSequence text, boolean[] found) {
+        int newlyFound = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * classCount + classOf(text.charAt(i))];
+            int match = outputs[state] != -1 ? state : outputLinks[state];
+            while (match != -1) {
+                int patternIndex = outputs[match];
+                if (!found[patternIndex]) {
+                    found[patternIndex] = true;
+                    newlyFound++;
+                }
+                match = outputLinks[match];
+            }
+        }
+        return newlyFound;
+    }
+
+    public int getPatternCount() {
+        return patterns.length;
+    }
+
+    public String getPattern(int index) {
+        return patterns[index];
+    }
+
+    public List<String> getPatterns() {
+        return new ArrayList<>(Arrays.asList(patterns));
+    }
+
+    private int classOf(char c) {
+        if (c < ASCII_SIZE) {
+            return asciiClasses[c];
+        }
+        int index = Arrays.binarySearch(alphabet, c);
+        return index >= 0 ? classCount - alphabet.length + index : 0;
+    }
+}
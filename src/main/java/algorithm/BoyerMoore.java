@@ -1,8 +1,8 @@
-
 package algorithm;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.IntConsumer;
 
 // Реализация алгоритма Бойера-Мура для поиска подстроки в строке
 
@@ -39,5 +39,140 @@ public class BoyerMoore {
         }
         return -1; // Нет совпадения
     }
-}
 
+    // Компилирует шаблон один раз для многократного поиска
+    public static Pattern compile(String pattern) {
+        return new Pattern(pattern);
+    }
+
+    // Предкомпилированный шаблон: таблица плохого символа на примитивном массиве и правило хорошего суффикса.
+    // Символы вне Latin-1 сворачиваются в таблицу по младшему байту: при коллизии берется меньший сдвиг,
+    // поэтому свертка может только уменьшить сдвиг, но не пропустить совпадение.
+    public static final class Pattern {
+        private static final int TABLE_SIZE = 256;
+        private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+        private final char[] chars;
+        private final int[] badCharShift;
+        private final int[] goodSuffixShift;
+
+        private Pattern(String pattern) {
+            this.chars = pattern.toCharArray();
+            int m = chars.length;
+
+            this.badCharShift = new int[TABLE_SIZE];
+            for (int c = 0; c < TABLE_SIZE; c++) {
+                badCharShift[c] = m;
+            }
+            for (int i = 0; i < m - 1; i++) {
+                badCharShift[chars[i] & TABLE_MASK] = m - 1 - i;
+            }
+
+            this.goodSuffixShift = buildGoodSuffixShift(chars);
+        }
+
+        public int length() {
+            return chars.length;
+        }
+
+        public int indexOf(CharSequence text) {
+            return indexOf(text, 0);
+        }
+
+        // Позиция первого вхождения начиная с fromIndex или -1; пустой шаблон находится в fromIndex
+        public int indexOf(CharSequence text, int fromIndex) {
+            int m = chars.length;
+            int n = text.length();
+            if (m == 0) {
+                return fromIndex <= n ? fromIndex : -1;
+            }
+
+            int i = Math.max(0, fromIndex);
+            while (i <= n - m) {
+                int j = m - 1;
+                while (j >= 0 && chars[j] == text.charAt(i + j)) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+                int badChar = badCharShift[text.charAt(i + j) & TABLE_MASK] - m + 1 + j;
+                i += Math.max(goodSuffixShift[j], badChar);
+            }
+            return -1;
+        }
+
+        // Передает позиции всех (в том числе перекрывающихся) вхождений, возвращает их количество
+        public int findAll(CharSequence text, IntConsumer consumer) {
+            int m = chars.length;
+            int n = text.length();
+            if (m == 0) {
+                return 0;
+            }
+
+            int count = 0;
+            int i = 0;
+            while (i <= n - m) {
+                int j = m - 1;
+                while (j >= 0 && chars[j] == text.charAt(i + j)) {
+                    j--;
+                }
+                if (j < 0) {
+                    consumer.accept(i);
+                    count++;
+                    i += goodSuffixShift[0];
+                } else {
+                    int badChar = badCharShift[text.charAt(i + j) & TABLE_MASK] - m + 1 + j;
+                    i += Math.max(goodSuffixShift[j], badChar);
+                }
+            }
+            return count;
+        }
+
+        // Таблица сдвигов по правилу хорошего суффикса
+        private static int[] buildGoodSuffixShift(char[] x) {
+            int m = x.length;
+            int[] shift = new int[m];
+            if (m == 0) {
+                return shift;
+            }
+
+            int[] suffixes = new int[m];
+            suffixes[m - 1] = m;
+            int f = m - 1;
+            int g = m - 1;
+            for (int i = m - 2; i >= 0; i--) {
+                if (i > g && suffixes[i + m - 1 - f] < i - g) {
+                    suffixes[i] = suffixes[i + m - 1 - f];
+                } else {
+                    if (i < g) {
+                        g = i;
+                    }
+                    f = i;
+                    while (g >= 0 && x[g] == x[g + m - 1 - f]) {
+                        g--;
+                    }
+                    suffixes[i] = f - g;
+                }
+            }
+
+            for (int i = 0; i < m; i++) {
+                shift[i] = m;
+            }
+            int j = 0;
+            for (int i = m - 1; i >= 0; i--) {
+                if (suffixes[i] == i + 1) {
+                    for (; j < m - 1 - i; j++) {
+                        if (shift[j] == m) {
+                            shift[j] = m - 1 - i;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i <= m - 2; i++) {
+                shift[m - 1 - suffixes[i]] = m - 1 - i;
+            }
+            return shift;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package algorithm;
+
+import java.nio.charset.StandardCharsets;
+
+// Проверка вхождения подстроки с выбором реализации: векторизованный поиск по байтам
+// (включается флагом -Dsearch.simd=true и требует --add-modules jdk.incubator.vector)
+// или скалярный Бойер-Мур, если SIMD недоступен. Оба пути ищут по одним и тем же байтам UTF-8
+// поля в нижнем регистре из колонки DataManager, поэтому их результаты совпадают. Срез со сверткой
+// ASCII-регистра SIMD-путь читает как есть: он сам сравнивает без учета регистра ASCII.
+// SIMD-путь выбирается для ASCII-шаблонов: их байты не встречаются внутри многобайтовых символов,
+// поэтому текст может содержать любые символы.
+
+public final class SubstringMatcher {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final boolean VECTORIZED = Boolean.getBoolean("search.simd") && isVectorModuleAvailable();
+
+    private final BoyerMoore.Pattern scalarPattern;
+    private final byte[] asciiPattern; // null, если шаблон не ASCII или SIMD выключен
+
+    private SubstringMatcher(String lowerPattern, boolean vectorized) {
+        this.scalarPattern = BoyerMoore.compile(Utf8Slice.byteString(lowerPattern));
+        this.asciiPattern = vectorized && isAscii(lowerPattern)
+                ? lowerPattern.getBytes(StandardCharsets.US_ASCII)
+                : null;
+    }
+
+    public static SubstringMatcher compile(String pattern) {
+        return new SubstringMatcher(pattern.toLowerCase(), VECTORIZED);
+    }
+
+    // Явный выбор реализации для сравнения путей в тестах; без модуля векторов — всегда скалярный
+    public static SubstringMatcher compile(String pattern, boolean vectorized) {
+        return new SubstringMatcher(pattern.toLowerCase(), vectorized && isVectorModuleAvailable());
+    }
+
+    // Включен ли векторизованный путь в этой JVM
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    public static boolean isVectorModuleAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    // lowerText — байты UTF-8 поля в нижнем регистре
+    public boolean containedIn(Utf8Slice lowerText) {
+        if (asciiPattern != null) {
+            return VectorizedSearch.indexOfIgnoreCaseAscii(lowerText.array(), lowerText.offset(),
+                    lowerText.length(), asciiPattern) >= 0;
+        }
+        return scalarPattern.indexOf(lowerText) >= 0;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
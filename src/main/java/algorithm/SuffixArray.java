@@ -0,0 +1,225 @@
+package algorithm;
+
+import java.util.Arrays;
+
+// Построение суффиксного массива алгоритмом SA-IS (линейное время) и массива LCP алгоритмом Касаи
+
+public class SuffixArray {
+    private static final int NAIVE_THRESHOLD = 10;
+
+    // Строит суффиксный массив для строки символов
+    public static int[] build(char[] text) {
+        int n = text.length;
+        if (n == 0) {
+            return new int[0];
+        }
+
+        // Сжатие алфавита: символы заменяются их рангами, порядок сохраняется
+        char[] alphabet = text.clone();
+        Arrays.sort(alphabet);
+        int distinct = 0;
+        for (int i = 0; i < alphabet.length; i++) {
+            if (i == 0 || alphabet[i] != alphabet[i - 1]) {
+                alphabet[distinct++] = alphabet[i];
+            }
+        }
+
+        int[] ranks = new int[n];
+        for (int i = 0; i < n; i++) {
+            ranks[i] = Arrays.binarySearch(alphabet, 0, distinct, text[i]);
+        }
+        return saIs(ranks, distinct - 1);
+    }
+
+    // Строит массив LCP: lcp[i] — длина общего префикса суффиксов sa[i - 1] и sa[i], lcp[0] = 0
+    public static int[] buildLcp(char[] text, int[] sa) {
+        int n = text.length;
+        int[] lcp = new int[n];
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            rank[sa[i]] = i;
+        }
+
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            if (h > 0) {
+                h--;
+            }
+            if (rank[i] == 0) {
+                continue;
+            }
+            int j = sa[rank[i] - 1];
+            while (i + h < n && j + h < n && text[i + h] == text[j + h]) {
+                h++;
+            }
+            lcp[rank[i]] = h;
+        }
+        return lcp;
+    }
+
+    // SA-IS для строки с символами из диапазона [0, upper]
+    static int[] saIs(int[] s, int upper) {
+        int n = s.length;
+        if (n == 0) {
+            return new int[0];
+        }
+        if (n == 1) {
+            return new int[]{0};
+        }
+        if (n < NAIVE_THRESHOLD) {
+            return naive(s);
+        }
+
+        int[] sa = new int[n];
+
+        // ls[i] == true, если суффикс i имеет S-тип
+        boolean[] ls = new boolean[n];
+        for (int i = n - 2; i >= 0; i--) {
+            ls[i] = (s[i] == s[i + 1]) ? ls[i + 1] : (s[i] < s[i + 1]);
+        }
+
+        // Границы корзин для L- и S-суффиксов
+        int[] sumL = new int[upper + 2];
+        int[] sumS = new int[upper + 2];
+        for (int i = 0; i < n; i++) {
+            if (!ls[i]) {
+                sumS[s[i]]++;
+            } else {
+                sumL[s[i] + 1]++;
+            }
+        }
+        for (int i = 0; i <= upper; i++) {
+            sumS[i] += sumL[i];
+            if (i < upper) {
+                sumL[i + 1] += sumS[i];
+            }
+        }
+
+        int[] lmsMap = new int[n + 1];
+        Arrays.fill(lmsMap, -1);
+        int m = 0;
+        for (int i = 1; i < n; i++) {
+            if (!ls[i - 1] && ls[i]) {
+                lmsMap[i] = m++;
+            }
+        }
+        int[] lms = new int[m];
+        int k = 0;
+        for (int i = 1; i < n; i++) {
+            if (!ls[i - 1] && ls[i]) {
+                lms[k++] = i;
+            }
+        }
+
+        induce(s, upper, sa, ls, sumL, sumS, lms);
+
+        if (m > 0) {
+            int[] sortedLms = new int[m];
+            k = 0;
+            for (int v : sa) {
+                if (lmsMap[v] != -1) {
+                    sortedLms[k++] = v;
+                }
+            }
+
+            // Именование LMS-подстрок и рекурсивная сортировка
+            int[] recS = new int[m];
+            int recUpper = 0;
+            recS[lmsMap[sortedLms[0]]] = 0;
+            for (int i = 1; i < m; i++) {
+                int l = sortedLms[i - 1];
+                int r = sortedLms[i];
+                int endL = (lmsMap[l] + 1 < m) ? lms[lmsMap[l] + 1] : n;
+                int endR = (lmsMap[r] + 1 < m) ? lms[lmsMap[r] + 1] : n;
+                boolean same = true;
+                if (endL - l != endR - r) {
+                    same = false;
+                } else {
+                    while (l < endL) {
+                        if (s[l] != s[r]) {
+                            break;
+                        }
+                        l++;
+                        r++;
+                    }
+                    if (l == n || s[l] != s[r]) {
+                        same = false;
+                    }
+                }
+                if (!same) {
+                    recUpper++;
+                }
+                recS[lmsMap[sortedLms[i]]] = recUpper;
+            }
+
+            int[] recSa = saIs(recS, recUpper);
+            for (int i = 0; i < m; i++) {
+                sortedLms[i] = lms[recSa[i]];
+            }
+            induce(s, upper, sa, ls, sumL, sumS, sortedLms);
+        }
+        return sa;
+    }
+
+    // Индуцированная сортировка L- и S-суффиксов по отсортированным LMS-позициям
+    private static void induce(int[] s, int upper, int[] sa, boolean[] ls, int[] sumL, int[] sumS, int[] lms) {
+        int n = s.length;
+        Arrays.fill(sa, -1);
+        int[] buf = new int[upper + 2];
+
+        System.arraycopy(sumS, 0, buf, 0, upper + 1);
+        for (int d : lms) {
+            if (d == n) {
+                continue;
+            }
+            sa[buf[s[d]]++] = d;
+        }
+
+        System.arraycopy(sumL, 0, buf, 0, upper + 1);
+        sa[buf[s[n - 1]]++] = n - 1;
+        for (int i = 0; i < n; i++) {
+            int v = sa[i];
+            if (v >= 1 && !ls[v - 1]) {
+                sa[buf[s[v - 1]]++] = v - 1;
+            }
+        }
+
+        System.arraycopy(sumL, 0, buf, 0, upper + 2);
+        for (int i = n - 1; i >= 0; i--) {
+            int v = sa[i];
+            if (v >= 1 && ls[v - 1]) {
+                sa[--buf[s[v - 1] + 1]] = v - 1;
+            }
+        }
+    }
+
+    // Простая сортировка суффиксов для очень коротких строк
+    private static int[] naive(int[] s) {
+        int n = s.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            if (a.intValue() == b.intValue()) {
+                return 0;
+            }
+            int i = a;
+            int j = b;
+            while (i < n && j < n) {
+                if (s[i] != s[j]) {
+                    return Integer.compare(s[i], s[j]);
+                }
+                i++;
+                j++;
+            }
+            return i == n ? -1 : 1;
+        });
+
+        int[] sa = new int[n];
+        for (int i = 0; i < n; i++) {
+            sa[i] = order[i];
+        }
+        return sa;
+    }
+}
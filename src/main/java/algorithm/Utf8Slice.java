@@ -0,0 +1,100 @@
+package algorithm;
+
+import java.nio.charset.StandardCharsets;
+
+// Участок массива байт UTF-8 как последовательность символов: каждый байт — отдельный символ 0..255.
+// Позволяет искать по тексту, хранимому в колонке, без декодирования в String: шаблон переводится
+// в байты UTF-8 той же функцией byteString, и вхождение байтов шаблона в байты текста совпадает
+// с вхождением строки, так как UTF-8 не дает совпадений с середины многобайтового символа.
+// Срез со сверткой регистра ASCII читает A-Z как a-z: так исходный текст из одних ASCII-символов
+// служит своей же версией в нижнем регистре без отдельной копии.
+// Срез не копирует байты и действителен, пока массив не перезаписан.
+
+public final class Utf8Slice implements CharSequence {
+    public static final Utf8Slice EMPTY = new Utf8Slice(new byte[0], 0, 0);
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final boolean foldAscii;
+
+    public Utf8Slice(byte[] bytes, int offset, int length) {
+        this(bytes, offset, length, false);
+    }
+
+    private Utf8Slice(byte[] bytes, int offset, int length, boolean foldAscii) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("Slice [" + offset + ", " + (offset + length)
+                    + ") out of range for length " + bytes.length);
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.foldAscii = foldAscii;
+    }
+
+    // Срез по байтам UTF-8 строки
+    public static Utf8Slice of(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        return new Utf8Slice(utf8, 0, utf8.length);
+    }
+
+    // Строка, символы которой — байты UTF-8 value: так шаблоны для BoyerMoore и AhoCorasick
+    // сравниваются со срезами
+    public static String byteString(String value) {
+        return new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+    }
+
+    // Тот же участок, в котором A-Z читаются как a-z
+    public Utf8Slice foldingAsciiCase() {
+        return new Utf8Slice(bytes, offset, length, true);
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for length " + length);
+        }
+        int b = bytes[offset + index] & 0xFF;
+        return (char) (foldAscii && b >= 'A' && b <= 'Z' ? b | 0x20 : b);
+    }
+
+    @Override
+    public Utf8Slice subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of range for length " + length);
+        }
+        return new Utf8Slice(bytes, offset + start, end - start, foldAscii);
+    }
+
+    // Декодированный текст (со сверткой регистра — в нижнем регистре ASCII)
+    @Override
+    public String toString() {
+        String text = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        return foldAscii ? foldAsciiCase(text) : text;
+    }
+
+    // Строчные ASCII-буквы вместо заглавных, остальные символы без изменений
+    public static String foldAsciiCase(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] |= 0x20;
+            }
+        }
+        return new String(chars);
+    }
+}
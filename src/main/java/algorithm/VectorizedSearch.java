@@ -0,0 +1,93 @@
+package algorithm;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Векторизованный (SIMD) поиск подстроки и сравнение без учета регистра ASCII на jdk.incubator.vector.
+// Работает с байтами UTF-8: поиск ASCII-шаблона в UTF-8 тексте корректен, так как байты
+// многобайтовых последовательностей всегда >= 0x80 и не пересекаются с ASCII.
+// Класс загружается только из SubstringMatcher и только если модуль доступен.
+
+public class VectorizedSearch {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final byte CASE_BIT = 0x20;
+
+    // Первое вхождение шаблона без учета регистра ASCII или -1.
+    // Фильтр по первому и последнему символу шаблона проверяет LANES позиций за одну итерацию,
+    // полное сравнение выполняется только для кандидатов.
+    public static int indexOfIgnoreCaseAscii(byte[] text, byte[] pattern) {
+        return indexOfIgnoreCaseAscii(text, 0, text.length, pattern);
+    }
+
+    // То же для участка [offset, offset + length) массива; позиция отсчитывается от offset
+    public static int indexOfIgnoreCaseAscii(byte[] text, int offset, int length, byte[] pattern) {
+        int m = pattern.length;
+        int n = offset + length;
+        if (m == 0) {
+            return 0;
+        }
+        if (m > length) {
+            return -1;
+        }
+
+        byte first = toLowerAscii(pattern[0]);
+        byte last = toLowerAscii(pattern[m - 1]);
+        int lastStart = n - m;
+        int i = offset;
+        for (; i + LANES - 1 <= lastStart; i += LANES) {
+            ByteVector head = foldCase(ByteVector.fromArray(SPECIES, text, i));
+            ByteVector tail = foldCase(ByteVector.fromArray(SPECIES, text, i + m - 1));
+            long candidates = head.eq(first).and(tail.eq(last)).toLong();
+            while (candidates != 0) {
+                int start = i + Long.numberOfTrailingZeros(candidates);
+                if (equalsIgnoreCaseAscii(text, start, pattern, 0, m)) {
+                    return start - offset;
+                }
+                candidates &= candidates - 1;
+            }
+        }
+        for (; i <= lastStart; i++) {
+            if (toLowerAscii(text[i]) == first && toLowerAscii(text[i + m - 1]) == last
+                    && equalsIgnoreCaseAscii(text, i, pattern, 0, m)) {
+                return i - offset;
+            }
+        }
+        return -1;
+    }
+
+    // Сравнение диапазонов байтов без учета регистра ASCII
+    public static boolean equalsIgnoreCaseAscii(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int i = 0;
+        for (; i + LANES <= length; i += LANES) {
+            ByteVector left = foldCase(ByteVector.fromArray(SPECIES, a, aOffset + i));
+            ByteVector right = foldCase(ByteVector.fromArray(SPECIES, b, bOffset + i));
+            if (!left.eq(right).allTrue()) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (toLowerAscii(a[aOffset + i]) != toLowerAscii(b[bOffset + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int getLaneCount() {
+        return LANES;
+    }
+
+    // Приведение A-Z к a-z во всех линиях вектора
+    private static ByteVector foldCase(ByteVector vector) {
+        VectorMask<Byte> upper = vector.compare(VectorOperators.GE, (byte) 'A')
+                .and(vector.compare(VectorOperators.LE, (byte) 'Z'));
+        return vector.lanewise(VectorOperators.OR, CASE_BIT, upper);
+    }
+
+    static byte toLowerAscii(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b | CASE_BIT) : b;
+    }
+}
@@ -0,0 +1,104 @@
+package index;
+
+import java.util.Arrays;
+
+// Битовое множество внутренних id документов на массиве long: пересечение и подсчет
+// выполняются по 64 документа за операцию (AND + Long.bitCount)
+
+public class DocBitSet {
+    private final long[] words;
+    private final int size;
+
+    public DocBitSet(int size) {
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void set(int doc) {
+        words[doc >>> 6] |= 1L << doc;
+    }
+
+    public void clear(int doc) {
+        words[doc >>> 6] &= ~(1L << doc);
+    }
+
+    public boolean get(int doc) {
+        return doc >= 0 && doc < size && (words[doc >>> 6] & (1L << doc)) != 0;
+    }
+
+    // Копия с другим размером: биты за пределами нового размера отбрасываются
+    public DocBitSet copy(int newSize) {
+        DocBitSet copy = new DocBitSet(newSize);
+        System.arraycopy(words, 0, copy.words, 0, Math.min(words.length, copy.words.length));
+        if (newSize < size && (newSize & 63) != 0) {
+            copy.words[copy.words.length - 1] &= (1L << newSize) - 1;
+        }
+        return copy;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // |this ∩ other| без создания промежуточного множества
+    public int intersectionCount(DocBitSet other) {
+        int count = 0;
+        int length = Math.min(words.length, other.words.length);
+        for (int i = 0; i < length; i++) {
+            count += Long.bitCount(words[i] & other.words[i]);
+        }
+        return count;
+    }
+
+    // Объединение на месте: this = this ∪ other
+    public void or(DocBitSet other) {
+        int length = Math.min(words.length, other.words.length);
+        for (int i = 0; i < length; i++) {
+            words[i] |= other.words[i];
+        }
+    }
+
+    // Первый установленный бит, не меньший from, или -1
+    public int nextSetBit(int from) {
+        int index = from >>> 6;
+        if (index >= words.length) {
+            return -1;
+        }
+        long word = words[index] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (index << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++index == words.length) {
+                return -1;
+            }
+            word = words[index];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DocBitSet{size=" + size + ", cardinality=" + cardinality() + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DocBitSet other = (DocBitSet) o;
+        return size == other.size && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(words);
+    }
+}
@@ -0,0 +1,147 @@
+package index;
+
+import model.Product;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Фасетный индекс по внутренним id документов: битовое множество для каждой категории
+// и колонка цен. Счетчики по найденным документам считаются пересечением битовых
+// множеств и одним проходом по колонке, без обращения к объектам Product.
+
+public class FacetIndex {
+    // Верхние границы ценовых диапазонов; последний диапазон открыт сверху
+    private static final double[] PRICE_BOUNDS = {10, 50, 100, 500, 1000};
+    private static final String[] PRICE_LABELS = {"0-10", "10-50", "50-100", "100-500", "500-1000", "1000+"};
+
+    private final int documentCount;
+    private final String[] categories;
+    private final DocBitSet[] categoryDocs;
+    private final PriceColumn prices;
+
+    // Продукты в порядке внутренних id
+    public FacetIndex(List<Product> documents) {
+        this.documentCount = documents.size();
+        this.prices = new PriceColumn(documents);
+
+        Map<String, Integer> categoryOrdinals = new HashMap<>();
+        List<String> categoryNames = new ArrayList<>();
+        List<DocBitSet> docsByCategory = new ArrayList<>();
+        for (int doc = 0; doc < documentCount; doc++) {
+            String category = documents.get(doc).getCategory();
+            if (category == null) {
+                continue;
+            }
+            Integer ordinal = categoryOrdinals.get(category);
+            if (ordinal == null) {
+                ordinal = categoryNames.size();
+                categoryOrdinals.put(category, ordinal);
+                categoryNames.add(category);
+                docsByCategory.add(new DocBitSet(documentCount));
+            }
+            docsByCategory.get(ordinal).set(doc);
+        }
+        this.categories = categoryNames.toArray(new String[0]);
+        this.categoryDocs = docsByCategory.toArray(new DocBitSet[0]);
+    }
+
+    private FacetIndex(int documentCount, String[] categories, DocBitSet[] categoryDocs, PriceColumn prices) {
+        this.documentCount = documentCount;
+        this.categories = categories;
+        this.categoryDocs = categoryDocs;
+        this.prices = prices;
+    }
+
+    // Новый индекс на documentCount документов, в котором у docs заменены категория и цена;
+    // категория null — документ удален. Текущий индекс не меняется и продолжает обслуживать запросы.
+    // Копируются только множества затронутых категорий, остальные делятся с текущим индексом:
+    // документы за пределами их размера в них просто отсутствуют
+    public FacetIndex update(int documentCount, int[] docs, String[] newCategories, double[] newPrices) {
+        List<String> categoryNames = new ArrayList<>(List.of(categories));
+        List<DocBitSet> docsByCategory = new ArrayList<>(List.of(categoryDocs));
+        boolean[] copied = new boolean[categoryDocs.length + docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            for (int ordinal = 0; ordinal < docsByCategory.size(); ordinal++) {
+                if (docsByCategory.get(ordinal).get(docs[i])) {
+                    writable(docsByCategory, copied, ordinal, documentCount).clear(docs[i]);
+                }
+            }
+            if (newCategories[i] == null) {
+                continue;
+            }
+            int ordinal = categoryNames.indexOf(newCategories[i]);
+            if (ordinal < 0) {
+                ordinal = categoryNames.size();
+                categoryNames.add(newCategories[i]);
+                docsByCategory.add(new DocBitSet(documentCount));
+                copied[ordinal] = true;
+            }
+            writable(docsByCategory, copied, ordinal, documentCount).set(docs[i]);
+        }
+        return new FacetIndex(documentCount, categoryNames.toArray(new String[0]),
+                docsByCategory.toArray(new DocBitSet[0]), prices.update(documentCount, docs, newPrices));
+    }
+
+    // Множество категории, которое можно менять: при первом изменении — копия нового размера
+    private static DocBitSet writable(List<DocBitSet> docsByCategory, boolean[] copied, int ordinal, int documentCount) {
+        if (!copied[ordinal]) {
+            docsByCategory.set(ordinal, docsByCategory.get(ordinal).copy(documentCount));
+            copied[ordinal] = true;
+        }
+        return docsByCategory.get(ordinal);
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public PriceColumn getPrices() {
+        return prices;
+    }
+
+    // Число найденных документов в каждой категории, по убыванию; категории без совпадений опускаются
+    public Map<String, Integer> countCategories(DocBitSet matched) {
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        for (int i = 0; i < categories.length; i++) {
+            int count = categoryDocs[i].intersectionCount(matched);
+            if (count > 0) {
+                counts.add(Map.entry(categories[i], count));
+            }
+        }
+        counts.sort((a, b) -> {
+            int byCount = Integer.compare(b.getValue(), a.getValue());
+            return byCount != 0 ? byCount : a.getKey().compareTo(b.getKey());
+        });
+
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : counts) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    // Число найденных документов в каждом ценовом диапазоне: один проход по колонке цен
+    public Map<String, Integer> countPriceRanges(DocBitSet matched) {
+        int[] counts = new int[PRICE_LABELS.length];
+        for (int doc = matched.nextSetBit(0); doc >= 0 && doc < documentCount; doc = matched.nextSetBit(doc + 1)) {
+            counts[priceBucket(prices.get(doc))]++;
+        }
+
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            result.put(PRICE_LABELS[i], counts[i]);
+        }
+        return result;
+    }
+
+    private static int priceBucket(double price) {
+        int bucket = 0;
+        while (bucket < PRICE_BOUNDS.length && price >= PRICE_BOUNDS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+}
@@ -0,0 +1,102 @@
+package index;
+
+// Хеш-таблица int -> int с открытой адресацией и линейным пробированием, без упаковки ключей в Integer.
+// Значения неотрицательны; отсутствующий ключ возвращает -1
+
+public class IntIntHashMap {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values; // значение + 1; 0 — пустой слот
+    private int size;
+
+    public IntIntHashMap() {
+        this.keys = new int[INITIAL_CAPACITY];
+        this.values = new int[INITIAL_CAPACITY];
+    }
+
+    public int get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    public void put(int key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must be non-negative: " + value);
+        }
+        // Заполнение не выше половины, чтобы цепочки пробирования оставались короткими
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == 0) {
+            size++;
+        }
+        keys[slot] = key;
+        values[slot] = value + 1;
+    }
+
+    // Удаляет ключ и возвращает его значение или -1. Следующие за слотом элементы цепочки
+    // сдвигаются назад, поэтому маркеры удаления не нужны
+    public int remove(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == 0) {
+            return -1;
+        }
+        int removed = values[slot] - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != 0; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            // Элемент переносится в дыру, если его исходный слот не лежит между дырой и текущей позицией
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = 0;
+        size--;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Перемешивание битов: последовательные id не должны попадать в соседние слоты целыми сериями
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
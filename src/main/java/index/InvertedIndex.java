@@ -2,6 +2,7 @@
 package index;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
@@ -10,6 +11,8 @@ import java.util.HashSet;
 
 public class InvertedIndex {
     private Map<String, Set<Integer>> index;
+    // Увеличивается при каждом изменении индекса; по нему сбрасываются кэшированные планы запросов
+    private volatile long version;
 
     public InvertedIndex() {
         this.index = new HashMap<>();
@@ -22,10 +25,38 @@ public class InvertedIndex {
                 index.computeIfAbsent(word, k -> new HashSet<>()).add(documentId);
             }
         }
+        version++;
+    }
+
+    // Убирает документ из списков слов текста; термины без документов удаляются из индекса
+    public void removeDocument(String text, int documentId) {
+        String[] words = text.toLowerCase().split("\\W+");
+        for (String word : words) {
+            Set<Integer> documents = index.get(word);
+            if (documents != null && documents.remove(documentId) && documents.isEmpty()) {
+                index.remove(word);
+            }
+        }
+        version++;
+    }
+
+    // Добавляет готовые списки документов, построенные вне индекса (параллельное построение)
+    public void addPostings(List<String> terms, List<Set<Integer>> postings) {
+        for (int i = 0; i < terms.size(); i++) {
+            Set<Integer> documents = index.putIfAbsent(terms.get(i), postings.get(i));
+            if (documents != null) {
+                documents.addAll(postings.get(i));
+            }
+        }
+        version++;
     }
 
     public Set<Integer> search(String query) {
-        String[] words = query.toLowerCase().split("\\W+");
+        return search(query.toLowerCase().split("\\W+"));
+    }
+
+    // Пересечение списков для уже разобранных слов в нижнем регистре
+    public Set<Integer> search(String[] words) {
         if (words.length == 0) {
             return new HashSet<>();
         }
@@ -47,6 +78,16 @@ public class InvertedIndex {
         return result != null ? result : new HashSet<>();
     }
 
+    // Число документов, содержащих термин
+    public int getDocumentFrequency(String term) {
+        Set<Integer> documents = index.get(term);
+        return documents != null ? documents.size() : 0;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
     public Map<String, Set<Integer>> getIndex() {
         return index;
     }
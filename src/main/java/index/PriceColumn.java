@@ -0,0 +1,316 @@
+package index;
+
+import model.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+// Колоночные значения цены по внутренним id документов и заранее отсортированный порядок.
+// Диапазон цен превращается в битовое множество двоичным поиском по порядку,
+// а выдача по цене идет обходом порядка без сортировки найденных документов.
+// Цены хранятся блоками по CHUNK_SIZE, порядок — отсортированными блоками до MAX_RUN документов.
+// Колонка неизменяема: update копирует только затронутые блоки, остальные делит с прежней колонкой,
+// поэтому небольшой пакет изменений не копирует весь каталог.
+
+public class PriceColumn {
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_RUN = 1024;
+    // Пакет больше этой доли каталога пересобирает порядок одним слиянием за O(n)
+    private static final int REBUILD_FRACTION = 32;
+
+    private final int size;
+    private final double[][] prices; // цена документа по его id, блоками по CHUNK_SIZE
+    private final int[][] runs;      // id документов по возрастанию цены, при равенстве — по id
+
+    // Продукты в порядке внутренних id
+    public PriceColumn(List<Product> documents) {
+        int n = documents.size();
+        double[] flat = new double[n];
+        for (int doc = 0; doc < n; doc++) {
+            flat[doc] = documents.get(doc).getPrice();
+        }
+        this.size = n;
+        this.prices = chunks(flat, n);
+
+        Integer[] order = new Integer[n];
+        for (int doc = 0; doc < n; doc++) {
+            order[doc] = doc;
+        }
+        Arrays.sort(order, (a, b) -> compare(flat, a, b));
+        int[] ascending = new int[n];
+        for (int rank = 0; rank < n; rank++) {
+            ascending[rank] = order[rank];
+        }
+        this.runs = split(ascending);
+    }
+
+    private PriceColumn(int size, double[][] prices, int[][] runs) {
+        this.size = size;
+        this.prices = prices;
+        this.runs = runs;
+    }
+
+    // Новая колонка на documentCount документов, в которой у docs цены заменены на newPrices.
+    // Новые документы без явной цены тоже попадают в порядок. Каждое изменение переносит документ
+    // между блоками порядка; крупный пакет вместо этого сортирует измененные документы и сливает их
+    // с прежним порядком за один проход
+    public PriceColumn update(int documentCount, int[] docs, double[] newPrices) {
+        int changes = docs.length + Math.max(0, documentCount - size);
+        if (documentCount < size || (long) changes * REBUILD_FRACTION > documentCount) {
+            return rebuild(documentCount, docs, newPrices);
+        }
+
+        // Каталог блоков цен копируется целиком (documentCount / CHUNK_SIZE ссылок), сами блоки — при первой записи
+        double[][] updatedPrices = Arrays.copyOf(prices, chunkCount(documentCount));
+        boolean[] ownedChunks = new boolean[updatedPrices.length];
+        for (int chunk = chunkCount(size); chunk < updatedPrices.length; chunk++) {
+            updatedPrices[chunk] = new double[CHUNK_SIZE];
+            ownedChunks[chunk] = true;
+        }
+        List<int[]> updatedRuns = new ArrayList<>(Arrays.asList(runs));
+        for (int doc = size; doc < documentCount; doc++) {
+            insert(updatedRuns, updatedPrices, doc);
+        }
+        for (int i = 0; i < docs.length; i++) {
+            int doc = docs[i];
+            remove(updatedRuns, updatedPrices, doc);
+            int chunk = doc >>> CHUNK_SHIFT;
+            if (!ownedChunks[chunk]) {
+                updatedPrices[chunk] = updatedPrices[chunk].clone();
+                ownedChunks[chunk] = true;
+            }
+            updatedPrices[chunk][doc & CHUNK_MASK] = newPrices[i];
+            insert(updatedRuns, updatedPrices, doc);
+        }
+        return new PriceColumn(documentCount, updatedPrices, updatedRuns.toArray(new int[0][]));
+    }
+
+    private PriceColumn rebuild(int documentCount, int[] docs, double[] newPrices) {
+        double[] updatedPrices = new double[documentCount];
+        for (int doc = 0; doc < Math.min(size, documentCount); doc++) {
+            updatedPrices[doc] = get(doc);
+        }
+        boolean[] changed = new boolean[documentCount];
+        for (int i = 0; i < docs.length; i++) {
+            updatedPrices[docs[i]] = newPrices[i];
+            changed[docs[i]] = true;
+        }
+        int[] moved = new int[documentCount];
+        int movedCount = 0;
+        for (int doc = 0; doc < documentCount; doc++) {
+            if (changed[doc] || doc >= size) {
+                changed[doc] = true;
+                moved[movedCount++] = doc;
+            }
+        }
+        Integer[] order = new Integer[movedCount];
+        for (int i = 0; i < movedCount; i++) {
+            order[i] = moved[i];
+        }
+        Arrays.sort(order, (a, b) -> compare(updatedPrices, a, b));
+
+        int[] ascending = new int[documentCount];
+        int rank = 0;
+        int next = 0;
+        for (int[] run : runs) {
+            for (int doc : run) {
+                if (doc >= documentCount || changed[doc]) {
+                    continue;
+                }
+                while (next < movedCount && compare(updatedPrices, order[next], doc) < 0) {
+                    ascending[rank++] = order[next++];
+                }
+                ascending[rank++] = doc;
+            }
+        }
+        while (next < movedCount) {
+            ascending[rank++] = order[next++];
+        }
+        return new PriceColumn(documentCount, chunks(updatedPrices, documentCount), split(ascending));
+    }
+
+    // Убирает документ из порядка: копируется только его блок
+    private static void remove(List<int[]> runs, double[][] prices, int doc) {
+        int r = findRun(runs, prices, doc);
+        int[] run = runs.get(r);
+        int index = indexIn(run, prices, doc);
+        if (run.length == 1) {
+            runs.remove(r);
+            return;
+        }
+        int[] shorter = new int[run.length - 1];
+        System.arraycopy(run, 0, shorter, 0, index);
+        System.arraycopy(run, index + 1, shorter, index, run.length - index - 1);
+        runs.set(r, shorter);
+    }
+
+    // Вставляет документ по его текущей цене; переполненный блок делится пополам
+    private static void insert(List<int[]> runs, double[][] prices, int doc) {
+        if (runs.isEmpty()) {
+            runs.add(new int[]{doc});
+            return;
+        }
+        int r = findRun(runs, prices, doc);
+        int[] run = runs.get(r);
+        int index = -indexIn(run, prices, doc) - 1;
+        int[] longer = new int[run.length + 1];
+        System.arraycopy(run, 0, longer, 0, index);
+        longer[index] = doc;
+        System.arraycopy(run, index, longer, index + 1, run.length - index);
+        if (longer.length <= MAX_RUN) {
+            runs.set(r, longer);
+        } else {
+            int half = longer.length / 2;
+            runs.set(r, Arrays.copyOfRange(longer, 0, half));
+            runs.add(r + 1, Arrays.copyOfRange(longer, half, longer.length));
+        }
+    }
+
+    // Блок, в котором стоит или должен стоять doc: последний, чей первый документ идет не позже doc
+    private static int findRun(List<int[]> runs, double[][] prices, int doc) {
+        int lo = 0;
+        int hi = runs.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (compare(prices, runs.get(mid)[0], doc) <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // Позиция doc в блоке или -(точка вставки) - 1, как у Arrays.binarySearch
+    private static int indexIn(int[] run, double[][] prices, int doc) {
+        int lo = 0;
+        int hi = run.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int order = compare(prices, run[mid], doc);
+            if (order < 0) {
+                lo = mid + 1;
+            } else if (order > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    private static int compare(double[] prices, int a, int b) {
+        int byPrice = Double.compare(prices[a], prices[b]);
+        return byPrice != 0 ? byPrice : Integer.compare(a, b);
+    }
+
+    private static int compare(double[][] prices, int a, int b) {
+        int byPrice = Double.compare(prices[a >>> CHUNK_SHIFT][a & CHUNK_MASK], prices[b >>> CHUNK_SHIFT][b & CHUNK_MASK]);
+        return byPrice != 0 ? byPrice : Integer.compare(a, b);
+    }
+
+    private static int chunkCount(int documentCount) {
+        return (documentCount + CHUNK_MASK) >>> CHUNK_SHIFT;
+    }
+
+    private static double[][] chunks(double[] flat, int documentCount) {
+        double[][] chunks = new double[chunkCount(documentCount)][];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            chunks[chunk] = new double[CHUNK_SIZE];
+            int from = chunk << CHUNK_SHIFT;
+            System.arraycopy(flat, from, chunks[chunk], 0, Math.min(CHUNK_SIZE, documentCount - from));
+        }
+        return chunks;
+    }
+
+    private static int[][] split(int[] ascending) {
+        int[][] runs = new int[(ascending.length + MAX_RUN - 1) / MAX_RUN][];
+        for (int r = 0; r < runs.length; r++) {
+            runs[r] = Arrays.copyOfRange(ascending, r * MAX_RUN, Math.min(ascending.length, (r + 1) * MAX_RUN));
+        }
+        return runs;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double get(int doc) {
+        if (doc >= size) {
+            throw new ArrayIndexOutOfBoundsException("Document " + doc + " out of range for size " + size);
+        }
+        return prices[doc >>> CHUNK_SHIFT][doc & CHUNK_MASK];
+    }
+
+    // Документы с ценой в [min, max]; границы включаются
+    public DocBitSet range(double min, double max) {
+        DocBitSet docs = new DocBitSet(size);
+        // Первый блок, последний документ которого не дешевле min
+        int lo = 0;
+        int hi = runs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int[] run = runs[mid];
+            if (get(run[run.length - 1]) < min) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int r = lo; r < runs.length; r++) {
+            for (int doc : runs[r]) {
+                double price = get(doc);
+                if (price > max) {
+                    return docs;
+                }
+                if (price >= min) {
+                    docs.set(doc);
+                }
+            }
+        }
+        return docs;
+    }
+
+    // Записывает в out до k документов, принятых условием, в порядке цены, начиная после afterDoc
+    // (afterDoc < 0 — с начала); возвращает их число
+    public int collect(boolean descending, int afterDoc, IntPredicate accept, int k, int[] out) {
+        if (runs.length == 0 || k <= 0) {
+            return 0;
+        }
+        int step = descending ? -1 : 1;
+        int r;
+        int index;
+        if (afterDoc >= 0 && afterDoc < size) {
+            List<int[]> order = Arrays.asList(runs);
+            r = findRun(order, prices, afterDoc);
+            index = indexIn(runs[r], prices, afterDoc) + step;
+        } else {
+            r = descending ? runs.length - 1 : 0;
+            index = descending ? runs[r].length - 1 : 0;
+        }
+        int count = 0;
+        while (count < k) {
+            if (index < 0) {
+                if (--r < 0) {
+                    break;
+                }
+                index = runs[r].length - 1;
+            } else if (index >= runs[r].length) {
+                if (++r == runs.length) {
+                    break;
+                }
+                index = 0;
+            }
+            int doc = runs[r][index];
+            if (accept.test(doc)) {
+                out[count++] = doc;
+            }
+            index += step;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,157 @@
+package index;
+
+import algorithm.SuffixArray;
+import model.Product;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Подстрочный индекс на основе суффиксного массива над объединенным текстом всех продуктов.
+// Поля каждого продукта (имя, описание, категория) записываются в общий текст в нижнем регистре
+// через разделитель, поэтому совпадение никогда не пересекает границу поля.
+
+public class SuffixArrayIndex {
+    public static final int FIELD_NAME = 1;
+    public static final int FIELD_DESCRIPTION = 2;
+    public static final int FIELD_CATEGORY = 4;
+
+    private static final char SEPARATOR = '\u0001';
+    private static final int FIELDS_PER_PRODUCT = 3;
+
+    private final char[] text;
+    private final int[] suffixArray;
+    private final int[] lcp;
+    private final int[] segmentStarts; // начало каждого поля в объединенном тексте
+    private final int[] segmentProductIds;
+    private final long buildTimeMillis;
+
+    public SuffixArrayIndex(Collection<Product> products) {
+        long startTime = System.nanoTime();
+
+        StringBuilder corpus = new StringBuilder();
+        int segments = products.size() * FIELDS_PER_PRODUCT;
+        this.segmentStarts = new int[segments];
+        this.segmentProductIds = new int[segments];
+
+        int segment = 0;
+        for (Product product : products) {
+            String[] fields = {product.getName(), product.getDescription(), product.getCategory()};
+            for (String field : fields) {
+                segmentStarts[segment] = corpus.length();
+                segmentProductIds[segment] = product.getId();
+                if (field != null) {
+                    corpus.append(field.toLowerCase());
+                }
+                corpus.append(SEPARATOR);
+                segment++;
+            }
+        }
+
+        this.text = new char[corpus.length()];
+        corpus.getChars(0, corpus.length(), text, 0);
+        this.suffixArray = SuffixArray.build(text);
+        this.lcp = SuffixArray.buildLcp(text, suffixArray);
+        this.buildTimeMillis = (System.nanoTime() - startTime) / 1_000_000;
+    }
+
+    // Возвращает для каждого найденного продукта битовую маску полей, содержащих подстроку
+    public Map<Integer, Integer> findFieldMatches(String pattern) {
+        Map<Integer, Integer> matches = new HashMap<>();
+        if (pattern == null || pattern.isEmpty()) {
+            return matches;
+        }
+
+        String lowerPattern = pattern.toLowerCase();
+        int first = lowerBound(lowerPattern);
+        if (first == suffixArray.length || !startsWith(suffixArray[first], lowerPattern)) {
+            return matches;
+        }
+
+        // Все суффиксы с этим префиксом идут подряд: продолжаем, пока LCP не меньше длины шаблона
+        int m = lowerPattern.length();
+        for (int i = first; i < suffixArray.length && (i == first || lcp[i] >= m); i++) {
+            int segment = segmentOf(suffixArray[i]);
+            int field = 1 << (segment % FIELDS_PER_PRODUCT);
+            matches.merge(segmentProductIds[segment], field, (a, b) -> a | b);
+        }
+        return matches;
+    }
+
+    // Возвращает id продуктов, у которых подстрока встречается хотя бы в одном из указанных полей
+    public Set<Integer> findProducts(String pattern, int fieldMask) {
+        Set<Integer> productIds = new TreeSet<>();
+        for (Map.Entry<Integer, Integer> entry : findFieldMatches(pattern).entrySet()) {
+            if ((entry.getValue() & fieldMask) != 0) {
+                productIds.add(entry.getKey());
+            }
+        }
+        return productIds;
+    }
+
+    // Первый суффикс, не меньший шаблона (сравнение по первым |pattern| символам): O(|pattern| log n)
+    private int lowerBound(String pattern) {
+        int lo = 0;
+        int hi = suffixArray.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareSuffix(suffixArray[mid], pattern) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int compareSuffix(int offset, String pattern) {
+        int m = pattern.length();
+        for (int k = 0; k < m; k++) {
+            if (offset + k >= text.length) {
+                return -1;
+            }
+            char c = text[offset + k];
+            char p = pattern.charAt(k);
+            if (c != p) {
+                return c < p ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private boolean startsWith(int offset, String pattern) {
+        return compareSuffix(offset, pattern) == 0;
+    }
+
+    private int segmentOf(int offset) {
+        int lo = 0;
+        int hi = segmentStarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segmentStarts[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    public long getBuildTimeMillis() {
+        return buildTimeMillis;
+    }
+
+    public int getTextLength() {
+        return text.length;
+    }
+
+    // Оценка занимаемой памяти: текст, суффиксный массив, LCP и таблица полей
+    public long getMemoryFootprintBytes() {
+        return (long) text.length * Character.BYTES
+                + (long) suffixArray.length * Integer.BYTES
+                + (long) lcp.length * Integer.BYTES
+                + (long) segmentStarts.length * Integer.BYTES * 2;
+    }
+}
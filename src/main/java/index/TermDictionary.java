@@ -0,0 +1,42 @@
+package index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Словарь терминов: сопоставляет каждому слову каталога порядковый номер (ординал)
+
+public class TermDictionary {
+    private final Map<String, Integer> ordinals;
+    private final List<String> terms;
+
+    public TermDictionary() {
+        this.ordinals = new HashMap<>();
+        this.terms = new ArrayList<>();
+    }
+
+    public int getOrAdd(String term) {
+        Integer ordinal = ordinals.get(term);
+        if (ordinal == null) {
+            ordinal = terms.size();
+            ordinals.put(term, ordinal);
+            terms.add(term);
+        }
+        return ordinal;
+    }
+
+    // Возвращает ординал термина или -1, если термин отсутствует в словаре
+    public int getOrdinal(String term) {
+        Integer ordinal = ordinals.get(term);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public String getTerm(int ordinal) {
+        return terms.get(ordinal);
+    }
+
+    public int size() {
+        return terms.size();
+    }
+}
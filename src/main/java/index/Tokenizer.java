@@ -0,0 +1,59 @@
+package index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Разбивает текст на слова по тем же правилам, что и split("\\W+"), но без регулярных выражений
+// и без пустых токенов
+
+public class Tokenizer {
+
+    public static String[] tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i < length; i++) {
+            if (isWordChar(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(text.substring(start));
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    // Границы токенов в тексте парами [start, end): offsets[2 * i] и offsets[2 * i + 1] для i-го токена
+    public static int[] tokenOffsets(String text) {
+        int[] offsets = new int[16];
+        int count = 0;
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            if (i < length && isWordChar(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                if (count + 2 > offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[count++] = start;
+                offsets[count++] = i;
+                start = -1;
+            }
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    // Символ слова в смысле \w: латиница, цифры и подчеркивание
+    public static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
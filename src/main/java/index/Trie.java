@@ -24,6 +24,26 @@ public class Trie {
         current.isEndOfWord = true;
     }
 
+    // Удаляет слово; узлы, не ведущие больше ни к одному слову, удаляются
+    public void remove(String word) {
+        remove(root, word, 0);
+    }
+
+    private boolean remove(TrieNode node, String word, int depth) {
+        if (depth == word.length()) {
+            node.isEndOfWord = false;
+        } else {
+            TrieNode child = node.children.get(word.charAt(depth));
+            if (child == null) {
+                return false;
+            }
+            if (remove(child, word, depth + 1)) {
+                node.children.remove(word.charAt(depth));
+            }
+        }
+        return !node.isEndOfWord && node.children.isEmpty();
+    }
+
     public List<String> autocomplete(String prefix) {
         List<String> results = new ArrayList<>();
         TrieNode current = root;
@@ -0,0 +1,243 @@
+package index;
+
+import algorithm.Utf8Slice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Строковая колонка: значения всех документов хранятся в UTF-8 подряд в общем массиве байт,
+// а для каждого внутреннего id — положение и длина. Вместо объекта String на поле в куче остаются
+// несколько массивов, а строка декодируется только при чтении.
+// Колонка вне кучи держит байты в блоках ByteBuffer.allocateDirect: сборщик мусора их не просматривает
+// и не копирует, а в куче остаются только массивы положений и длин.
+// Перезапись значения дописывает новые байты в конец, старые остаются в массиве. Когда массиву в куче
+// нужно расти, а перезаписанные байты занимают не меньше половины, колонка сжимается вместо роста,
+// поэтому массив не больше удвоенного объема живых значений. Массив в куче ограничен 2 ГБ: изменение,
+// которому не хватает места и после сжатия, отклоняется IllegalStateException до записи
+
+public class Utf8Column {
+    // Получатель байт значения без промежуточной строки
+    public interface Utf8Reader {
+        void read(byte[] bytes, int offset, int length) throws IOException;
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NULL_LENGTH = -1;
+    private static final int BLOCK_SIZE = 1 << 20;
+    // Наибольший массив, который выделяет JVM
+    public static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final boolean offHeap;
+    private final int maxHeapBytes;
+    private byte[] arena;                  // в куче
+    private final List<ByteBuffer> blocks; // вне кучи; значение не пересекает границу блока
+    private long arenaSize;
+    private long liveBytes;                // байты текущих значений, без перезаписанных
+    private long[] starts;                 // в куче — смещение, вне кучи — номер блока << 32 | смещение
+    private int[] lengths;                 // NULL_LENGTH для null
+    private int size;
+
+    public Utf8Column() {
+        this(false);
+    }
+
+    public Utf8Column(boolean offHeap) {
+        this(offHeap, MAX_ARRAY_LENGTH);
+    }
+
+    // maxHeapBytes — предел массива байт в куче; меньше MAX_ARRAY_LENGTH задается в тестах
+    public Utf8Column(boolean offHeap, int maxHeapBytes) {
+        this.offHeap = offHeap;
+        this.maxHeapBytes = maxHeapBytes;
+        this.arena = offHeap ? null : new byte[INITIAL_CAPACITY * 16];
+        this.blocks = offHeap ? new ArrayList<>() : null;
+        this.starts = new long[INITIAL_CAPACITY];
+        this.lengths = new int[INITIAL_CAPACITY];
+    }
+
+    // Записывает значение документа doc; doc == size() добавляет новый документ
+    public void set(int doc, String value) {
+        if (doc < 0 || doc > size) {
+            throw new IndexOutOfBoundsException("Document " + doc + " out of range for size " + size);
+        }
+        if (doc == starts.length) {
+            if (doc == MAX_ARRAY_LENGTH) {
+                throw new IllegalStateException("Text column is full: " + doc + " documents");
+            }
+            int capacity = (int) Math.min(MAX_ARRAY_LENGTH, starts.length * 2L);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+        int previous = doc < size ? Math.max(lengths[doc], 0) : 0;
+        if (bytes != null) {
+            checkCapacity(bytes.length - previous); // до изменения колонки
+        }
+        if (previous > 0) {
+            // Прежнее значение больше не живое: сжатие его не переносит
+            liveBytes -= previous;
+            lengths[doc] = NULL_LENGTH;
+        }
+        if (bytes == null) {
+            starts[doc] = 0;
+            lengths[doc] = NULL_LENGTH;
+        } else {
+            starts[doc] = offHeap ? appendOffHeap(bytes) : appendOnHeap(bytes);
+            lengths[doc] = bytes.length;
+            arenaSize += bytes.length;
+            liveBytes += bytes.length;
+        }
+        if (doc == size) {
+            size++;
+        }
+    }
+
+    public String get(int doc) {
+        int length = lengths[checkIndex(doc)];
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (!offHeap) {
+            return new String(arena, (int) starts[doc], length, StandardCharsets.UTF_8);
+        }
+        // Абсолютное чтение не меняет позицию буфера, поэтому безопасно из нескольких потоков
+        byte[] bytes = new byte[length];
+        blocks.get((int) (starts[doc] >>> 32)).get((int) starts[doc], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Передает байты значения получателю: из кучи — прямо из общего массива, вне кучи — через копию.
+    // Возвращает false для null
+    public boolean read(int doc, Utf8Reader reader) throws IOException {
+        int length = lengths[checkIndex(doc)];
+        if (length == NULL_LENGTH) {
+            return false;
+        }
+        if (!offHeap) {
+            reader.read(arena, (int) starts[doc], length);
+        } else {
+            byte[] bytes = new byte[length];
+            blocks.get((int) (starts[doc] >>> 32)).get((int) starts[doc], bytes);
+            reader.read(bytes, 0, length);
+        }
+        return true;
+    }
+
+    // Байты значения как срез для поиска без декодирования; null — пустой срез.
+    // В куче срез смотрит прямо в общий массив: запись в колонку только дописывает байты, а сжатие
+    // создает новый массив, поэтому срез остается верным, пока читатель держит блокировку каталога.
+    // Вне кучи байты копируются
+    public Utf8Slice slice(int doc) {
+        int length = lengths[checkIndex(doc)];
+        if (length == NULL_LENGTH) {
+            return Utf8Slice.EMPTY;
+        }
+        if (!offHeap) {
+            return new Utf8Slice(arena, (int) starts[doc], length);
+        }
+        byte[] bytes = new byte[length];
+        blocks.get((int) (starts[doc] >>> 32)).get((int) starts[doc], bytes);
+        return new Utf8Slice(bytes, 0, length);
+    }
+
+    // Копия байт значения или null: не зависит от последующих перезаписей колонки
+    public byte[] getBytes(int doc) {
+        int length = lengths[checkIndex(doc)];
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        if (!offHeap) {
+            System.arraycopy(arena, (int) starts[doc], bytes, 0, length);
+        } else {
+            blocks.get((int) (starts[doc] >>> 32)).get((int) starts[doc], bytes);
+        }
+        return bytes;
+    }
+
+    // Длина значения в байтах UTF-8 или -1 для null
+    public int byteLength(int doc) {
+        return lengths[checkIndex(doc)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    // Байты значений, включая перезаписанные и еще не освобожденные сжатием
+    public long getArenaBytes() {
+        return arenaSize;
+    }
+
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    // Проверяет, что еще additionalBytes байт значений поместятся в колонку (с учетом сжатия);
+    // иначе IllegalStateException. Позволяет отклонить изменение до того, как оно начнет применяться
+    public void checkCapacity(long additionalBytes) {
+        if (!offHeap && liveBytes + additionalBytes > maxHeapBytes) {
+            throw new IllegalStateException("Text column would hold " + (liveBytes + additionalBytes)
+                    + " bytes, more than the limit of " + maxHeapBytes);
+        }
+    }
+
+    private long appendOnHeap(byte[] bytes) {
+        if (arenaSize + bytes.length > arena.length) {
+            // Перезаписанные байты занимают не меньше половины массива: место освобождается без роста
+            // Рост за предел тоже заменяется сжатием: checkCapacity гарантирует, что живые значения поместятся
+            if (arenaSize - liveBytes >= liveBytes || arenaSize + bytes.length > maxHeapBytes) {
+                compact();
+            }
+            if (arenaSize + bytes.length > arena.length) {
+                int capacity = (int) Math.min(maxHeapBytes, Math.max(arena.length * 2L, arenaSize + bytes.length));
+                arena = Arrays.copyOf(arena, capacity);
+            }
+        }
+        int start = (int) arenaSize;
+        System.arraycopy(bytes, 0, arena, start, bytes.length);
+        return start;
+    }
+
+    // Переносит живые значения в начало нового массива в порядке документов
+    private void compact() {
+        byte[] compacted = new byte[(int) Math.max(liveBytes, Math.min(arena.length, INITIAL_CAPACITY * 16))];
+        int position = 0;
+        for (int doc = 0; doc < size; doc++) {
+            int length = lengths[doc];
+            if (length > 0) {
+                System.arraycopy(arena, (int) starts[doc], compacted, position, length);
+            }
+            starts[doc] = position;
+            position += Math.max(length, 0);
+        }
+        arena = compacted;
+        arenaSize = position;
+    }
+
+    private long appendOffHeap(byte[] bytes) {
+        ByteBuffer block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        if (block == null || block.remaining() < bytes.length) {
+            block = ByteBuffer.allocateDirect(Math.max(BLOCK_SIZE, bytes.length));
+            blocks.add(block);
+        }
+        int offset = block.position();
+        block.put(bytes);
+        return ((long) (blocks.size() - 1) << 32) | offset;
+    }
+
+    private int checkIndex(int doc) {
+        if (doc < 0 || doc >= size) {
+            throw new IndexOutOfBoundsException("Document " + doc + " out of range for size " + size);
+        }
+        return doc;
+    }
+}
@@ -0,0 +1,70 @@
+package model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+// Одна строка NDJSON для /api/products/bulk: add и update несут продукт в формате каталога,
+// delete — только id. op: add (новый продукт), update (замена существующего), delete
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BulkOperation {
+    public static final String ADD = "add";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+
+    private String op;
+    private Integer id;
+    private Product product;
+
+    // Конструктор по умолчанию для Jackson
+    public BulkOperation() {}
+
+    public BulkOperation(String op, Integer id, Product product) {
+        this.op = op;
+        this.id = id;
+        this.product = product;
+    }
+
+    public static BulkOperation add(Product product) {
+        return new BulkOperation(ADD, null, product);
+    }
+
+    public static BulkOperation update(Product product) {
+        return new BulkOperation(UPDATE, null, product);
+    }
+
+    public static BulkOperation delete(int id) {
+        return new BulkOperation(DELETE, id, null);
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public void setProduct(Product product) {
+        this.product = product;
+    }
+
+    // id продукта операции: явный id или id переданного продукта
+    public Integer getProductId() {
+        if (id != null) {
+            return id;
+        }
+        return product != null ? product.getId() : null;
+    }
+}
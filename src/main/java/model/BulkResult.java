@@ -0,0 +1,66 @@
+package model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// Итог одной операции пакетной загрузки. status: created, updated, deleted — применена;
+// conflict (add существующего id), not_found (update или delete отсутствующего), invalid (строку
+// не удалось разобрать), rejected (очередь переполнена, можно повторить), failed (ошибка применения пакета),
+// indeterminate (пакет записан в журнал, но не применен к индексу: вступит в силу при восстановлении)
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkResult {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    public static final String CONFLICT = "conflict";
+    public static final String NOT_FOUND = "not_found";
+    public static final String INVALID = "invalid";
+    public static final String REJECTED = "rejected";
+    public static final String FAILED = "failed";
+    public static final String INDETERMINATE = "indeterminate";
+
+    private final int line;
+    private final String op;
+    private final Integer id;
+    private final String status;
+    private final String error;
+
+    public BulkResult(int line, String op, Integer id, String status, String error) {
+        this.line = line;
+        this.op = op;
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    // Операция применена к индексу
+    public boolean isApplied() {
+        return CREATED.equals(status) || UPDATED.equals(status) || DELETED.equals(status);
+    }
+
+    @Override
+    public String toString() {
+        return "BulkResult{line=" + line + ", op=" + op + ", id=" + id + ", status=" + status
+                + (error != null ? ", error=" + error : "") + "}";
+    }
+}
@@ -0,0 +1,29 @@
+package model;
+
+import java.util.Map;
+
+// Фасеты по всем найденным продуктам (а не только по странице): число продуктов
+// в каждой категории и в каждом ценовом диапазоне
+
+public class FacetCounts {
+    private final Map<String, Integer> categories;
+    private final Map<String, Integer> priceRanges;
+
+    public FacetCounts(Map<String, Integer> categories, Map<String, Integer> priceRanges) {
+        this.categories = categories;
+        this.priceRanges = priceRanges;
+    }
+
+    public Map<String, Integer> getCategories() {
+        return categories;
+    }
+
+    public Map<String, Integer> getPriceRanges() {
+        return priceRanges;
+    }
+
+    @Override
+    public String toString() {
+        return "FacetCounts{categories=" + categories + ", priceRanges=" + priceRanges + "}";
+    }
+}
@@ -0,0 +1,45 @@
+package model;
+
+// Нормализованный текст продукта: ординалы токенов полей в нижнем регистре и границы токенов
+// имени и описания (векторы терминов для подсветки).
+// Сами поля в нижнем регистре хранятся байтами UTF-8 в колонках DataManager, а не строками на продукт.
+// Вычисляется один раз при загрузке и используется всеми стратегиями поиска и ранжирования.
+
+public class ProductText {
+    private final int[] nameTerms;
+    private final int[] descriptionTerms;
+    private final int[] categoryTerms;
+    // Пары [start, end) для каждого токена поля, в том же порядке, что и ординалы; null, если
+    // в нижнем регистре длина поля изменилась и границы не переносятся на исходный текст
+    private final int[] nameOffsets;
+    private final int[] descriptionOffsets;
+
+    public ProductText(int[] nameTerms, int[] descriptionTerms, int[] categoryTerms,
+                       int[] nameOffsets, int[] descriptionOffsets) {
+        this.nameTerms = nameTerms;
+        this.descriptionTerms = descriptionTerms;
+        this.categoryTerms = categoryTerms;
+        this.nameOffsets = nameOffsets;
+        this.descriptionOffsets = descriptionOffsets;
+    }
+
+    public int[] getNameTerms() {
+        return nameTerms;
+    }
+
+    public int[] getDescriptionTerms() {
+        return descriptionTerms;
+    }
+
+    public int[] getCategoryTerms() {
+        return categoryTerms;
+    }
+
+    public int[] getNameOffsets() {
+        return nameOffsets;
+    }
+
+    public int[] getDescriptionOffsets() {
+        return descriptionOffsets;
+    }
+}
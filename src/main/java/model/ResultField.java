@@ -0,0 +1,56 @@
+package model;
+
+import java.util.EnumSet;
+
+// Поля результата поиска, которые можно выбрать параметром fields: поля продукта
+// и поля самого результата. Имена совпадают с именами в JSON-ответе
+
+public enum ResultField {
+    ID("id", true),
+    NAME("name", true),
+    DESCRIPTION("description", true),
+    CATEGORY("category", true),
+    PRICE("price", true),
+    IMAGE("image", true),
+    RELEVANCE_SCORE("relevanceScore", false),
+    MATCH_TYPE("matchType", false),
+    HIGHLIGHTED_TEXT("highlightedText", false),
+    RELEVANCE_PERCENTAGE("relevancePercentage", false);
+
+    private final String jsonName;
+    private final boolean productField;
+
+    ResultField(String jsonName, boolean productField) {
+        this.jsonName = jsonName;
+        this.productField = productField;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    public boolean isProductField() {
+        return productField;
+    }
+
+    // Список полей через запятую, например "id,name,price"; null — все поля
+    public static EnumSet<ResultField> parse(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        EnumSet<ResultField> selected = EnumSet.noneOf(ResultField.class);
+        for (String name : fields.split(",")) {
+            selected.add(fromJsonName(name.trim()));
+        }
+        return selected;
+    }
+
+    private static ResultField fromJsonName(String name) {
+        for (ResultField field : values()) {
+            if (field.jsonName.equals(name)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported field: " + name);
+    }
+}
@@ -0,0 +1,54 @@
+package model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Курсор постраничной выдачи (search_after): оценка и внутренний id последнего результата страницы.
+// Следующая страница содержит только результаты, идущие в порядке ранжирования строго после него.
+
+public class SearchCursor {
+    private final double score;
+    private final int docId;
+
+    public SearchCursor(double score, int docId) {
+        this.score = score;
+        this.docId = docId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int getDocId() {
+        return docId;
+    }
+
+    // Непрозрачная строка для клиента; оценка кодируется точно, без потерь при округлении
+    @JsonValue
+    public String encode() {
+        String raw = Long.toHexString(Double.doubleToLongBits(score)) + ":" + Integer.toHexString(docId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf(':');
+            double score = Double.longBitsToDouble(Long.parseUnsignedLong(raw.substring(0, separator), 16));
+            int docId = Integer.parseInt(raw.substring(separator + 1), 16);
+            if (Double.isNaN(score) || docId < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+            return new SearchCursor(score, docId);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
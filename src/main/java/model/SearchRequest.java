@@ -0,0 +1,108 @@
+package model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
+
+// Параметры поискового запроса: строка запроса и необязательные размер страницы, курсор,
+// фасеты, фильтр по цене, порядок сортировки и список возвращаемых полей.
+// Неизвестные поля в JSON не игнорируются: опечатка в имени параметра отклоняет запрос
+
+public class SearchRequest {
+    @JsonProperty("q")
+    private String query;
+
+    private Integer limit;
+    private String cursor;
+    private boolean facets;
+    private Double minPrice;
+    private Double maxPrice;
+    private String sort;
+    private String fields;
+
+    // Конструктор по умолчанию для Jackson
+    public SearchRequest() {}
+
+    public SearchRequest(String query, Integer limit, String cursor) {
+        this.query = query;
+        this.limit = limit;
+        this.cursor = cursor;
+    }
+
+    @JsonProperty("q")
+    public String getQuery() {
+        return query;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    // Считать фасеты по всем найденным продуктам
+    public boolean isFacets() {
+        return facets;
+    }
+
+    public void setFacets(boolean facets) {
+        this.facets = facets;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    // relevance (по умолчанию), price_asc или price_desc
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    // Поля результата через запятую (см. ResultField); null — все поля
+    public String getFields() {
+        return fields;
+    }
+
+    public void setFields(String fields) {
+        this.fields = fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SearchRequest that = (SearchRequest) o;
+        return Objects.equals(query, that.query) && Objects.equals(limit, that.limit)
+                && Objects.equals(cursor, that.cursor) && facets == that.facets
+                && Objects.equals(minPrice, that.minPrice) && Objects.equals(maxPrice, that.maxPrice)
+                && Objects.equals(sort, that.sort) && Objects.equals(fields, that.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(query, limit, cursor, facets, minPrice, maxPrice, sort, fields);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchRequest{q='" + query + "', limit=" + limit + ", cursor=" + cursor + ", facets=" + facets
+                + ", minPrice=" + minPrice + ", maxPrice=" + maxPrice + ", sort=" + sort + ", fields=" + fields + "}";
+    }
+}
@@ -0,0 +1,48 @@
+package model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+// Ответ поиска: страница результатов, признак того, что часть стратегий не уложилась в бюджет времени,
+// курсор следующей страницы (null, если страница последняя) и фасеты, если они запрошены
+
+public class SearchResponse {
+    private final List<SearchResult> results;
+    private final boolean partial;
+    private final SearchCursor nextCursor;
+    private final FacetCounts facets;
+
+    public SearchResponse(List<SearchResult> results, boolean partial) {
+        this(results, partial, null);
+    }
+
+    public SearchResponse(List<SearchResult> results, boolean partial, SearchCursor nextCursor) {
+        this(results, partial, nextCursor, null);
+    }
+
+    public SearchResponse(List<SearchResult> results, boolean partial, SearchCursor nextCursor,
+                          FacetCounts facets) {
+        this.results = results;
+        this.partial = partial;
+        this.nextCursor = nextCursor;
+        this.facets = facets;
+    }
+
+    public List<SearchResult> getResults() {
+        return results;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public SearchCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public FacetCounts getFacets() {
+        return facets;
+    }
+}
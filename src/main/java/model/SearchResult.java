@@ -15,6 +15,13 @@ public class SearchResult {
         this.highlightedText = "";
     }
     
+    public SearchResult(Product product, double relevanceScore, String highlightedText) {
+        this.product = product;
+        this.relevanceScore = relevanceScore;
+        this.matchType = determineMatchType(relevanceScore);
+        this.highlightedText = highlightedText;
+    }
+    
     public SearchResult(Product product, double relevanceScore, String matchType, String highlightedText) {
         this.product = product;
         this.relevanceScore = relevanceScore;
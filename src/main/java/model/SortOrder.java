@@ -0,0 +1,22 @@
+package model;
+
+// Порядок выдачи результатов поиска
+
+public enum SortOrder {
+    RELEVANCE,
+    PRICE_ASC,
+    PRICE_DESC;
+
+    // Значение параметра sort: relevance, price_asc или price_desc (null — по релевантности)
+    public static SortOrder fromParameter(String value) {
+        if (value == null) {
+            return RELEVANCE;
+        }
+        for (SortOrder order : values()) {
+            if (order.name().equalsIgnoreCase(value)) {
+                return order;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported sort: " + value);
+    }
+}
@@ -0,0 +1,308 @@
+package service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import model.BulkOperation;
+import model.BulkResult;
+import model.Product;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Пакетное применение изменений каталога к работающему движку. Операции всех запросов попадают
+// в ограниченную очередь, один поток собирает из нее пакет до batchSize операций или до maxDelay
+// с момента первой и применяет его к индексу одним вызовом applyBulk под одной блокировкой записи.
+// Заполненная очередь — сигнал, что индексация не успевает: submit ждет места, и отправитель
+// перестает читать тело запроса, а по истечении ожидания операция отклоняется.
+// С журналом изменений пакет сначала дописывается в журнал и сбрасывается на диск одним force для всех
+// его операций, и только потом применяется к движку: подтвержденная операция переживает сбой.
+// Если записанный пакет не удалось применить, индекс расходится с журналом: операции пакета получают
+// indeterminate (они вступят в силу при восстановлении из журнала), а загрузка останавливается до перезапуска.
+
+public class BulkIngestor implements AutoCloseable {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Supplier<EngineHandle> engines;
+    private final WriteAheadLog wal;           // null — без журнала
+    private final Object commitLock;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread applier;
+    private final AtomicLong batchesApplied = new AtomicLong();
+    private final AtomicLong operationsApplied = new AtomicLong();
+    private volatile boolean closed;
+    private volatile String stopped;           // причина остановки после сбоя применения записанного пакета
+
+    // Операция в очереди и обещание ее итога
+    private static final class Pending {
+        final int line;
+        final BulkOperation operation;
+        final int productId;
+        final CompletableFuture<BulkResult> result = new CompletableFuture<>();
+
+        Pending(int line, BulkOperation operation, int productId) {
+            this.line = line;
+            this.operation = operation;
+            this.productId = productId;
+        }
+
+        void complete(String status, String error) {
+            result.complete(new BulkResult(line, operation.getOp(), productId, status, error));
+        }
+    }
+
+    // engines выдает захваченный текущий движок; пакет закрывает его после применения
+    public BulkIngestor(Supplier<EngineHandle> engines, int batchSize, long maxDelayMillis, int queueCapacity) {
+        this(engines, batchSize, maxDelayMillis, queueCapacity, null);
+    }
+
+    public BulkIngestor(Supplier<EngineHandle> engines, int batchSize, long maxDelayMillis, int queueCapacity,
+                        WriteAheadLog wal) {
+        if (batchSize <= 0 || queueCapacity <= 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Batch size and queue capacity must be positive, delay non-negative");
+        }
+        this.engines = engines;
+        this.wal = wal;
+        // Монитор журнала упорядочивает запись пакета, его применение и замену движка переиндексацией
+        this.commitLock = wal != null ? wal : new Object();
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.applier = new Thread(this::run, "bulk-ingest");
+        this.applier.setDaemon(true);
+    }
+
+    public void start() {
+        applier.start();
+    }
+
+    // Разбирает строку NDJSON и ставит операцию в очередь. Строка, которая не является объектом операции
+    // (в том числе литерал null или массив), и неверная операция сразу получают invalid
+    public CompletableFuture<BulkResult> submit(int line, String json, long timeoutMillis)
+            throws InterruptedException {
+        BulkOperation operation;
+        try {
+            JsonNode node = MAPPER.readTree(json);
+            if (node == null || !node.isObject()) {
+                return invalid(line, null, null, "Operation must be a JSON object");
+            }
+            operation = MAPPER.treeToValue(node, BulkOperation.class);
+        } catch (JsonProcessingException e) {
+            return invalid(line, null, null, "Malformed operation: " + e.getOriginalMessage());
+        }
+        try {
+            return submit(line, operation, timeoutMillis);
+        } catch (IllegalArgumentException e) {
+            return invalid(line, operation.getOp(), operation.getProductId(), e.getMessage());
+        }
+    }
+
+    private static CompletableFuture<BulkResult> invalid(int line, String op, Integer productId, String error) {
+        return CompletableFuture.completedFuture(new BulkResult(line, op, productId, BulkResult.INVALID, error));
+    }
+
+    // Ставит операцию в очередь, ожидая места не дольше timeoutMillis. Неверная операция дает
+    // IllegalArgumentException; при переполненной очереди итог сразу rejected
+    public CompletableFuture<BulkResult> submit(int line, BulkOperation operation, long timeoutMillis)
+            throws InterruptedException {
+        Pending pending = new Pending(line, operation, validate(operation));
+        if (stopped != null) {
+            pending.complete(BulkResult.FAILED, stopped);
+        } else if (closed || !queue.offer(pending, timeoutMillis, TimeUnit.MILLISECONDS)) {
+            pending.complete(BulkResult.REJECTED, closed ? "Ingest is shut down" : "Ingest queue is full, retry later");
+        } else if (stopped != null) {
+            failQueued(); // загрузка остановилась, пока операция ждала места
+        }
+        return pending.result;
+    }
+
+    // Проверяет операцию и возвращает id продукта
+    private static int validate(BulkOperation operation) {
+        if (operation == null) {
+            throw new IllegalArgumentException("Operation must be a JSON object");
+        }
+        String op = operation.getOp();
+        if (op == null) {
+            throw new IllegalArgumentException("Missing op: expected add, update or delete");
+        }
+        Integer productId = operation.getProductId();
+        switch (op) {
+            case BulkOperation.ADD:
+            case BulkOperation.UPDATE:
+                Product product = operation.getProduct();
+                if (product == null) {
+                    throw new IllegalArgumentException("Operation " + op + " requires a product");
+                }
+                if (operation.getId() != null && operation.getId() != product.getId()) {
+                    throw new IllegalArgumentException("id " + operation.getId()
+                            + " does not match product id " + product.getId());
+                }
+                // Запись без текстовых полей не попадает ни в журнал, ни в индекс
+                requireText("title", product.getName());
+                requireText("description", product.getDescription());
+                requireText("category", product.getCategory());
+                break;
+            case BulkOperation.DELETE:
+                if (productId == null) {
+                    throw new IllegalArgumentException("Operation delete requires an id");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown op: " + op + ", expected add, update or delete");
+        }
+        if (productId <= 0) {
+            throw new IllegalArgumentException("Product id must be positive");
+        }
+        return productId;
+    }
+
+    private static void requireText(String field, String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Product requires a non-empty " + field);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        try {
+            while (!closed && stopped == null) {
+                Pending first = queue.take();
+                batch.add(first);
+                // Пакет набирается до batchSize операций или до maxDelay с момента первой
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                apply(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Pending pending : batch) {
+                pending.complete(BulkResult.REJECTED, "Ingest is shut down");
+            }
+            if (stopped != null) {
+                failQueued();
+            }
+        }
+    }
+
+    // Операции, не попавшие в журнал до остановки загрузки, не применены
+    private void failQueued() {
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (Pending pending : left) {
+            pending.complete(BulkResult.FAILED, stopped);
+        }
+    }
+
+    // Применяет пакет к движку одним вызовом: проверка существования, запись в журнал и применение
+    // выполняются движком под одной блокировкой писателей
+    private void apply(List<Pending> batch) {
+        // Итоги выставляются после применения пакета, чтобы ни одна операция не завершилась раньше него
+        String[] statuses = new String[batch.size()];
+        String[] errors = new String[batch.size()];
+        List<BulkOperation> operations = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            operations.add(pending.operation);
+        }
+        boolean[] logged = new boolean[1];
+        synchronized (commitLock) {
+            try (EngineHandle handle = engines.get()) {
+                String[] applied = handle.getEngine().applyBulk(operations, wal == null ? null : (upserts, removed) -> {
+                    wal.append(upserts, removed);
+                    wal.sync();
+                    logged[0] = true;
+                });
+                int changes = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    statuses[i] = applied[i];
+                    if (BulkResult.CONFLICT.equals(applied[i])) {
+                        errors[i] = "Product " + batch.get(i).productId + " already exists";
+                    } else if (BulkResult.NOT_FOUND.equals(applied[i])) {
+                        errors[i] = "Product " + batch.get(i).productId + " does not exist";
+                    } else {
+                        changes++;
+                    }
+                }
+                if (changes > 0) {
+                    batchesApplied.incrementAndGet();
+                    operationsApplied.addAndGet(changes);
+                    if (wal != null) {
+                        checkpointIfDue(handle.getDataManager());
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (logged[0]) {
+                    // Пакет уже сброшен в журнал и будет применен при восстановлении, поэтому он не failed
+                    stopped = "Ingest stopped: a logged batch failed to apply (" + e.getMessage()
+                            + "), restart to recover it from the write-ahead log";
+                    System.err.println(stopped);
+                    Arrays.fill(statuses, BulkResult.INDETERMINATE);
+                    Arrays.fill(errors, stopped);
+                } else {
+                    // Пакет применяется целиком или не применяется: итоги проверки тоже не выдаются
+                    Arrays.fill(statuses, BulkResult.FAILED);
+                    Arrays.fill(errors, e.getMessage());
+                }
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(statuses[i], errors[i]);
+        }
+    }
+
+    // Снимок каталога берется сразу после применения пакета, пока следующий не начался
+    private void checkpointIfDue(DataManager dataManager) {
+        try {
+            wal.checkpointIfDue(() -> dataManager.getAllProducts().values());
+        } catch (IOException e) {
+            // Пакет уже в журнале и применен; контрольная точка будет предпринята после следующего
+            System.err.println("Cannot start checkpoint: " + e.getMessage());
+        }
+    }
+
+    public long getBatchesApplied() {
+        return batchesApplied.get();
+    }
+
+    public long getOperationsApplied() {
+        return operationsApplied.get();
+    }
+
+    // Операции, ожидающие применения
+    public int getQueued() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        applier.interrupt();
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (Pending pending : left) {
+            pending.complete(BulkResult.REJECTED, "Ingest is shut down");
+        }
+    }
+}
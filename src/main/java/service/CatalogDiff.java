@@ -0,0 +1,80 @@
+package service;
+
+import model.Product;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// Разница между файлом каталога и загруженным хранилищем: новые и измененные продукты
+// и id удаленных. Файл читается потоково; в памяти остаются только измененные продукты,
+// неизмененные отбрасываются сразу после сравнения хеша содержимого.
+
+public class CatalogDiff {
+    private final List<Product> upserts = new ArrayList<>();
+    private final List<Integer> removedProductIds = new ArrayList<>();
+    private int added;
+    private int changed;
+    private long scanned;
+
+    public static CatalogDiff compute(Path catalog, DataManager dataManager) throws IOException {
+        CatalogDiff diff = new CatalogDiff();
+        int documentCount = dataManager.getDocumentCount();
+        BitSet seen = new BitSet(documentCount);
+        diff.scanned = ProductLoader.streamProducts(catalog, product -> {
+            int doc = dataManager.getDocId(product.getId());
+            if (doc < 0 || doc >= documentCount) {
+                diff.upserts.add(product);
+                diff.added++;
+                return;
+            }
+            seen.set(doc);
+            if (dataManager.getContentHash(doc) != DataManager.contentHash(product)) {
+                diff.upserts.add(product);
+                diff.changed++;
+            }
+        });
+        for (int doc = seen.nextClearBit(0); doc < documentCount; doc = seen.nextClearBit(doc + 1)) {
+            if (!dataManager.isDeleted(doc)) {
+                diff.removedProductIds.add(dataManager.getProductIdByDocId(doc));
+            }
+        }
+        return diff;
+    }
+
+    public List<Product> getUpserts() {
+        return upserts;
+    }
+
+    public List<Integer> getRemovedProductIds() {
+        return removedProductIds;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public int getRemoved() {
+        return removedProductIds.size();
+    }
+
+    // Число продуктов в файле
+    public long getScanned() {
+        return scanned;
+    }
+
+    public boolean isEmpty() {
+        return upserts.isEmpty() && removedProductIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "+" + added + " ~" + changed + " -" + getRemoved() + " of " + scanned + " products";
+    }
+}
@@ -0,0 +1,78 @@
+package service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Следит за файлом каталога опросом времени изменения и размера. При изменении файл сравнивается
+// с загруженным хранилищем, и к движку применяются только добавленные, измененные и удаленные
+// продукты; поиск продолжает обслуживаться во время перезагрузки.
+// Опрос выбран вместо WatchService: он одинаково работает на сетевых и смонтированных файловых системах
+// и замечает замену файла переименованием.
+
+public class CatalogWatcher implements AutoCloseable {
+    private final Path catalog;
+    private final SmartSearchEngine engine;
+    private final ScheduledExecutorService scheduler;
+    private long lastModified;
+    private long lastSize;
+
+    public CatalogWatcher(Path catalog, SmartSearchEngine engine) throws IOException {
+        this.catalog = catalog;
+        this.engine = engine;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "catalog-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BasicFileAttributes attributes = Files.readAttributes(catalog, BasicFileAttributes.class);
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+        this.lastSize = attributes.size();
+    }
+
+    public void start(long intervalMillis) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                long start = System.nanoTime();
+                CatalogDiff diff = poll();
+                if (diff != null) {
+                    System.out.println("Catalog reloaded in " + (System.nanoTime() - start) / 1_000_000 + " ms: " + diff);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Поврежденный или недописанный файл не останавливает опрос: следующая попытка прочитает его заново
+                System.err.println("Catalog reload failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Перезагружает каталог, если файл изменился с прошлой проверки; иначе возвращает null
+    public synchronized CatalogDiff poll() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(catalog, BasicFileAttributes.class);
+        if (attributes.lastModifiedTime().toMillis() == lastModified && attributes.size() == lastSize) {
+            return null;
+        }
+        return reload(attributes);
+    }
+
+    // Сравнивает файл с хранилищем и применяет разницу независимо от времени изменения файла
+    public synchronized CatalogDiff reload() throws IOException {
+        return reload(Files.readAttributes(catalog, BasicFileAttributes.class));
+    }
+
+    // Атрибуты читаются до файла: запись, начавшаяся во время сравнения, будет замечена следующим опросом
+    private CatalogDiff reload(BasicFileAttributes attributes) throws IOException {
+        CatalogDiff diff = engine.applyCatalog(catalog);
+        lastModified = attributes.lastModifiedTime().toMillis();
+        lastSize = attributes.size();
+        return diff;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
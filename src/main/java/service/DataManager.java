@@ -1,30 +1,392 @@
-
 package service;
 
+import algorithm.Utf8Slice;
+import index.IntIntHashMap;
+import index.TermDictionary;
+import index.Tokenizer;
+import index.Utf8Column;
 import model.Product;
+import model.ProductText;
+import model.ResultField;
 
-import java.util.HashMap;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
-// Управляет данными о продуктах
+// Управляет данными о продуктах. Продукты хранятся по колонкам, индексированным плотными внутренними
+// id документов (0..n-1): внешние id и цены — в примитивных массивах, строковые поля — в общих
+// UTF-8 массивах байт. Объект Product собирается из колонок только при запросе, например для
+// результатов, попавших на страницу. Поиск подстрок идет по байтам колонок без декодирования:
+// поле, которое в нижнем регистре отличается от исходного только ASCII-буквами, читается из исходной
+// колонки со сверткой регистра, а отдельная копия в нижнем регистре хранится лишь для остальных полей
+// (кириллица с заглавными, 'İ' и т.п.). Строк в нижнем регистре на продукт в куче не остается.
+// С флагом -Dsearch.offHeapText=true описания (исходные и в нижнем регистре) хранятся вне кучи
 
 public class DataManager {
-    private Map<Integer, Product> products;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final boolean OFF_HEAP_TEXT = Boolean.getBoolean("search.offHeapText");
+    // Внутренние id удаленных продуктов повторно не выдаются: предел касается и удаленных документов
+    public static final int MAX_DOCUMENTS = Utf8Column.MAX_ARRAY_LENGTH;
+
+    private final TermDictionary termDictionary;
+    private final IntIntHashMap docIds; // внешний id -> внутренний
+    private int[] productIds;           // внутренний id -> внешний
+    private double[] prices;
+    private long[] contentHashes;       // хеш полей продукта для поиска изменений при перезагрузке каталога
+    private final Utf8Column names;
+    private final Utf8Column descriptions;
+    private final Utf8Column categories;
+    private final Utf8Column images;
+    // Поля в нижнем регистре, которые не получаются сверткой ASCII-регистра исходного; иначе null
+    private final Utf8Column lowerNames;
+    private final Utf8Column lowerDescriptions;
+    private final Utf8Column lowerCategories;
+    private final List<ProductText> documentTexts;
+    private final BitSet deleted;       // удаленные документы; их внутренние id повторно не выдаются
+    private int documentCount;
 
     public DataManager() {
-        this.products = new HashMap<>();
+        this(OFF_HEAP_TEXT);
+    }
+
+    public DataManager(boolean offHeapText) {
+        this.termDictionary = new TermDictionary();
+        this.docIds = new IntIntHashMap();
+        this.productIds = new int[INITIAL_CAPACITY];
+        this.prices = new double[INITIAL_CAPACITY];
+        this.contentHashes = new long[INITIAL_CAPACITY];
+        this.names = new Utf8Column();
+        this.descriptions = new Utf8Column(offHeapText);
+        this.categories = new Utf8Column();
+        this.images = new Utf8Column();
+        this.lowerNames = new Utf8Column();
+        this.lowerDescriptions = new Utf8Column(offHeapText);
+        this.lowerCategories = new Utf8Column();
+        this.documentTexts = new ArrayList<>();
+        this.deleted = new BitSet();
     }
 
     public void addProduct(Product product) {
-        products.put(product.getId(), product);
+        // Повторное добавление продукта с тем же id сохраняет его внутренний id
+        int docId = docIds.get(product.getId());
+        boolean added = docId < 0;
+        if (added) {
+            if (documentCount == MAX_DOCUMENTS) {
+                throw new IllegalStateException("Document limit of " + MAX_DOCUMENTS
+                        + " reached; a full reindex drops deleted documents");
+            }
+            docId = documentCount;
+        }
+        ProductText text = normalize(product, docId);
+        if (added) {
+            if (docId == productIds.length) {
+                int capacity = (int) Math.min(MAX_DOCUMENTS, docId * 2L);
+                productIds = Arrays.copyOf(productIds, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                contentHashes = Arrays.copyOf(contentHashes, capacity);
+            }
+            docIds.put(product.getId(), docId);
+            documentTexts.add(text);
+            documentCount++;
+        } else {
+            documentTexts.set(docId, text);
+        }
+        productIds[docId] = product.getId();
+        prices[docId] = product.getPrice();
+        contentHashes[docId] = contentHash(product);
+        names.set(docId, product.getName());
+        descriptions.set(docId, product.getDescription());
+        categories.set(docId, product.getCategory());
+        images.set(docId, product.getImage());
+    }
+
+    // Удаляет продукт и возвращает его внутренний id или -1, если продукта нет. Документ остается
+    // в колонках пустым: сканирование и индексы его не находят, а id остальных документов не меняются
+    public int removeProduct(int id) {
+        int docId = docIds.remove(id);
+        if (docId < 0) {
+            return -1;
+        }
+        Product empty = new Product(id, "", "", "", 0, null);
+        documentTexts.set(docId, normalize(empty, docId));
+        prices[docId] = 0;
+        contentHashes[docId] = 0;
+        names.set(docId, "");
+        descriptions.set(docId, "");
+        categories.set(docId, "");
+        images.set(docId, null);
+        deleted.set(docId);
+        return docId;
+    }
+
+    // Проверяет до применения изменений, что для продуктов хватит места: новых внутренних id и байт
+    // строковых колонок; иначе IllegalStateException, и хранилище не меняется. Оценка сверху: байты
+    // заменяемых значений не вычитаются
+    public void checkCapacity(List<Product> upserts) {
+        long added = 0;
+        long nameBytes = 0;
+        long descriptionBytes = 0;
+        long categoryBytes = 0;
+        long imageBytes = 0;
+        long lowerNameBytes = 0;
+        long lowerDescriptionBytes = 0;
+        long lowerCategoryBytes = 0;
+        for (Product product : upserts) {
+            if (docIds.get(product.getId()) < 0) {
+                added++;
+            }
+            nameBytes += utf8Length(product.getName());
+            descriptionBytes += utf8Length(product.getDescription());
+            categoryBytes += utf8Length(product.getCategory());
+            imageBytes += utf8Length(product.getImage());
+            // В нижнем регистре длина в UTF-8 может измениться
+            lowerNameBytes += utf8Length(lowerCase(product.getName()));
+            lowerDescriptionBytes += utf8Length(lowerCase(product.getDescription()));
+            lowerCategoryBytes += utf8Length(lowerCase(product.getCategory()));
+        }
+        if (documentCount + added > MAX_DOCUMENTS) {
+            throw new IllegalStateException("Catalog would exceed " + MAX_DOCUMENTS
+                    + " documents including deleted ones; a full reindex drops deleted documents");
+        }
+        names.checkCapacity(nameBytes);
+        descriptions.checkCapacity(descriptionBytes);
+        categories.checkCapacity(categoryBytes);
+        images.checkCapacity(imageBytes);
+        lowerNames.checkCapacity(lowerNameBytes);
+        lowerDescriptions.checkCapacity(lowerDescriptionBytes);
+        lowerCategories.checkCapacity(lowerCategoryBytes);
+    }
+
+    private static long utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            // Суррогатная пара — 4 байта, по 2 на каждую половину
+            length += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+        return length;
+    }
+
+    public int getProductIdByDocId(int docId) {
+        return productIds[checkDocId(docId)];
+    }
+
+    public boolean isDeleted(int docId) {
+        return deleted.get(checkDocId(docId));
+    }
+
+    // Число продуктов без учета удаленных документов
+    public int getProductCount() {
+        return documentCount - deleted.cardinality();
+    }
+
+    public long getContentHash(int docId) {
+        return contentHashes[checkDocId(docId)];
+    }
+
+    // 64-битный FNV-1a по всем полям продукта: совпадение хешей считается отсутствием изменений
+    public static long contentHash(Product product) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, product.getName());
+        hash = hash(hash, product.getDescription());
+        hash = hash(hash, product.getCategory());
+        hash = hash(hash, product.getImage());
+        long priceBits = Double.doubleToLongBits(product.getPrice());
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((priceBits >>> shift) & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xff) * 0x100000001b3L;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        // Разделитель полей: "ab" + "c" и "a" + "bc" дают разные хеши
+        return (hash ^ 0xfe) * 0x100000001b3L;
     }
 
+    // Собирает продукт из колонок или возвращает null, если продукта нет
     public Product getProductById(int id) {
-        return products.get(id);
+        int docId = docIds.get(id);
+        return docId >= 0 ? getProductByDocId(docId) : null;
+    }
+
+    public ProductText getProductText(int id) {
+        int docId = docIds.get(id);
+        return docId >= 0 ? documentTexts.get(docId) : null;
+    }
+
+    // Внутренний id документа или -1, если продукта нет
+    public int getDocId(int productId) {
+        return docIds.get(productId);
+    }
+
+    // Новый объект при каждом вызове: изменения в нем не затрагивают хранилище
+    public Product getProductByDocId(int docId) {
+        return new Product(productIds[checkDocId(docId)], names.get(docId), descriptions.get(docId),
+                categories.get(docId), prices[docId], images.get(docId));
+    }
+
+    public String getNameByDocId(int docId) {
+        return names.get(docId);
+    }
+
+    public String getDescriptionByDocId(int docId) {
+        return descriptions.get(docId);
+    }
+
+    // Копия значения поля продукта: id — Integer, цена — Double, строки — байты UTF-8 из колонки
+    // без декодирования. Копия снимается под блокировкой чтения каталога и не зависит от изменений,
+    // примененных после ее снятия
+    public Object copyField(int docId, ResultField field) {
+        return switch (field) {
+            case ID -> productIds[checkDocId(docId)];
+            case PRICE -> prices[checkDocId(docId)];
+            case NAME -> names.getBytes(docId);
+            case DESCRIPTION -> descriptions.getBytes(docId);
+            case CATEGORY -> categories.getBytes(docId);
+            case IMAGE -> images.getBytes(docId);
+            default -> throw new IllegalArgumentException("Not a product field: " + field);
+        };
     }
 
+    public ProductText getProductTextByDocId(int docId) {
+        return documentTexts.get(docId);
+    }
+
+    // Поля в нижнем регистре байтами UTF-8 для SubstringMatcher, BoyerMoore и AhoCorasick;
+    // отсутствующее поле — пустой срез. Из кучи срез смотрит в массив колонки и действителен
+    // под блокировкой чтения каталога
+    public Utf8Slice getLowerName(int docId) {
+        return lowerSlice(lowerNames, names, docId);
+    }
+
+    public Utf8Slice getLowerDescription(int docId) {
+        return lowerSlice(lowerDescriptions, descriptions, docId);
+    }
+
+    public Utf8Slice getLowerCategory(int docId) {
+        return lowerSlice(lowerCategories, categories, docId);
+    }
+
+    private static Utf8Slice lowerSlice(Utf8Column lower, Utf8Column original, int docId) {
+        return lower.byteLength(docId) >= 0 ? lower.slice(docId) : original.slice(docId).foldingAsciiCase();
+    }
+
+    // Продукты в порядке внутренних id; каждый элемент собирается при обращении к нему.
+    // Удаленные документы собираются как продукты с пустыми полями
+    public List<Product> getDocuments() {
+        return new AbstractList<>() {
+            @Override
+            public Product get(int index) {
+                return getProductByDocId(index);
+            }
+
+            @Override
+            public int size() {
+                return documentCount;
+            }
+        };
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    // Копия каталога по внешним id; собирает все продукты, поэтому предназначена для индексации и тестов
     public Map<Integer, Product> getAllProducts() {
+        Map<Integer, Product> products = new LinkedHashMap<>();
+        for (int docId = deleted.nextClearBit(0); docId < documentCount; docId = deleted.nextClearBit(docId + 1)) {
+            products.put(productIds[docId], getProductByDocId(docId));
+        }
         return products;
     }
-}
 
+    // Байты строковых колонок в UTF-8, включая хранимые вне кучи
+    public long getTextColumnBytes() {
+        return names.getArenaBytes() + descriptions.getArenaBytes() + categories.getArenaBytes()
+                + images.getArenaBytes() + lowerNames.getArenaBytes() + lowerDescriptions.getArenaBytes()
+                + lowerCategories.getArenaBytes();
+    }
+
+    public boolean isOffHeapText() {
+        return descriptions.isOffHeap();
+    }
+
+    public TermDictionary getTermDictionary() {
+        return termDictionary;
+    }
+
+    // Приведение полей к нижнему регистру и токенизация выполняются один раз при загрузке.
+    // Строки в нижнем регистре после токенизации не сохраняются: в колонку попадают только те,
+    // что не совпадают с исходным полем со свернутым ASCII-регистром
+    private ProductText normalize(Product product, int docId) {
+        String name = lowerCase(product.getName());
+        String description = lowerCase(product.getDescription());
+        String category = lowerCase(product.getCategory());
+        int[] nameOffsets = Tokenizer.tokenOffsets(name);
+        int[] descriptionOffsets = Tokenizer.tokenOffsets(description);
+        int[] nameTerms = toOrdinals(name, nameOffsets);
+        int[] descriptionTerms = toOrdinals(description, descriptionOffsets);
+        int[] categoryTerms = toOrdinals(category, Tokenizer.tokenOffsets(category));
+        lowerNames.set(docId, lowerCopy(product.getName(), name));
+        lowerDescriptions.set(docId, lowerCopy(product.getDescription(), description));
+        lowerCategories.set(docId, lowerCopy(product.getCategory(), category));
+        return new ProductText(nameTerms, descriptionTerms, categoryTerms,
+                highlightOffsets(product.getName(), name, nameOffsets),
+                highlightOffsets(product.getDescription(), description, descriptionOffsets));
+    }
+
+    // Копия в нижнем регистре для колонки или null, если ее дает свертка ASCII-регистра исходного поля
+    private static String lowerCopy(String original, String lower) {
+        if (original == null) {
+            return null;
+        }
+        if (original.length() != lower.length()) {
+            return lower;
+        }
+        for (int i = 0; i < lower.length(); i++) {
+            char c = original.charAt(i);
+            if (lower.charAt(i) != (c >= 'A' && c <= 'Z' ? (char) (c | 0x20) : c)) {
+                return lower;
+            }
+        }
+        return null;
+    }
+
+    // Границы токенов годятся для подсветки исходного текста, только если длина поля в нижнем
+    // регистре не изменилась (например, 'İ' дает два символа)
+    private static int[] highlightOffsets(String original, String lower, int[] offsets) {
+        return original == null || original.length() == lower.length() ? offsets : null;
+    }
+
+    private int checkDocId(int docId) {
+        if (docId < 0 || docId >= documentCount) {
+            throw new IndexOutOfBoundsException("Document " + docId + " out of range for size " + documentCount);
+        }
+        return docId;
+    }
+
+    private int[] toOrdinals(String text, int[] offsets) {
+        int[] ordinals = new int[offsets.length / 2];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = termDictionary.getOrAdd(text.substring(offsets[2 * i], offsets[2 * i + 1]));
+        }
+        return ordinals;
+    }
+
+    private static String lowerCase(String value) {
+        return value != null ? value.toLowerCase() : "";
+    }
+}
@@ -0,0 +1,138 @@
+package service;
+
+import index.DocBitSet;
+
+// Плотный накопитель оценок релевантности по внутренним id документов: double[] с оценками
+// и список затронутых документов. Буферы переиспользуются потоком между запросами,
+// поэтому очистка стоит O(число затронутых документов), а не O(размер каталога).
+
+final class DocScores {
+    private static final ThreadLocal<DocScores> TOTALS = ThreadLocal.withInitial(DocScores::new);
+    private static final ThreadLocal<DocScores> PARTIALS = ThreadLocal.withInitial(DocScores::new);
+
+    private double[] scores = new double[0];
+    private boolean[] present = new boolean[0];
+    private int[] touched = new int[16];
+    private int touchedCount;
+
+    // Итоговые оценки запроса в потоке, обрабатывающем запрос
+    static DocScores totals(int capacity) {
+        DocScores buffer = TOTALS.get();
+        buffer.reset(capacity);
+        return buffer;
+    }
+
+    // Оценки одной стратегии в рабочем потоке
+    static DocScores partials(int capacity) {
+        DocScores buffer = PARTIALS.get();
+        buffer.reset(capacity);
+        return buffer;
+    }
+
+    void add(int doc, double score) {
+        if (doc >= scores.length) {
+            grow(doc + 1);
+        }
+        if (!present[doc]) {
+            present[doc] = true;
+            if (touchedCount == touched.length) {
+                int[] expanded = new int[touched.length * 2];
+                System.arraycopy(touched, 0, expanded, 0, touchedCount);
+                touched = expanded;
+            }
+            touched[touchedCount++] = doc;
+        }
+        scores[doc] += score;
+    }
+
+    void addAll(DocScores other) {
+        for (int i = 0; i < other.touchedCount; i++) {
+            int doc = other.touched[i];
+            add(doc, other.scores[doc]);
+        }
+    }
+
+    boolean contains(int doc) {
+        return doc < present.length && present[doc];
+    }
+
+    double get(int doc) {
+        return contains(doc) ? scores[doc] : 0.0;
+    }
+
+    // Найденные документы в виде битового множества (документы за пределами size не учитываются)
+    DocBitSet toBitSet(int size) {
+        DocBitSet bits = new DocBitSet(size);
+        for (int i = 0; i < touchedCount; i++) {
+            if (touched[i] < size) {
+                bits.set(touched[i]);
+            }
+        }
+        return bits;
+    }
+
+    int size() {
+        return touchedCount;
+    }
+
+    int docAt(int index) {
+        return touched[index];
+    }
+
+    // Записывает в out до k документов с наибольшими оценками (при равенстве — меньший id первым)
+    int topK(int k, int[] out) {
+        return topKAfter(k, out, Double.POSITIVE_INFINITY, -1);
+    }
+
+    // То же, но только среди документов, идущих в порядке ранжирования строго после (afterScore, afterDoc):
+    // следующая страница стоит O(hits * k) независимо от ее номера
+    int topKAfter(int k, int[] out, double afterScore, int afterDoc) {
+        int count = 0;
+        if (k <= 0) {
+            return 0;
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            double score = scores[doc];
+            if (score > afterScore || (score == afterScore && doc <= afterDoc)) {
+                continue; // уже выдан на предыдущих страницах
+            }
+            if (count == k && !ranksBefore(doc, out[k - 1])) {
+                continue;
+            }
+            int pos = count < k ? count++ : k - 1;
+            while (pos > 0 && ranksBefore(doc, out[pos - 1])) {
+                out[pos] = out[pos - 1];
+                pos--;
+            }
+            out[pos] = doc;
+        }
+        return count;
+    }
+
+    private boolean ranksBefore(int a, int b) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+    }
+
+    private void reset(int capacity) {
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            scores[doc] = 0.0;
+            present[doc] = false;
+        }
+        touchedCount = 0;
+        if (capacity > scores.length) {
+            grow(capacity);
+        }
+    }
+
+    private void grow(int capacity) {
+        int size = Math.max(capacity, scores.length * 2);
+        double[] expandedScores = new double[size];
+        boolean[] expandedPresent = new boolean[size];
+        System.arraycopy(scores, 0, expandedScores, 0, scores.length);
+        System.arraycopy(present, 0, expandedPresent, 0, present.length);
+        scores = expandedScores;
+        present = expandedPresent;
+    }
+}
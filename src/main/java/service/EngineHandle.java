@@ -0,0 +1,92 @@
+package service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Движок с подсчетом ссылок. Приложение держит одну ссылку, пока движок текущий, каждый запрос —
+// еще одну на время обработки (acquire/close). После замены движка retire() снимает ссылку приложения;
+// когда завершается последний запрос, начатый на старом движке, handle отпускает движок, хранилище
+// и наблюдатель, и вся их память становится недостижимой в этот момент, а не когда-нибудь позже.
+
+public class EngineHandle implements AutoCloseable {
+    private final AtomicInteger references = new AtomicInteger(1); // 1 — ссылка приложения
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile SmartSearchEngine engine;
+    private volatile DataManager dataManager;
+    private volatile CatalogWatcher watcher;
+    private volatile boolean retired;
+
+    public EngineHandle(SmartSearchEngine engine, DataManager dataManager, CatalogWatcher watcher) {
+        this.engine = engine;
+        this.dataManager = dataManager;
+        this.watcher = watcher;
+    }
+
+    // Новая ссылка для запроса; false, если движок уже отпущен
+    public boolean tryAcquire() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Запрос завершен
+    @Override
+    public void close() {
+        release();
+    }
+
+    // Движок заменен: изменения каталога к нему больше не применяются, ссылка приложения снимается
+    public void retire() {
+        retired = true;
+        CatalogWatcher stopped = watcher;
+        if (stopped != null) {
+            stopped.close();
+        }
+        release();
+    }
+
+    public boolean awaitRelease(long timeout, TimeUnit unit) throws InterruptedException {
+        return released.await(timeout, unit);
+    }
+
+    public SmartSearchEngine getEngine() {
+        SmartSearchEngine current = engine;
+        if (current == null) {
+            throw new IllegalStateException("Engine has been released");
+        }
+        return current;
+    }
+
+    public DataManager getDataManager() {
+        DataManager current = dataManager;
+        if (current == null) {
+            throw new IllegalStateException("Engine has been released");
+        }
+        return current;
+    }
+
+    // Число запросов, выполняющихся на этом движке
+    public int getInFlight() {
+        return Math.max(0, references.get() - (retired ? 0 : 1));
+    }
+
+    public boolean isReleased() {
+        return released.getCount() == 0;
+    }
+
+    private void release() {
+        if (references.decrementAndGet() == 0) {
+            engine = null;
+            dataManager = null;
+            watcher = null;
+            released.countDown();
+        }
+    }
+}
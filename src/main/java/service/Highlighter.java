@@ -0,0 +1,191 @@
+package service;
+
+import index.Tokenizer;
+import model.ProductText;
+
+import java.util.Arrays;
+
+// Подсвечивает термины запроса маркерами <em> по границам токенов, сохраненным при загрузке:
+// совпадения находятся сравнением ординалов, текст повторно не сканируется. Вызывается только
+// для продуктов итоговой страницы и возвращает фрагмент заданного размера вокруг совпадений.
+
+class Highlighter {
+    private static final String START_TAG = "<em>";
+    private static final String END_TAG = "</em>";
+    private static final String ELLIPSIS = "...";
+
+    private final int[][] sequences; // ординалы слов и фраз запроса
+    private final int fragmentSize;  // 0 — поле целиком
+
+    Highlighter(int[][] sequences, int fragmentSize) {
+        this.sequences = sequences;
+        this.fragmentSize = fragmentSize;
+    }
+
+    // Подсвечивается описание, а если совпадений в нем нет — имя продукта
+    String highlight(String name, String description, ProductText text) {
+        String highlighted = highlight(description, text.getDescriptionTerms(), text.getDescriptionOffsets());
+        return highlighted.isEmpty()
+                ? highlight(name, text.getNameTerms(), text.getNameOffsets())
+                : highlighted;
+    }
+
+    private String highlight(String text, int[] terms, int[] offsets) {
+        if (text == null || sequences.length == 0 || terms.length == 0) {
+            return "";
+        }
+        if (offsets == null) {
+            return ""; // смещения в нижнем регистре не совпадают с исходным текстом
+        }
+
+        long[] spans = collectSpans(terms, offsets);
+        if (spans.length == 0) {
+            return "";
+        }
+
+        // Фрагмент вокруг окна с наибольшим числом совпадений
+        int from = 0;
+        int to = text.length();
+        if (fragmentSize > 0 && text.length() > fragmentSize) {
+            int best = 0;
+            int bestLast = 0;
+            int last = 0;
+            for (int first = 0; first < spans.length; first++) {
+                last = Math.max(last, first);
+                while (last + 1 < spans.length && end(spans[last + 1]) - start(spans[first]) <= fragmentSize) {
+                    last++;
+                }
+                if (last - first > bestLast - best) {
+                    best = first;
+                    bestLast = last;
+                }
+            }
+            int matchStart = start(spans[best]);
+            int matchEnd = end(spans[bestLast]);
+            int width = Math.max(fragmentSize, matchEnd - matchStart);
+            from = Math.max(0, matchStart - (width - (matchEnd - matchStart)) / 2);
+            to = Math.min(text.length(), from + width);
+            from = Math.max(0, to - width);
+            if (from > 0) {
+                from = alignStart(text, from, matchStart);
+            }
+            if (to < text.length()) {
+                to = alignEnd(text, to, matchEnd);
+            }
+        }
+
+        StringBuilder highlighted = new StringBuilder(to - from + spans.length * (START_TAG.length() + END_TAG.length()) + 2 * ELLIPSIS.length());
+        if (from > 0) {
+            highlighted.append(ELLIPSIS);
+        }
+        int position = from;
+        for (long span : spans) {
+            int start = start(span);
+            int end = end(span);
+            if (start < from || end > to) {
+                continue;
+            }
+            appendEscaped(highlighted, text, position, start);
+            highlighted.append(START_TAG);
+            appendEscaped(highlighted, text, start, end);
+            highlighted.append(END_TAG);
+            position = end;
+        }
+        appendEscaped(highlighted, text, position, to);
+        if (to < text.length()) {
+            highlighted.append(ELLIPSIS);
+        }
+        return highlighted.toString();
+    }
+
+    // Вхождения кодируются как start << 32 | end; пересекающиеся и соседние объединяются
+    private long[] collectSpans(int[] terms, int[] offsets) {
+        long[] spans = new long[0];
+        int count = 0;
+        for (int position = 0; position < terms.length; position++) {
+            for (int[] sequence : sequences) {
+                if (!matchesAt(terms, position, sequence)) {
+                    continue;
+                }
+                if (count == spans.length) {
+                    spans = Arrays.copyOf(spans, Math.max(8, count * 2));
+                }
+                int last = position + sequence.length - 1;
+                spans[count++] = ((long) offsets[2 * position] << 32) | offsets[2 * last + 1];
+            }
+        }
+        if (count == 0) {
+            return spans;
+        }
+        Arrays.sort(spans, 0, count);
+
+        int merged = 0;
+        for (int i = 0; i < count; i++) {
+            if (merged > 0 && start(spans[i]) <= end(spans[merged - 1])) {
+                int end = Math.max(end(spans[merged - 1]), end(spans[i]));
+                spans[merged - 1] = ((long) start(spans[merged - 1]) << 32) | end;
+            } else {
+                spans[merged++] = spans[i];
+            }
+        }
+        return Arrays.copyOf(spans, merged);
+    }
+
+    private static boolean matchesAt(int[] terms, int position, int[] sequence) {
+        if (position + sequence.length > terms.length) {
+            return false;
+        }
+        for (int i = 0; i < sequence.length; i++) {
+            if (terms[position + i] != sequence[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Начало фрагмента сдвигается вперед, чтобы не резать слово и не начинать с разделителей
+    private static int alignStart(String text, int from, int limit) {
+        if (Tokenizer.isWordChar(text.charAt(from - 1))) {
+            while (from < limit && Tokenizer.isWordChar(text.charAt(from))) {
+                from++;
+            }
+        }
+        while (from < limit && !Tokenizer.isWordChar(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    // Конец фрагмента сдвигается назад по тем же правилам
+    private static int alignEnd(String text, int to, int limit) {
+        if (Tokenizer.isWordChar(text.charAt(to))) {
+            while (to > limit && Tokenizer.isWordChar(text.charAt(to - 1))) {
+                to--;
+            }
+        }
+        while (to > limit && !Tokenizer.isWordChar(text.charAt(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+
+    private static int start(long span) {
+        return (int) (span >>> 32);
+    }
+
+    private static int end(long span) {
+        return (int) span;
+    }
+
+    private static void appendEscaped(StringBuilder builder, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> builder.append("&lt;");
+                case '>' -> builder.append("&gt;");
+                case '&' -> builder.append("&amp;");
+                default -> builder.append(c);
+            }
+        }
+    }
+}
@@ -1,15 +1,38 @@
-
 package service;
 
 import index.InvertedIndex;
 import index.Trie;
 import model.Product;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-// Индексирует продукты для поиска по ключевым словам и автодополнению
+// Индексирует продукты для поиска по ключевым словам и автодополнению.
+// Параллельное построение: продукты делятся на непрерывные части, каждый поток строит по своей части
+// локальные списки документов и отсортированный словарь, затем словари сливаются k-путевым слиянием.
+// Результат не зависит от числа потоков и порядка их завершения.
 
 public class Indexer {
+    // Число потоков построения индекса: -Dsearch.indexThreads (по умолчанию число ядер)
+    public static final int DEFAULT_THREADS = Integer.getInteger("search.indexThreads",
+            Runtime.getRuntime().availableProcessors());
+    // Меньшие каталоги строятся в одном потоке: накладные расходы слияния больше выигрыша
+    private static final int MIN_PARALLEL_PRODUCTS = 1_000;
+
     private InvertedIndex invertedIndex;
     private Trie trie;
 
@@ -20,31 +43,251 @@ public class Indexer {
 
     public void indexProducts(Collection<Product> products) {
         for (Product product : products) {
-            // Индексирование для поиска по ключевым словам
-            invertedIndex.addDocument(product.getName(), product.getId());
-            invertedIndex.addDocument(product.getDescription(), product.getId());
-            invertedIndex.addDocument(product.getCategory(), product.getId());
-
-            // Индексирование для автодополнения
-            String[] nameWords = product.getName().toLowerCase().split("\\W+");
-            for (String word : nameWords) {
+            indexProduct(product);
+        }
+    }
+
+    // Индексирует один продукт: используется при потоковой загрузке каталога.
+    // Отсутствующее поле индексируется как пустое, как и в DataManager
+    public void indexProduct(Product product) {
+        String[] fields = {product.getName(), product.getDescription(), product.getCategory()};
+        // Индексирование для поиска по ключевым словам
+        for (String field : fields) {
+            if (field != null) {
+                invertedIndex.addDocument(field, product.getId());
+            }
+        }
+
+        // Индексирование для автодополнения
+        for (String field : fields) {
+            for (String word : words(field)) {
                 if (!word.isEmpty()) {
                     trie.insert(word);
                 }
             }
-            String[] descriptionWords = product.getDescription().toLowerCase().split("\\W+");
-            for (String word : descriptionWords) {
-                if (!word.isEmpty()) {
-                    trie.insert(word);
+        }
+    }
+
+    // Убирает прежнюю версию продукта из индекса; слова, которых больше нет ни в одном продукте,
+    // удаляются и из Trie
+    public void removeProduct(Product product) {
+        String[] fields = {product.getName(), product.getDescription(), product.getCategory()};
+        for (String field : fields) {
+            if (field != null) {
+                invertedIndex.removeDocument(field, product.getId());
+            }
+        }
+        for (String field : fields) {
+            for (String word : words(field)) {
+                if (!word.isEmpty() && invertedIndex.getDocumentFrequency(word) == 0) {
+                    trie.remove(word);
                 }
             }
-            String[] categoryWords = product.getCategory().toLowerCase().split("\\W+");
-            for (String word : categoryWords) {
-                if (!word.isEmpty()) {
-                    trie.insert(word);
+        }
+    }
+
+    private static String[] words(String field) {
+        return field != null ? field.toLowerCase().split("\\W+") : new String[0];
+    }
+
+    // Строит индекс в несколько потоков; содержимое индекса и Trie то же, что у indexProducts
+    public void indexProducts(List<Product> products, int threads) {
+        int partitions = Math.min(threads, products.size() / MIN_PARALLEL_PRODUCTS);
+        if (partitions <= 1) {
+            indexProducts(products);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(partitions, buildThreads());
+        try {
+            // Фаза 1: локальные индексы непрерывных частей каталога
+            List<Callable<PartialIndex>> builds = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                List<Product> part = products.subList(
+                        (int) ((long) products.size() * p / partitions),
+                        (int) ((long) products.size() * (p + 1) / partitions));
+                builds.add(() -> PartialIndex.build(part));
+            }
+            PartialIndex[] partials = invokeAll(executor, builds).toArray(new PartialIndex[0]);
+
+            // Фаза 2: k-путевое слияние отсортированных словарей
+            MergedTerms merged = merge(partials);
+
+            // Фаза 3: списки документов итоговых терминов собираются параллельно по диапазонам терминов
+            List<Set<Integer>> postings = new ArrayList<>(merged.size());
+            List<Callable<List<Set<Integer>>>> ranges = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                int from = merged.size() * p / partitions;
+                int to = merged.size() * (p + 1) / partitions;
+                ranges.add(() -> merged.postings(from, to));
+            }
+            for (List<Set<Integer>> range : invokeAll(executor, ranges)) {
+                postings.addAll(range);
+            }
+
+            // Фаза 4: термины добавляются в общий индекс и Trie в отсортированном порядке
+            invertedIndex.addPostings(merged.terms, postings);
+            for (String term : merged.terms) {
+                trie.insert(term);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Index build interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Index build failed", e.getCause());
+        }
+        return results;
+    }
+
+    private static ThreadFactory buildThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "index-build-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Слияние: для каждого термина — части, в которых он встречается, в порядке номеров частей
+    private static MergedTerms merge(PartialIndex[] partials) {
+        int capacity = 0;
+        for (PartialIndex partial : partials) {
+            capacity = Math.max(capacity, partial.terms.length);
+        }
+        MergedTerms merged = new MergedTerms(capacity, partials);
+
+        // Курсор — номер части; при равных терминах первой идет часть с меньшим номером
+        int[] positions = new int[partials.length];
+        PriorityQueue<Integer> heap = new PriorityQueue<>((a, b) -> {
+            int order = partials[a].terms[positions[a]].compareTo(partials[b].terms[positions[b]]);
+            return order != 0 ? order : Integer.compare(a, b);
+        });
+        for (int p = 0; p < partials.length; p++) {
+            if (partials[p].terms.length > 0) {
+                heap.add(p);
+            }
+        }
+        while (!heap.isEmpty()) {
+            int p = heap.poll();
+            String term = partials[p].terms[positions[p]];
+            merged.add(term, p, positions[p]);
+            if (++positions[p] < partials[p].terms.length) {
+                heap.add(p);
+            }
+        }
+        return merged;
+    }
+
+    // Индекс одной части каталога: отсортированные термины и списки id продуктов в порядке каталога
+    private static final class PartialIndex {
+        private final String[] terms;
+        private final DocList[] postings;
+
+        private PartialIndex(String[] terms, DocList[] postings) {
+            this.terms = terms;
+            this.postings = postings;
+        }
+
+        static PartialIndex build(List<Product> products) {
+            Map<String, DocList> lists = new HashMap<>();
+            for (Product product : products) {
+                for (String field : new String[]{product.getName(), product.getDescription(), product.getCategory()}) {
+                    for (String word : words(field)) {
+                        if (!word.isEmpty()) {
+                            lists.computeIfAbsent(word, k -> new DocList()).add(product.getId());
+                        }
+                    }
                 }
             }
+
+            String[] terms = lists.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            DocList[] postings = new DocList[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                postings[i] = lists.get(terms[i]);
+            }
+            return new PartialIndex(terms, postings);
         }
     }
-}
 
+    private static final class DocList {
+        private int[] ids = new int[4];
+        private int size;
+
+        // Повтор термина в том же продукте не добавляет id повторно
+        void add(int productId) {
+            if (size > 0 && ids[size - 1] == productId) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = productId;
+        }
+    }
+
+    // Итоговый словарь: термин и ссылки на его списки в частях (номер части, позиция термина в части)
+    private static final class MergedTerms {
+        private final PartialIndex[] partials;
+        private final List<String> terms;
+        private final List<long[]> sources;
+
+        MergedTerms(int capacity, PartialIndex[] partials) {
+            this.partials = partials;
+            this.terms = new ArrayList<>(capacity);
+            this.sources = new ArrayList<>(capacity);
+        }
+
+        void add(String term, int partition, int position) {
+            long source = ((long) partition << 32) | position;
+            int last = terms.size() - 1;
+            if (last >= 0 && terms.get(last).equals(term)) {
+                long[] previous = sources.get(last);
+                long[] extended = Arrays.copyOf(previous, previous.length + 1);
+                extended[previous.length] = source;
+                sources.set(last, extended);
+            } else {
+                terms.add(term);
+                sources.add(new long[]{source});
+            }
+        }
+
+        int size() {
+            return terms.size();
+        }
+
+        List<Set<Integer>> postings(int from, int to) {
+            List<Set<Integer>> result = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                int total = 0;
+                for (long source : sources.get(i)) {
+                    total += list(source).size;
+                }
+                Set<Integer> documents = new HashSet<>(Math.max(16, (int) (total / 0.75f) + 1));
+                for (long source : sources.get(i)) {
+                    DocList list = list(source);
+                    for (int j = 0; j < list.size; j++) {
+                        documents.add(list.ids[j]);
+                    }
+                }
+                result.add(documents);
+            }
+            return result;
+        }
+
+        private DocList list(long source) {
+            return partials[(int) (source >>> 32)].postings[(int) source];
+        }
+    }
+}
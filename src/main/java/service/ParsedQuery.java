@@ -0,0 +1,67 @@
+package service;
+
+import algorithm.SubstringMatcher;
+
+import java.util.List;
+
+// Разобранный запрос: результат одного прохода анализатора, который переиспользуют стратегии,
+// ранжирование и подсветка. Неизменяем и кэшируется в QueryAnalyzer по исходной строке запроса.
+
+final class ParsedQuery {
+    private final String query;
+    private final String[] tokens;          // слова запроса в нижнем регистре
+    private final int[] termOrdinals;       // ординалы слов в словаре терминов, -1 — слова нет в каталоге
+    private final List<String> phrases;     // фразы в кавычках в нижнем регистре
+    private final int[][] highlightTerms;   // ординалы фраз и значимых слов для подсветки
+    private final SubstringMatcher matcher; // шаблон точного совпадения всего запроса; null для пустого
+    private final QueryIntent intent;
+    // Состояние индекса и словаря, по которому построен план
+    private final long indexVersion;
+    private final int dictionarySize;
+
+    ParsedQuery(String query, String[] tokens, int[] termOrdinals, List<String> phrases, int[][] highlightTerms,
+                SubstringMatcher matcher, QueryIntent intent, long indexVersion, int dictionarySize) {
+        this.query = query;
+        this.tokens = tokens;
+        this.termOrdinals = termOrdinals;
+        this.phrases = List.copyOf(phrases);
+        this.highlightTerms = highlightTerms;
+        this.matcher = matcher;
+        this.intent = intent;
+        this.indexVersion = indexVersion;
+        this.dictionarySize = dictionarySize;
+    }
+
+    String getQuery() {
+        return query;
+    }
+
+    String[] getTokens() {
+        return tokens;
+    }
+
+    int[] getTermOrdinals() {
+        return termOrdinals;
+    }
+
+    List<String> getPhrases() {
+        return phrases;
+    }
+
+    int[][] getHighlightTerms() {
+        return highlightTerms;
+    }
+
+    SubstringMatcher getMatcher() {
+        return matcher;
+    }
+
+    QueryIntent getIntent() {
+        return intent;
+    }
+
+    // Запрос, разобранный до изменения индекса или словаря, разбирается заново
+    boolean isCurrent(long indexVersion, int dictionarySize) {
+        return this.indexVersion == indexVersion && this.dictionarySize == dictionarySize;
+    }
+}
@@ -1,42 +1,136 @@
 package service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import model.Product;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
-// Загружает продукты из JSON-файла
+// Загружает продукты из JSON-файла. Каталог читается потоково: JsonParser проходит файл по токенам,
+// и в памяти одновременно находится только текущий продукт, поэтому размер файла не ограничен кучей.
+// Поддерживаются {"products": [...]} и массив продуктов верхнего уровня, обычный или сжатый gzip.
+// Запись — в том же формате {"products": [...]} со сжатием gzip, так что записанный файл читается как каталог.
 
 public class ProductLoader {
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PRODUCTS_FIELD = "products";
 
     public static List<Product> loadProductsFromJson(String resourcePath) {
         List<Product> products = new ArrayList<>();
-        
+
         try (InputStream inputStream = ProductLoader.class.getClassLoader().getResourceAsStream(resourcePath)) {
             if (inputStream == null) {
                 throw new IOException("Resource not found: " + resourcePath);
             }
-            
-            JsonNode rootNode = objectMapper.readTree(inputStream);
-            JsonNode productsNode = rootNode.get("products");
-            
-            if (productsNode != null && productsNode.isArray()) {
-                for (JsonNode productNode : productsNode) {
-                    Product product = objectMapper.treeToValue(productNode, Product.class);
-                    products.add(product);
-                }
-            }
-            
+
+            streamProducts(inputStream, products::add);
+
         } catch (IOException e) {
             System.err.println("Error loading products from JSON: " + e.getMessage());
             e.printStackTrace();
         }
-        
+
         return products;
     }
-} 
\ No newline at end of file
+
+    // Читает каталог из файла и передает продукты по одному; возвращает их число
+    public static long streamProducts(Path path, Consumer<Product> consumer) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return streamProducts(inputStream, consumer);
+        }
+    }
+
+    // Сжатие gzip определяется по сигнатуре потока, а не по расширению файла
+    public static long streamProducts(InputStream inputStream, Consumer<Product> consumer) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(inputStream, BUFFER_SIZE);
+        InputStream source = isGzip(buffered) ? new GZIPInputStream(buffered, BUFFER_SIZE) : buffered;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(source)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                return readProducts(parser, consumer);
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object or array of products, got " + token);
+            }
+            long count = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (PRODUCTS_FIELD.equals(field) && value == JsonToken.START_ARRAY) {
+                    count += readProducts(parser, consumer);
+                } else {
+                    parser.skipChildren(); // прочие поля (total, skip, limit) не разбираются
+                }
+            }
+            return count;
+        }
+    }
+
+    // Парсер стоит на START_ARRAY; каждый объект связывается с Product без построения дерева
+    private static long readProducts(JsonParser parser, Consumer<Product> consumer) throws IOException {
+        long count = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new IOException("Unexpected end of catalog after " + count + " products");
+            }
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            consumer.accept(objectMapper.readValue(parser, Product.class));
+            count++;
+        }
+        return count;
+    }
+
+    // Пишет продукты в формате каталога со сжатием gzip; возвращает их число. Поля пишутся под
+    // именами каталога (title, thumbnail), а не под именами ответа API
+    public static long writeProducts(OutputStream outputStream, Iterable<Product> products) throws IOException {
+        long count = 0;
+        GZIPOutputStream gzip = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(gzip, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart(PRODUCTS_FIELD);
+            for (Product product : products) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", product.getId());
+                generator.writeStringField("title", product.getName());
+                generator.writeStringField("description", product.getDescription());
+                generator.writeStringField("category", product.getCategory());
+                generator.writeNumberField("price", product.getPrice());
+                if (product.getImage() != null) {
+                    generator.writeStringField("thumbnail", product.getImage());
+                }
+                generator.writeEndObject();
+                count++;
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return count;
+    }
+
+    private static boolean isGzip(BufferedInputStream inputStream) throws IOException {
+        inputStream.mark(2);
+        int first = inputStream.read();
+        int second = inputStream.read();
+        inputStream.reset();
+        return first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == (GZIPInputStream.GZIP_MAGIC >>> 8);
+    }
+}
@@ -0,0 +1,108 @@
+package service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import model.ResultField;
+import model.SearchResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+// Результат поиска с выбранными полями (параметр fields). Product не создается: выбранные поля
+// копируются из колонок хранилища при отборе страницы, под блокировкой чтения каталога, — строки
+// байтами UTF-8 без декодирования. Сериализация идет уже после снятия блокировки и читает только
+// копии: applyChanges может к этому времени переразместить колонки.
+// Форма JSON та же, что у SearchResult, но без невыбранных полей
+
+public class ProjectedResult extends SearchResult implements JsonSerializable {
+    private final EnumSet<ResultField> fields;
+    private final Object[] values = new Object[ResultField.values().length]; // по ordinal поля
+    private final int docId;
+
+    ProjectedResult(EnumSet<ResultField> fields, DataManager dataManager, int docId, double relevanceScore,
+                    String highlightedText) {
+        super(null, relevanceScore, highlightedText);
+        this.fields = fields;
+        this.docId = docId;
+        for (ResultField field : fields) {
+            if (field.isProductField()) {
+                values[field.ordinal()] = dataManager.copyField(docId, field);
+            }
+        }
+    }
+
+    public int getDocId() {
+        return docId;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeStartObject();
+        if (fields.stream().anyMatch(ResultField::isProductField)) {
+            generator.writeObjectFieldStart("product");
+            for (ResultField field : fields) {
+                if (field.isProductField()) {
+                    generator.writeFieldName(field.getJsonName());
+                    writeValue(generator, values[field.ordinal()]);
+                }
+            }
+            generator.writeEndObject();
+        }
+        for (ResultField field : fields) {
+            switch (field) {
+                case RELEVANCE_SCORE -> generator.writeNumberField(field.getJsonName(), getRelevanceScore());
+                case MATCH_TYPE -> generator.writeStringField(field.getJsonName(), getMatchType());
+                case HIGHLIGHTED_TEXT -> generator.writeStringField(field.getJsonName(), getHighlightedText());
+                case RELEVANCE_PERCENTAGE -> generator.writeNumberField(field.getJsonName(), getRelevancePercentage());
+                default -> {
+                    // поля продукта записаны выше
+                }
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    // Байты UTF-8 передаются как есть только генератору, который сам пишет в байтовый поток;
+    // символьному генератору (writeValueAsString) строка декодируется
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof Integer id) {
+            generator.writeNumber(id);
+        } else if (value instanceof Double price) {
+            generator.writeNumber(price);
+        } else if (value == null) {
+            generator.writeNull();
+        } else if (generator instanceof UTF8JsonGenerator) {
+            byte[] bytes = (byte[]) value;
+            generator.writeUTF8String(bytes, 0, bytes.length);
+        } else {
+            generator.writeString(new String((byte[]) value, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        serialize(generator, serializers);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%.2f★] doc %d (%s)", getRelevanceScore(), docId, getMatchType());
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        return docId == ((ProjectedResult) obj).docId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(docId);
+    }
+}
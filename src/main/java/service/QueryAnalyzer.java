@@ -1,55 +1,225 @@
 package service;
 
+import algorithm.SubstringMatcher;
+import index.InvertedIndex;
+import index.TermDictionary;
+import index.Tokenizer;
+
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
-// Анализирует запросы пользователей для определения намерения и стратегии поиска
+// Анализирует запросы пользователей для определения намерения и стратегии поиска.
+// Результат разбора (ParsedQuery) кэшируется по строке запроса до изменения индекса.
 
 public class QueryAnalyzer {
     
-    // Общие шаблоны для различных типов запросов
-    private static final Pattern QUOTED_PHRASE = Pattern.compile("\"([^\"]+)\"");
     private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
         "и", "в", "на", "с", "для", "от", "до", "по", "за", "из", "к", "о", "об", "про",
         "the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for", "of", "with"
     ));
     
+    // Термин с меньшим числом документов считается редким и может оказаться опечаткой
+    private static final int MIN_POSTINGS = 2;
+    // Дорогие стратегии запускаются, если дешевые нашли меньше продуктов, чем помещается на страницу
+    private static final int ESCALATION_THRESHOLD = 20;
+    // Число слотов кэша разобранных запросов (степень двойки)
+    private static final int CACHE_SIZE = 1024;
+    
+    private final InvertedIndex invertedIndex; // статистика индекса; null — эвристики без статистики
+    private final TermDictionary termDictionary; // ординалы для подсветки; null — без подсветки по ординалам
+    private final boolean indexedExactMatch;
+    // Кэш разобранных запросов с прямым отображением: слот по хешу строки, при коллизии запись вытесняется
+    private final AtomicReferenceArray<ParsedQuery> cache;
+    
+    public QueryAnalyzer() {
+        this(null, null, false);
+    }
+    
+    public QueryAnalyzer(InvertedIndex invertedIndex, boolean indexedExactMatch) {
+        this(invertedIndex, null, indexedExactMatch);
+    }
+    
+    public QueryAnalyzer(InvertedIndex invertedIndex, TermDictionary termDictionary, boolean indexedExactMatch) {
+        this.invertedIndex = invertedIndex;
+        this.termDictionary = termDictionary;
+        this.indexedExactMatch = indexedExactMatch;
+        this.cache = new AtomicReferenceArray<>(CACHE_SIZE);
+    }
+    
     public QueryIntent analyzeQuery(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            return new QueryIntent(false, false, false, QueryType.EMPTY);
-        }
+        return parse(query).getIntent();
+    }
+    
+    // Разбор с кэшем: повторный запрос с той же строкой не разбирается, пока не изменились индекс и словарь
+    ParsedQuery parse(String query) {
+        String key = query != null ? query : "";
+        long indexVersion = invertedIndex != null ? invertedIndex.getVersion() : 0L;
+        int dictionarySize = termDictionary != null ? termDictionary.size() : 0;
         
+        int hash = key.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        ParsedQuery cached = cache.get(slot);
+        if (cached != null && cached.getQuery().equals(key) && cached.isCurrent(indexVersion, dictionarySize)) {
+            return cached;
+        }
+        ParsedQuery parsed = parseUncached(key, indexVersion, dictionarySize);
+        cache.set(slot, parsed);
+        return parsed;
+    }
+    
+    private ParsedQuery parseUncached(String query, long indexVersion, int dictionarySize) {
         String cleanQuery = query.trim().toLowerCase();
+        if (cleanQuery.isEmpty()) {
+            QueryIntent intent = new QueryIntent(false, false, false, QueryType.EMPTY, emptyPlan());
+            return new ParsedQuery(query, new String[0], new int[0], List.of(), new int[0][], null, intent,
+                    indexVersion, dictionarySize);
+        }
         
-        // Проверка на цитированные фразы
-        boolean isExactPhrase = QUOTED_PHRASE.matcher(query).find();
+        // Фразы в кавычках, слова запроса и их ординалы — за один проход по строке каждый
+        List<String> phrases = new ArrayList<>();
+        boolean isExactPhrase = scanPhrases(query, phrases);
+        String[] tokens = Tokenizer.tokenize(cleanQuery);
+        int[] termOrdinals = new int[tokens.length];
+        boolean hasKeywords = false;
+        for (int i = 0; i < tokens.length; i++) {
+            termOrdinals[i] = termDictionary != null ? termDictionary.getOrdinal(tokens[i]) : -1;
+            hasKeywords |= isSignificantTerm(tokens[i]);
+        }
         
-        // Проверка, есть ли в запросе значимые слова
-        boolean hasKeywords = hasValidKeywords(cleanQuery);
+        // Определение типа запроса
+        QueryType queryType = determineQueryType(tokens, isExactPhrase);
         
-        // Определение, является ли нечеткий поиск полезным
-        boolean allowsFuzzySearch = shouldUseFuzzySearch(cleanQuery);
+        // Выбор стратегий по статистике индекса
+        SearchPlan plan = buildPlan(cleanQuery, tokens, isExactPhrase, hasKeywords);
         
-        // Определение типа запроса
-        QueryType queryType = determineQueryType(cleanQuery, isExactPhrase);
+        QueryIntent intent = new QueryIntent(isExactPhrase, hasKeywords, plan.usesFuzzySearch(), queryType, plan);
+        return new ParsedQuery(query, tokens, termOrdinals, phrases, resolveHighlightTerms(phrases, tokens, termOrdinals),
+                SubstringMatcher.compile(query), intent, indexVersion, dictionarySize);
+    }
+    
+    private SearchPlan buildPlan(String query, String[] tokens, boolean isExactPhrase, boolean hasKeywords) {
+        List<SearchPlan.Strategy> primary = new ArrayList<>();
+        List<SearchPlan.Strategy> escalation = new ArrayList<>();
+        List<String> fuzzyTerms = new ArrayList<>();
+        List<String> escalationFuzzyTerms = new ArrayList<>();
         
-        return new QueryIntent(isExactPhrase, hasKeywords, allowsFuzzySearch, queryType);
+        if (isExactPhrase) {
+            primary.add(SearchPlan.Strategy.PHRASE);
+        }
+        if (hasKeywords) {
+            primary.add(SearchPlan.Strategy.KEYWORD);
+        }
+        
+        if (invertedIndex == null) {
+            // Без статистики: прежние эвристики, все стратегии на первом уровне
+            if (shouldUseFuzzySearch(tokens)) {
+                primary.add(SearchPlan.Strategy.FUZZY);
+                fuzzyTerms.add(query);
+            }
+            primary.add(SearchPlan.Strategy.EXACT_SCAN);
+            return new SearchPlan(primary, escalation, fuzzyTerms, escalationFuzzyTerms, ESCALATION_THRESHOLD);
+        }
+        
+        // Нечеткий поиск сразу — только для терминов вне словаря, для редких — при эскалации
+        for (String term : new LinkedHashSet<>(Arrays.asList(tokens))) {
+            if (!isSignificantTerm(term)) {
+                continue;
+            }
+            int postings = invertedIndex.getDocumentFrequency(term);
+            if (postings == 0) {
+                fuzzyTerms.add(term);
+            } else if (postings < MIN_POSTINGS) {
+                escalationFuzzyTerms.add(term);
+            }
+        }
+        if (!fuzzyTerms.isEmpty()) {
+            primary.add(SearchPlan.Strategy.FUZZY);
+        }
+        if (!escalationFuzzyTerms.isEmpty()) {
+            escalation.add(SearchPlan.Strategy.FUZZY);
+        }
+        
+        // Точные совпадения: по индексу, если он есть, иначе пересчет кандидатов или полный просмотр при эскалации
+        if (indexedExactMatch) {
+            primary.add(SearchPlan.Strategy.EXACT_INDEXED);
+        } else {
+            primary.add(SearchPlan.Strategy.EXACT_RESCORE);
+            escalation.add(SearchPlan.Strategy.EXACT_SCAN);
+        }
+        
+        return new SearchPlan(primary, escalation, fuzzyTerms, escalationFuzzyTerms, ESCALATION_THRESHOLD);
     }
     
-    private boolean hasValidKeywords(String query) {
-        String[] words = query.split("\\W+");
-        for (String word : words) {
-            if (word.length() > 2 && !STOP_WORDS.contains(word)) {
-                return true;
+    private SearchPlan emptyPlan() {
+        return new SearchPlan(List.of(), List.of(), List.of(), List.of(), ESCALATION_THRESHOLD);
+    }
+    
+    // Извлекает фразы в кавычках в нижнем регистре
+    public List<String> extractPhrases(String query) {
+        List<String> phrases = new ArrayList<>();
+        if (query != null) {
+            scanPhrases(query, phrases);
+        }
+        return phrases;
+    }
+    
+    // Ищет фрагменты вида "текст" слева направо, как шаблон "([^"]+)"; возвращает true, если найден хотя бы один.
+    // Пустые после обрезки пробелов фразы в список не попадают
+    private static boolean scanPhrases(String query, List<String> phrases) {
+        boolean found = false;
+        int open = query.indexOf('"');
+        while (open >= 0) {
+            int close = query.indexOf('"', open + 1);
+            if (close < 0) {
+                break;
+            }
+            if (close == open + 1) {
+                open = close; // пустые кавычки: закрывающая может открыть следующую фразу
+                continue;
             }
+            found = true;
+            String phrase = query.substring(open + 1, close).trim().toLowerCase();
+            if (!phrase.isEmpty()) {
+                phrases.add(phrase);
+            }
+            open = query.indexOf('"', close + 1);
         }
-        return false;
+        return found;
     }
     
-    private boolean shouldUseFuzzySearch(String query) {
-        String[] words = query.split("\\W+");
-        
+    // Ординалы фраз и значимых слов для подсветки; термины вне словаря не встречаются ни в одном продукте
+    private int[][] resolveHighlightTerms(List<String> phrases, String[] tokens, int[] termOrdinals) {
+        if (termDictionary == null) {
+            return new int[0][];
+        }
+        Map<String, int[]> terms = new LinkedHashMap<>();
+        for (String phrase : phrases) {
+            String[] words = Tokenizer.tokenize(phrase);
+            int[] ordinals = new int[words.length];
+            boolean known = words.length > 0;
+            for (int i = 0; i < words.length && known; i++) {
+                ordinals[i] = termDictionary.getOrdinal(words[i]);
+                known = ordinals[i] >= 0;
+            }
+            if (known) {
+                terms.putIfAbsent(phrase, ordinals);
+            }
+        }
+        for (int i = 0; i < tokens.length; i++) {
+            if (termOrdinals[i] >= 0 && isSignificantTerm(tokens[i])) {
+                terms.putIfAbsent(tokens[i], new int[]{termOrdinals[i]});
+            }
+        }
+        return terms.values().toArray(new int[0][]);
+    }
+    
+    // Значимое слово: длиннее двух символов и не стоп-слово
+    static boolean isSignificantTerm(String word) {
+        return word.length() > 2 && !STOP_WORDS.contains(word);
+    }
+    
+    private boolean shouldUseFuzzySearch(String[] words) {
         // Использование нечеткого поиска для коротких запросов или одиночных слов
         if (words.length <= 2) {
             return true;
@@ -74,13 +244,11 @@ public class QueryAnalyzer {
         return false;
     }
     
-    private QueryType determineQueryType(String query, boolean isExactPhrase) {
+    private QueryType determineQueryType(String[] words, boolean isExactPhrase) {
         if (isExactPhrase) {
             return QueryType.EXACT_PHRASE;
         }
         
-        String[] words = query.split("\\W+");
-        
         if (words.length == 1) {
             return QueryType.SINGLE_KEYWORD;
         } else if (words.length <= 3) {
@@ -99,18 +267,22 @@ class QueryIntent {
     private final boolean hasKeywords;
     private final boolean allowsFuzzySearch;
     private final QueryType queryType;
+    private final SearchPlan plan;
     
-    public QueryIntent(boolean exactPhrase, boolean hasKeywords, boolean allowsFuzzySearch, QueryType queryType) {
+    public QueryIntent(boolean exactPhrase, boolean hasKeywords, boolean allowsFuzzySearch, QueryType queryType,
+                       SearchPlan plan) {
         this.exactPhrase = exactPhrase;
         this.hasKeywords = hasKeywords;
         this.allowsFuzzySearch = allowsFuzzySearch;
         this.queryType = queryType;
+        this.plan = plan;
     }
     
     public boolean isExactPhrase() { return exactPhrase; }
     public boolean hasKeywords() { return hasKeywords; }
     public boolean allowsFuzzySearch() { return allowsFuzzySearch; }
     public QueryType getQueryType() { return queryType; }
+    public SearchPlan getPlan() { return plan; }
     
     @Override
     public String toString() {
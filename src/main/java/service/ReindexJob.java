@@ -0,0 +1,174 @@
+package service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Полная переиндексация без простоя: новый движок строится в фоне, пока текущий обслуживает запросы,
+// затем атомарно подменяет его в общей ссылке. Запросы, начатые на старом движке, завершаются на нем;
+// старый движок отпускается, когда завершится последний из них. Одновременно идет не больше одной
+// переиндексации, потоки индексации ограничены настройкой построителя.
+// С журналом изменений новый движок перед заменой догоняет записи, дописанные во время построения:
+// сначала без блокировки, затем остаток под монитором журнала, который держит и пакетная загрузка,
+// так что ни один пакет не попадет только в старый движок.
+
+public class ReindexJob implements AutoCloseable {
+    // Сколько ждать завершения запросов на старом движке
+    private static final long DRAIN_TIMEOUT_MILLIS = 60_000;
+
+    private final AtomicReference<EngineHandle> current;
+    private final Supplier<SearchEngineBuilder> builders;
+    private final WriteAheadLog wal;           // null — без журнала
+    private final ExecutorService executor;
+
+    private volatile SearchEngineBuilder builder;
+    private volatile String state = "idle";
+    private volatile String phase = "idle";
+    private volatile long startNanos;
+    private volatile long elapsedMillis;
+    private volatile int inFlightAtSwap;
+    private volatile long drainMillis;
+    private volatile boolean previousReleased;
+    private volatile long heapBeforeBytes;
+    private volatile long peakHeapBytes;
+    private volatile String error;
+
+    public ReindexJob(AtomicReference<EngineHandle> current, Supplier<SearchEngineBuilder> builders) {
+        this(current, builders, null);
+    }
+
+    public ReindexJob(AtomicReference<EngineHandle> current, Supplier<SearchEngineBuilder> builders,
+                      WriteAheadLog wal) {
+        this.current = current;
+        this.builders = builders;
+        this.wal = wal;
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "reindex");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Запускает переиндексацию; IllegalStateException, если она уже идет
+    public synchronized ReindexStatus start() {
+        if ("running".equals(state)) {
+            throw new IllegalStateException("Reindex is already running");
+        }
+        builder = null;
+        phase = "pending";
+        inFlightAtSwap = 0;
+        drainMillis = 0;
+        previousReleased = false;
+        peakHeapBytes = 0;
+        error = null;
+        heapBeforeBytes = resetHeapPeaks();
+        startNanos = System.nanoTime();
+        state = "running";
+        executor.execute(this::run);
+        return getStatus();
+    }
+
+    private void run() {
+        try {
+            EngineHandle previous;
+            // Журнал от снимка, с которого строится движок, нужен до конца догоняющего чтения: контрольная
+            // точка, завершившаяся во время построения, не удаляет его сегменты
+            try (WriteAheadLog.Retention retention = wal != null ? wal.retain() : null) {
+                builder = builders.get();
+                EngineHandle next = builder.build();
+                try {
+                    previous = swap(next, builder.getRecoveredLsn());
+                } catch (IOException | RuntimeException e) {
+                    next.retire();
+                    throw e;
+                }
+            }
+            inFlightAtSwap = previous.getInFlight();
+
+            phase = "draining";
+            long drainStart = System.nanoTime();
+            previous.retire();
+            previousReleased = previous.awaitRelease(DRAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            drainMillis = (System.nanoTime() - drainStart) / 1_000_000;
+
+            peakHeapBytes = heapPeak();
+            elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            phase = "done";
+            state = "done";
+            System.out.println("Reindex finished: " + getStatus());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (Exception | OutOfMemoryError e) {
+            // Недостроенный движок отбрасывается, запросы продолжает обслуживать текущий
+            fail(e);
+        }
+    }
+
+    private EngineHandle swap(EngineHandle next, long recoveredLsn) throws IOException {
+        if (wal == null) {
+            phase = "swapping";
+            return current.getAndSet(next);
+        }
+        phase = "catching_up";
+        SmartSearchEngine engine = next.getEngine();
+        long lsn = wal.replay(recoveredLsn, engine::applyChanges);
+        synchronized (wal) {
+            phase = "swapping";
+            wal.replay(lsn, engine::applyChanges);
+            return current.getAndSet(next);
+        }
+    }
+
+    private void fail(Throwable e) {
+        peakHeapBytes = heapPeak();
+        elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        error = e.toString();
+        state = "failed";
+        System.err.println("Reindex failed: " + e);
+    }
+
+    public ReindexStatus getStatus() {
+        SearchEngineBuilder running = builder;
+        String currentPhase = running != null && "running".equals(state) && "pending".equals(phase)
+                ? running.getPhase() : phase;
+        long elapsed = "running".equals(state) ? (System.nanoTime() - startNanos) / 1_000_000 : elapsedMillis;
+        return new ReindexStatus(state, currentPhase, running != null ? running.getProductsLoaded() : 0, elapsed,
+                inFlightAtSwap, drainMillis, previousReleased, heapBeforeBytes,
+                "running".equals(state) ? heapPeak() : peakHeapBytes, error);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Сбрасывает пики пулов кучи и возвращает текущее заполнение кучи
+    private static long resetHeapPeaks() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                used += pool.getUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+        }
+        return used;
+    }
+
+    // Сумма пиков пулов кучи: верхняя оценка, так как пики разных пулов могли прийтись на разное время
+    private static long heapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,78 @@
+package service;
+
+// Снимок состояния полной переиндексации для GET /api/admin/reindex.
+// state: idle, running, done, failed; phase — текущий этап построения или замены движка
+
+public class ReindexStatus {
+    private final String state;
+    private final String phase;
+    private final long productsLoaded;
+    private final long elapsedMillis;
+    private final int inFlightAtSwap;      // запросы, выполнявшиеся на старом движке в момент замены
+    private final long drainMillis;        // время до завершения последнего из них и освобождения движка
+    private final boolean previousReleased;
+    private final long heapBeforeBytes;
+    private final long peakHeapBytes;      // пик кучи от начала построения до освобождения старого движка
+    private final String error;
+
+    public ReindexStatus(String state, String phase, long productsLoaded, long elapsedMillis, int inFlightAtSwap,
+                         long drainMillis, boolean previousReleased, long heapBeforeBytes, long peakHeapBytes,
+                         String error) {
+        this.state = state;
+        this.phase = phase;
+        this.productsLoaded = productsLoaded;
+        this.elapsedMillis = elapsedMillis;
+        this.inFlightAtSwap = inFlightAtSwap;
+        this.drainMillis = drainMillis;
+        this.previousReleased = previousReleased;
+        this.heapBeforeBytes = heapBeforeBytes;
+        this.peakHeapBytes = peakHeapBytes;
+        this.error = error;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public long getProductsLoaded() {
+        return productsLoaded;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public int getInFlightAtSwap() {
+        return inFlightAtSwap;
+    }
+
+    public long getDrainMillis() {
+        return drainMillis;
+    }
+
+    public boolean isPreviousReleased() {
+        return previousReleased;
+    }
+
+    public long getHeapBeforeBytes() {
+        return heapBeforeBytes;
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "ReindexStatus{state=" + state + ", phase=" + phase + ", productsLoaded=" + productsLoaded
+                + ", elapsedMillis=" + elapsedMillis + ", peakHeapBytes=" + peakHeapBytes + "}";
+    }
+}
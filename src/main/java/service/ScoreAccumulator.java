@@ -0,0 +1,101 @@
+package service;
+
+// Потокобезопасный накопитель оценок релевантности для стратегий, выполняемых параллельно.
+// Каждая стратегия получает слот в порядке плана и кладет в него копию своих оценок; fold складывает
+// слоты уровня в итог в порядке плана, а не завершения стратегий. Сложение double не ассоциативно,
+// поэтому только так оценка документа побитово одинакова при каждом запросе, и курсор следующей
+// страницы, хранящий точную оценку, не дублирует и не пропускает результаты.
+// После fold и закрытия результаты опоздавших стратегий отбрасываются, чтобы ответ не менялся во время чтения.
+// Буфер итоговых оценок принадлежит потоку запроса и переиспользуется следующим запросом,
+// поэтому запись в закрытый накопитель недопустима.
+
+class ScoreAccumulator {
+    private final DocScores scores;
+    private Partial[] slots = new Partial[4];
+    private int opened;
+    private int folded;       // слоты до этого номера уже сложены или отброшены
+    private boolean sealed;
+
+    ScoreAccumulator(DocScores scores) {
+        this.scores = scores;
+    }
+
+    // Слот следующей стратегии; вызывается из потока запроса в порядке плана
+    synchronized int open() {
+        if (opened == slots.length) {
+            Partial[] expanded = new Partial[slots.length * 2];
+            System.arraycopy(slots, 0, expanded, 0, opened);
+            slots = expanded;
+        }
+        return opened++;
+    }
+
+    // Копирует оценки стратегии в ее слот: буфер стратегии принадлежит рабочему потоку
+    // и переиспользуется следующей стратегией. false, если уровень уже сложен
+    synchronized boolean merge(int slot, DocScores partialScores) {
+        if (sealed || slot < folded) {
+            return false;
+        }
+        slots[slot] = new Partial(partialScores);
+        return true;
+    }
+
+    // Складывает открытые слоты в итог в порядке их открытия и закрывает их
+    synchronized void fold() {
+        for (int slot = folded; slot < opened; slot++) {
+            if (slots[slot] != null) {
+                slots[slot].addTo(scores);
+                slots[slot] = null;
+            }
+        }
+        folded = opened;
+    }
+
+    // Оценки, вычисленные в потоке запроса после всех уровней
+    synchronized boolean merge(DocScores partialScores) {
+        if (sealed) {
+            return false;
+        }
+        scores.addAll(partialScores);
+        return true;
+    }
+
+    synchronized int size() {
+        return scores.size();
+    }
+
+    // Снимок уже найденных кандидатов
+    synchronized int[] candidates() {
+        int[] docs = new int[scores.size()];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = scores.docAt(i);
+        }
+        return docs;
+    }
+
+    synchronized DocScores seal() {
+        sealed = true;
+        return scores;
+    }
+
+    // Оценки одной стратегии: только затронутые документы, O(найденных) памяти
+    private static final class Partial {
+        private final int[] docs;
+        private final double[] values;
+
+        Partial(DocScores source) {
+            docs = new int[source.size()];
+            values = new double[docs.length];
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = source.docAt(i);
+                values[i] = source.get(docs[i]);
+            }
+        }
+
+        void addTo(DocScores target) {
+            for (int i = 0; i < docs.length; i++) {
+                target.add(docs[i], values[i]);
+            }
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class SearchAnalytics {
     private final int phraseMatches;
     private final int fuzzyMatches;
     private final int suggestions;
+    private final SearchProfile profile;
     
     public SearchAnalytics(QueryIntent queryIntent, int keywordMatches, int phraseMatches, 
                           int fuzzyMatches, int suggestions) {
@@ -17,6 +18,17 @@ public class SearchAnalytics {
         this.phraseMatches = phraseMatches;
         this.fuzzyMatches = fuzzyMatches;
         this.suggestions = suggestions;
+        this.profile = null;
+    }
+    
+    // Счетчики стратегий из профиля выполнения запроса
+    public SearchAnalytics(QueryIntent queryIntent, SearchProfile profile, int suggestions) {
+        this.queryIntent = queryIntent;
+        this.keywordMatches = profile.getCandidates("keyword");
+        this.phraseMatches = profile.getCandidates("phrase");
+        this.fuzzyMatches = profile.getCandidates("fuzzy");
+        this.suggestions = suggestions;
+        this.profile = profile;
     }
     
     public QueryIntent getQueryIntent() {
@@ -39,6 +51,14 @@ public class SearchAnalytics {
         return suggestions;
     }
     
+    public SearchProfile getProfile() {
+        return profile;
+    }
+    
+    public SearchPlan getSearchPlan() {
+        return queryIntent.getPlan();
+    }
+    
     public int getTotalMatches() {
         return keywordMatches + phraseMatches + fuzzyMatches;
     }
@@ -60,12 +80,25 @@ public class SearchAnalytics {
         report.append("=== Search Analytics Report ===\n");
         report.append("Query Intent: ").append(queryIntent.toString()).append("\n");
         report.append("Search Strategy: ").append(getSearchStrategy()).append("\n");
+        report.append("Search Plan: ").append(getSearchPlan()).append("\n");
         report.append("Results:\n");
         report.append("  - Keyword matches: ").append(keywordMatches).append("\n");
         report.append("  - Phrase matches: ").append(phraseMatches).append("\n");
         report.append("  - Fuzzy matches: ").append(fuzzyMatches).append("\n");
         report.append("  - Total matches: ").append(getTotalMatches()).append("\n");
         report.append("  - Autocomplete suggestions: ").append(suggestions).append("\n");
+        if (profile != null) {
+            report.append(String.format("Timings (total %.3f ms%s):%n", profile.getTotalNanos() / 1_000_000.0,
+                    profile.isEscalated() ? ", escalated" : ""));
+            for (SearchProfile.Stage stage : profile.getStages()) {
+                report.append("  - ").append(stage).append("\n");
+            }
+            report.append("Work:\n");
+            report.append("  - Postings read: ").append(profile.getPostingsRead()).append("\n");
+            report.append("  - Levenshtein calls: ").append(profile.getLevenshteinCalls()).append("\n");
+            report.append("  - Documents scanned: ").append(profile.getDocumentsScanned()).append("\n");
+            report.append("  - Documents scored: ").append(profile.getScoredDocuments()).append("\n");
+        }
         return report.toString();
     }
     
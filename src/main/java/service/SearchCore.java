@@ -1,16 +1,20 @@
 
 package service;
 
-import algorithm.BoyerMoore;
-import algorithm.LevenshteinDistance;
+import algorithm.AhoCorasick;
+import algorithm.SubstringMatcher;
+import algorithm.Utf8Slice;
+import index.DocBitSet;
 import index.InvertedIndex;
+import index.SuffixArrayIndex;
 import index.Trie;
 import model.Product;
+import model.ProductText;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 // SearchCore реализует основные методы поиска по продуктам, включая поиск по ключевым словам, 
 // фразовый поиск и нечеткий (fuzzy) поиск. Он взаимодействует с инвертированным индексом, 
@@ -21,61 +25,152 @@ public class SearchCore {
     private InvertedIndex invertedIndex;
     private Trie trie;
     private DataManager dataManager;
+    private SuffixArrayIndex substringIndex; // необязательный подстрочный индекс
 
     public SearchCore(InvertedIndex invertedIndex, Trie trie, DataManager dataManager) {
+        this(invertedIndex, trie, dataManager, null);
+    }
+
+    public SearchCore(InvertedIndex invertedIndex, Trie trie, DataManager dataManager, SuffixArrayIndex substringIndex) {
         this.invertedIndex = invertedIndex;
         this.trie = trie;
         this.dataManager = dataManager;
+        this.substringIndex = substringIndex;
     }
 
     public List<Product> search(String query) {
-        Set<Integer> productIds = invertedIndex.search(query);
-        List<Product> results = productIds.stream()
-                                        .map(dataManager::getProductById)
-                                        .collect(Collectors.toList());
-        return results;
+        return toProducts(toDocs(invertedIndex.search(query)));
+    }
+
+    // Поиск по словам, уже разобранным анализатором запросов
+    DocBitSet searchDocs(String[] words) {
+        return toDocs(invertedIndex.search(words));
     }
 
     public List<Product> searchPhrase(String phrase) {
-        List<Product> phraseResults = new ArrayList<>();
-        for (Product product : dataManager.getAllProducts().values()) {
-            if (BoyerMoore.search(product.getName().toLowerCase(), phrase.toLowerCase()) != -1 ||
-                BoyerMoore.search(product.getDescription().toLowerCase(), phrase.toLowerCase()) != -1) {
-                phraseResults.add(product);
+        return toProducts(searchPhraseDocs(phrase));
+    }
+
+    DocBitSet searchPhraseDocs(String phrase) {
+        if (substringIndex != null) {
+            // Поиск по суффиксному массиву вместо полного перебора продуктов
+            return toDocs(substringIndex.findProducts(phrase, SuffixArrayIndex.FIELD_NAME | SuffixArrayIndex.FIELD_DESCRIPTION));
+        }
+
+        // Шаблон компилируется один раз на запрос и переиспользуется для всех продуктов
+        SubstringMatcher matcher = SubstringMatcher.compile(phrase);
+        int documentCount = dataManager.getDocumentCount();
+        DocBitSet phraseResults = new DocBitSet(documentCount);
+        for (int doc = 0; doc < documentCount; doc++) {
+            if (matcher.containedIn(dataManager.getLowerName(doc)) ||
+                matcher.containedIn(dataManager.getLowerDescription(doc))) {
+                phraseResults.set(doc);
             }
         }
         return phraseResults;
     }
 
-    public List<Product> fuzzySearch(String query, int maxDistance) {
-        List<Product> fuzzyResults = new ArrayList<>();
-        for (Product product : dataManager.getAllProducts().values()) {
-            // Проверка, есть ли какое-либо слово в имени или описании продукта
-            String[] nameWords = product.getName().toLowerCase().split("\\W+");
-            String[] descWords = product.getDescription().toLowerCase().split("\\W+");
-            
-            boolean found = false;
-            for (String word : nameWords) {
-                if (LevenshteinDistance.calculate(word, query.toLowerCase()) <= maxDistance) {
-                    found = true;
-                    break;
-                }
+    // Поиск продуктов, содержащих все фразы; имя и описание просматриваются один раз для всего набора фраз
+    public List<Product> searchPhrases(List<String> phrases) {
+        return toProducts(searchPhrasesDocs(phrases));
+    }
+
+    DocBitSet searchPhrasesDocs(List<String> phrases) {
+        if (phrases.isEmpty()) {
+            return new DocBitSet(dataManager.getDocumentCount());
+        }
+        if (phrases.size() == 1) {
+            return searchPhraseDocs(phrases.get(0));
+        }
+
+        List<String> lowerPhrases = new ArrayList<>();
+        for (String phrase : phrases) {
+            // Автомат ищет по байтам UTF-8 колонок, поэтому фразы переводятся в те же байты
+            lowerPhrases.add(Utf8Slice.byteString(phrase.toLowerCase()));
+        }
+        AhoCorasick automaton = new AhoCorasick(lowerPhrases);
+        int required = automaton.getPatternCount();
+        boolean[] found = new boolean[required];
+
+        int documentCount = dataManager.getDocumentCount();
+        DocBitSet phraseResults = new DocBitSet(documentCount);
+        for (int doc = 0; doc < documentCount; doc++) {
+            Arrays.fill(found, false);
+            int matched = automaton.markFound(dataManager.getLowerName(doc), found);
+            if (matched < required) {
+                matched += automaton.markFound(dataManager.getLowerDescription(doc), found);
+            }
+            if (matched == required) {
+                phraseResults.set(doc);
             }
-            if (!found) {
-                for (String word : descWords) {
-                    if (LevenshteinDistance.calculate(word, query.toLowerCase()) <= maxDistance) {
-                        found = true;
-                        break;
-                    }
-                }
+        }
+        return phraseResults;
+    }
+
+    public List<Product> fuzzySearch(String query, int maxDistance) {
+        return toProducts(fuzzySearchDocs(query, maxDistance, null, null));
+    }
+
+    // Профиль (может быть null) получает число вычисленных расстояний и просмотренных продуктов.
+    // Фильтр (может быть null) ограничивает просмотр документами из битового множества
+    DocBitSet fuzzySearchDocs(String query, int maxDistance, SearchProfile profile, DocBitSet filter) {
+        TermDistanceCache distances = new TermDistanceCache(query.toLowerCase(), dataManager.getTermDictionary());
+        int documentCount = dataManager.getDocumentCount();
+        DocBitSet fuzzyResults = new DocBitSet(documentCount);
+        int scanned = 0;
+        for (int doc = filter != null ? filter.nextSetBit(0) : 0; doc >= 0 && doc < documentCount;
+             doc = filter != null ? filter.nextSetBit(doc + 1) : doc + 1) {
+            if (Thread.currentThread().isInterrupted()) {
+                break; // поиск отменен по дедлайну
             }
-            if (found) {
-                fuzzyResults.add(product);
+            if (matchesFuzzy(dataManager.getProductTextByDocId(doc), distances, maxDistance)) {
+                fuzzyResults.set(doc);
             }
+            scanned++;
+        }
+        if (profile != null) {
+            profile.addLevenshteinCalls(distances.getComputedCount());
+            profile.addDocumentsScanned(scanned);
         }
         return fuzzyResults;
     }
 
+    // Внешние id из индексов переводятся во внутренние
+    private DocBitSet toDocs(Set<Integer> productIds) {
+        DocBitSet docs = new DocBitSet(dataManager.getDocumentCount());
+        for (int productId : productIds) {
+            int doc = dataManager.getDocId(productId);
+            if (doc >= 0) {
+                docs.set(doc);
+            }
+        }
+        return docs;
+    }
+
+    // Продукты собираются из колонок только для публичных методов, возвращающих списки
+    private List<Product> toProducts(DocBitSet docs) {
+        List<Product> products = new ArrayList<>(docs.cardinality());
+        for (int doc = docs.nextSetBit(0); doc >= 0; doc = docs.nextSetBit(doc + 1)) {
+            products.add(dataManager.getProductByDocId(doc));
+        }
+        return products;
+    }
+
+    // Проверка, есть ли какое-либо близкое слово в имени или описании продукта
+    private boolean matchesFuzzy(ProductText text, TermDistanceCache distances, int maxDistance) {
+        return containsWithin(text.getNameTerms(), distances, maxDistance) ||
+               containsWithin(text.getDescriptionTerms(), distances, maxDistance);
+    }
+
+    private boolean containsWithin(int[] terms, TermDistanceCache distances, int maxDistance) {
+        for (int term : terms) {
+            if (distances.distance(term) <= maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public List<String> autocomplete(String prefix) {
         return trie.autocomplete(prefix.toLowerCase());
     }
@@ -0,0 +1,182 @@
+package service;
+
+import index.InvertedIndex;
+import index.SuffixArrayIndex;
+import index.Trie;
+import model.Product;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Строит полный движок с нуля: хранилище, индекс, Trie, необязательный суффиксный массив и
+// наблюдатель за файлом каталога. Используется при запуске и при полной переиндексации;
+// этап и число загруженных продуктов можно читать из другого потока во время построения.
+// С журналом изменений каталог восстанавливается из его последнего снимка (или из файла каталога, пока
+// снимков нет) с наложенными записями журнала, а наблюдатель за файлом не запускается: источник
+// истины — журнал.
+
+public class SearchEngineBuilder {
+    public static final String BUNDLED_CATALOG = "products.json";
+
+    private final String catalogPath;          // null — products.json из ресурсов
+    private final int indexThreads;
+    private final boolean suffixArray;
+    private final long reloadIntervalMillis;   // 0 — без наблюдения за файлом
+    private final WriteAheadLog wal;           // null — без журнала
+    private final AtomicLong productsLoaded = new AtomicLong();
+    private volatile String phase = "pending";
+    private volatile long recoveredLsn;
+
+    public SearchEngineBuilder(String catalogPath, int indexThreads, boolean suffixArray, long reloadIntervalMillis) {
+        this(catalogPath, indexThreads, suffixArray, reloadIntervalMillis, null);
+    }
+
+    public SearchEngineBuilder(String catalogPath, int indexThreads, boolean suffixArray, long reloadIntervalMillis,
+                               WriteAheadLog wal) {
+        if (wal != null && suffixArray) {
+            throw new IllegalArgumentException("Write-ahead log requires incremental updates, "
+                    + "which are not supported with the suffix array index");
+        }
+        this.catalogPath = catalogPath;
+        this.indexThreads = indexThreads;
+        this.suffixArray = suffixArray;
+        this.reloadIntervalMillis = reloadIntervalMillis;
+        this.wal = wal;
+    }
+
+    public EngineHandle build() throws IOException {
+        // Снимок и сегменты журнала не удаляются контрольной точкой, пока они читаются
+        try (WriteAheadLog.Retention retention = wal != null ? wal.retain() : null) {
+            return buildRetained();
+        }
+    }
+
+    private EngineHandle buildRetained() throws IOException {
+        DataManager dataManager = new DataManager();
+        Consumer<Product> store = product -> {
+            dataManager.addProduct(product);
+            productsLoaded.incrementAndGet();
+        };
+        // Записи журнала сворачиваются до итогового состояния каждого id (null — удален) и накладываются
+        // на снимок при чтении, поэтому удаленные продукты не оставляют пустых документов
+        Map<Integer, Product> changes = new HashMap<>();
+        Path checkpoint = null;
+        if (wal != null) {
+            phase = "replaying";
+            long replayStart = System.nanoTime();
+            long checkpointLsn;
+            synchronized (wal) {
+                checkpoint = wal.getCheckpoint();
+                checkpointLsn = checkpoint != null ? wal.getCheckpointLsn() : 0;
+            }
+            recoveredLsn = wal.replay(checkpointLsn, (upserts, removed) -> {
+                for (int id : removed) {
+                    changes.put(id, null);
+                }
+                for (Product product : upserts) {
+                    changes.put(product.getId(), product);
+                }
+            });
+            System.out.printf("Replayed write-ahead log LSN %d..%d (%d products changed) in %d ms%n",
+                    checkpointLsn + 1, recoveredLsn, changes.size(), (System.nanoTime() - replayStart) / 1_000_000);
+            store = overlay(changes, store);
+        }
+
+        phase = "loading";
+        long loadStart = System.nanoTime();
+        loadCatalog(checkpoint, store);
+        for (Product added : changes.values()) {
+            if (added != null) {
+                store.accept(added); // продукты, которых нет в снимке
+            }
+        }
+        long loaded = productsLoaded.get();
+        double loadSeconds = (System.nanoTime() - loadStart) / 1e9;
+        System.out.printf("Loaded %d products in %.2f s (%.0f products/sec)%n",
+                loaded, loadSeconds, loaded / Math.max(loadSeconds, 1e-9));
+
+        // Параллельная индексация по частям каталога с последующим слиянием
+        phase = "indexing";
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        long indexStart = System.nanoTime();
+        new Indexer(invertedIndex, trie).indexProducts(dataManager.getDocuments(), indexThreads);
+        System.out.printf("Indexed in %d ms on %d threads%n", (System.nanoTime() - indexStart) / 1_000_000, indexThreads);
+
+        // Построение подстрочного индекса (необязательно)
+        SuffixArrayIndex substringIndex = null;
+        if (suffixArray) {
+            phase = "suffix_array";
+            substringIndex = new SuffixArrayIndex(dataManager.getDocuments());
+            System.out.println("Suffix array built in " + substringIndex.getBuildTimeMillis() + " ms: "
+                    + substringIndex.getTextLength() + " chars, ~"
+                    + substringIndex.getMemoryFootprintBytes() / 1024 + " KB");
+        }
+
+        phase = "facets";
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, dataManager, substringIndex);
+
+        // Перезагрузка изменений файла каталога без перезапуска
+        CatalogWatcher watcher = null;
+        if (catalogPath != null && reloadIntervalMillis > 0 && substringIndex == null && wal == null) {
+            watcher = new CatalogWatcher(Path.of(catalogPath), engine);
+            watcher.start(reloadIntervalMillis);
+            System.out.println("Watching " + catalogPath + " for changes every " + reloadIntervalMillis + " ms");
+        }
+
+        phase = "ready";
+        return new EngineHandle(engine, dataManager, watcher);
+    }
+
+    // Продукт из снимка заменяется итоговым состоянием из журнала; примененные изменения удаляются из changes
+    private static Consumer<Product> overlay(Map<Integer, Product> changes, Consumer<Product> store) {
+        return product -> {
+            if (!changes.containsKey(product.getId())) {
+                store.accept(product);
+                return;
+            }
+            Product changed = changes.remove(product.getId());
+            if (changed != null) {
+                store.accept(changed);
+            }
+        };
+    }
+
+    // Каталог читается из снимка журнала, из файла (обычного или .gz), иначе из products.json в ресурсах
+    private void loadCatalog(Path checkpoint, Consumer<Product> store) throws IOException {
+        if (checkpoint != null) {
+            System.out.println("Streaming checkpoint " + checkpoint);
+            ProductLoader.streamProducts(checkpoint, store);
+            return;
+        }
+        if (catalogPath != null) {
+            System.out.println("Streaming catalog from " + catalogPath);
+            ProductLoader.streamProducts(Path.of(catalogPath), store);
+            return;
+        }
+        try (InputStream inputStream = SearchEngineBuilder.class.getClassLoader().getResourceAsStream(BUNDLED_CATALOG)) {
+            if (inputStream == null) {
+                throw new IOException("Resource not found: " + BUNDLED_CATALOG);
+            }
+            ProductLoader.streamProducts(inputStream, store);
+        }
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public long getProductsLoaded() {
+        return productsLoaded.get();
+    }
+
+    // LSN последней записи журнала, вошедшей в построенный движок
+    public long getRecoveredLsn() {
+        return recoveredLsn;
+    }
+}
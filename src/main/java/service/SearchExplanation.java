@@ -0,0 +1,25 @@
+package service;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import model.SearchResponse;
+
+// Ответ explain-запроса: обычная страница результатов и трассировка ее выполнения
+
+public class SearchExplanation {
+    private final SearchResponse response;
+    private final SearchProfile profile;
+
+    public SearchExplanation(SearchResponse response, SearchProfile profile) {
+        this.response = response;
+        this.profile = profile;
+    }
+
+    @JsonUnwrapped
+    public SearchResponse getResponse() {
+        return response;
+    }
+
+    public SearchProfile getProfile() {
+        return profile;
+    }
+}
@@ -0,0 +1,75 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// План выполнения запроса: дешевые стратегии первого уровня и дорогие стратегии,
+// которые запускаются только если первый уровень нашел меньше escalationThreshold продуктов
+
+public class SearchPlan {
+
+    public enum Strategy {
+        PHRASE,         // фразы в кавычках
+        KEYWORD,        // инвертированный индекс
+        FUZZY,          // нечеткий поиск по заданным терминам
+        EXACT_INDEXED,  // точные совпадения через суффиксный массив
+        EXACT_RESCORE,  // точные совпадения только среди уже найденных кандидатов
+        EXACT_SCAN      // точные совпадения полным просмотром каталога
+    }
+
+    private final List<Strategy> primary;
+    private final List<Strategy> escalation;
+    private final List<String> fuzzyTerms;           // термины вне словаря: нечеткий поиск сразу
+    private final List<String> escalationFuzzyTerms; // редкие термины: нечеткий поиск при эскалации
+    private final int escalationThreshold;
+
+    public SearchPlan(List<Strategy> primary, List<Strategy> escalation,
+                      List<String> fuzzyTerms, List<String> escalationFuzzyTerms, int escalationThreshold) {
+        this.primary = Collections.unmodifiableList(new ArrayList<>(primary));
+        this.escalation = Collections.unmodifiableList(new ArrayList<>(escalation));
+        this.fuzzyTerms = Collections.unmodifiableList(new ArrayList<>(fuzzyTerms));
+        this.escalationFuzzyTerms = Collections.unmodifiableList(new ArrayList<>(escalationFuzzyTerms));
+        this.escalationThreshold = escalationThreshold;
+    }
+
+    public List<Strategy> getPrimary() {
+        return primary;
+    }
+
+    public List<Strategy> getEscalation() {
+        return escalation;
+    }
+
+    public List<String> getFuzzyTerms() {
+        return fuzzyTerms;
+    }
+
+    public List<String> getEscalationFuzzyTerms() {
+        return escalationFuzzyTerms;
+    }
+
+    public int getEscalationThreshold() {
+        return escalationThreshold;
+    }
+
+    public boolean usesFuzzySearch() {
+        return primary.contains(Strategy.FUZZY) || escalation.contains(Strategy.FUZZY);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder plan = new StringBuilder("SearchPlan{primary=").append(primary);
+        if (!fuzzyTerms.isEmpty()) {
+            plan.append(", fuzzyTerms=").append(fuzzyTerms);
+        }
+        if (!escalation.isEmpty()) {
+            plan.append(", escalation=").append(escalation)
+                .append(" if hits < ").append(escalationThreshold);
+        }
+        if (!escalationFuzzyTerms.isEmpty()) {
+            plan.append(", escalationFuzzyTerms=").append(escalationFuzzyTerms);
+        }
+        return plan.append('}').toString();
+    }
+}
@@ -0,0 +1,167 @@
+package service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Трассировка выполнения одного запроса: время этапов, число кандидатов и объем выполненной работы.
+// Записывается только для explain-запросов; без профиля поиск не делает никаких замеров
+
+public class SearchProfile {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // Этап выполнения: стратегия в рабочем потоке или шаг в потоке запроса
+    public static class Stage {
+        private final String name;
+        private final long nanos;
+        private final int candidates;
+        private final long allocatedBytes;
+
+        Stage(String name, long nanos, int candidates, long allocatedBytes) {
+            this.name = name;
+            this.nanos = nanos;
+            this.candidates = candidates;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public int getCandidates() {
+            return candidates;
+        }
+
+        // Память, выделенная потоком этапа, или -1, если JVM не поддерживает замер
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %.3f ms, %d candidates, %s", name, nanos / 1_000_000.0, candidates,
+                    allocatedBytes >= 0 ? allocatedBytes + " bytes" : "allocations n/a");
+        }
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    private final AtomicLong postingsRead = new AtomicLong();
+    private final AtomicLong levenshteinCalls = new AtomicLong();
+    private final AtomicLong documentsScanned = new AtomicLong();
+    private volatile String plan;
+    private volatile boolean escalated;
+    private volatile int scoredDocuments;
+    private volatile long totalNanos;
+    // Начало текущего этапа в потоке запроса
+    private final long startNanos;
+    private long stageStartNanos;
+    private long stageStartAllocatedBytes;
+
+    public SearchProfile() {
+        this.startNanos = System.nanoTime();
+        this.stageStartNanos = startNanos;
+        this.stageStartAllocatedBytes = allocatedBytes();
+    }
+
+    // Выделенная текущим потоком память в байтах или -1, если замер недоступен
+    static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    // Завершает этап, начатый в startNanos при выделенной потоком памяти startAllocatedBytes
+    synchronized void recordStage(String name, long startNanos, long startAllocatedBytes, int candidates) {
+        long nanos = System.nanoTime() - startNanos;
+        long allocated = startAllocatedBytes >= 0 ? allocatedBytes() - startAllocatedBytes : -1;
+        stages.add(new Stage(name, nanos, candidates, allocated));
+    }
+
+    // Завершает текущий этап потока запроса и начинает следующий
+    void endStage(String name, int candidates) {
+        recordStage(name, stageStartNanos, stageStartAllocatedBytes, candidates);
+        stageStartNanos = System.nanoTime();
+        stageStartAllocatedBytes = allocatedBytes();
+    }
+
+    void finish() {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    void addPostingsRead(long count) {
+        postingsRead.addAndGet(count);
+    }
+
+    void addLevenshteinCalls(long count) {
+        levenshteinCalls.addAndGet(count);
+    }
+
+    void addDocumentsScanned(long count) {
+        documentsScanned.addAndGet(count);
+    }
+
+    void setPlan(SearchPlan plan) {
+        this.plan = plan.toString();
+    }
+
+    void setEscalated(boolean escalated) {
+        this.escalated = escalated;
+    }
+
+    void setScoredDocuments(int scoredDocuments) {
+        this.scoredDocuments = scoredDocuments;
+    }
+
+    public synchronized List<Stage> getStages() {
+        return new ArrayList<>(stages);
+    }
+
+    // Сумма кандидатов по этапам с указанным именем (стратегия может выполняться на обоих уровнях плана)
+    public synchronized int getCandidates(String stageName) {
+        int candidates = 0;
+        for (Stage stage : stages) {
+            if (stage.name.equals(stageName)) {
+                candidates += stage.candidates;
+            }
+        }
+        return candidates;
+    }
+
+    public long getPostingsRead() {
+        return postingsRead.get();
+    }
+
+    public long getLevenshteinCalls() {
+        return levenshteinCalls.get();
+    }
+
+    public long getDocumentsScanned() {
+        return documentsScanned.get();
+    }
+
+    public String getPlan() {
+        return plan;
+    }
+
+    public boolean isEscalated() {
+        return escalated;
+    }
+
+    public int getScoredDocuments() {
+        return scoredDocuments;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+}
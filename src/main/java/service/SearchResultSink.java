@@ -0,0 +1,21 @@
+package service;
+
+import model.FacetCounts;
+import model.SearchCursor;
+import model.SearchResult;
+
+import java.io.IOException;
+
+// Получатель страницы результатов: сначала сведения о странице, затем фасеты (если запрошены),
+// затем результаты по одному, каждый сразу после его сборки из хранилища. Вызывается без блокировки
+// каталога, поэтому может писать ответ прямо в сокет, не задерживая изменения каталога и не собирая
+// ни страницу, ни весь JSON ответа в памяти
+
+public interface SearchResultSink {
+    void start(boolean partial, SearchCursor nextCursor) throws IOException;
+
+    default void facets(FacetCounts facets) throws IOException {
+    }
+
+    void accept(SearchResult result) throws IOException;
+}
@@ -1,12 +1,41 @@
 package service;
 
 import algorithm.LevenshteinDistance;
+import algorithm.SubstringMatcher;
+import algorithm.Utf8Slice;
+import index.DocBitSet;
+import index.FacetIndex;
 import index.InvertedIndex;
+import index.PriceColumn;
+import index.SuffixArrayIndex;
+import index.TermDictionary;
 import index.Trie;
+import model.BulkOperation;
+import model.BulkResult;
+import model.FacetCounts;
 import model.Product;
+import model.ProductText;
+import model.ResultField;
+import model.SearchCursor;
+import model.SearchRequest;
+import model.SearchResponse;
 import model.SearchResult;
+import model.SortOrder;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 // Smart Search Engine комбинирует несколько алгоритмов поиска
@@ -18,6 +47,18 @@ public class SmartSearchEngine {
     private DataManager dataManager;
     private SearchCore searchCore;
     private QueryAnalyzer queryAnalyzer;
+    private SuffixArrayIndex substringIndex;
+    // Фасеты и колонка цен заменяются целиком при изменении каталога
+    private volatile FacetIndex facetIndex;
+    private volatile PriceColumn prices;
+    // Поиск выполняется под блокировкой чтения, изменения каталога — под блокировкой записи.
+    // Каждая стратегия держит и собственную блокировку чтения: отмененная по дедлайну может еще
+    // дочитывать индекс после ухода запроса, и писатель дождется ее завершения
+    private final ReentrantReadWriteLock catalogLock = new ReentrantReadWriteLock();
+    // Изменения каталога выполняются по одному. Писатель, которому нужно сначала сравнить свои изменения
+    // с хранилищем, читает его под этой блокировкой без блокировки чтения: поиск не мешает, а другие
+    // писатели не меняют хранилище между сравнением и применением
+    private final ReentrantLock writerLock = new ReentrantLock();
     
     // Параметры конфигурации
     private static final int MAX_FUZZY_DISTANCE = 2;
@@ -25,51 +66,597 @@ public class SmartSearchEngine {
     private static final double PHRASE_MATCH_BOOST = 1.5;
     private static final double FUZZY_MATCH_PENALTY = 0.5;
     private static final int MAX_RESULTS = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    // Потоковая выдача не держит страницу в памяти, поэтому допускает страницы крупнее, например для выгрузки
+    private static final int MAX_STREAM_PAGE_SIZE = 1_000;
+    // Бюджет времени на запрос: -Dsearch.deadlineMs (по умолчанию 500 мс)
+    private static final long DEADLINE_MILLIS = Long.getLong("search.deadlineMs", 500);
+    // Длина фрагмента подсветки в символах; 0 — поле целиком
+    private static final int FRAGMENT_SIZE = Integer.getInteger("search.fragmentSize", 160);
+
+    private static final int MAX_BATCH_SIZE = 500;
+
+    // Общий пул для параллельного выполнения стратегий поиска
+    private static final ExecutorService STRATEGY_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), daemonThreads("search-strategy-"));
+    // Отдельный пул для запросов пакета: они сами ждут стратегии, и общий пул привел бы к взаимной блокировке
+    private static final ExecutorService BATCH_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), daemonThreads("search-batch-"));
+
+    private static ThreadFactory daemonThreads(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, namePrefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 
     public SmartSearchEngine(InvertedIndex invertedIndex, Trie trie, DataManager dataManager) {
+        this(invertedIndex, trie, dataManager, null);
+    }
+
+    public SmartSearchEngine(InvertedIndex invertedIndex, Trie trie, DataManager dataManager,
+                             SuffixArrayIndex substringIndex) {
         this.invertedIndex = invertedIndex;
         this.trie = trie;
         this.dataManager = dataManager;
-        this.searchCore = new SearchCore(invertedIndex, trie, dataManager);
-        this.queryAnalyzer = new QueryAnalyzer();
+        this.substringIndex = substringIndex;
+        this.searchCore = new SearchCore(invertedIndex, trie, dataManager, substringIndex);
+        this.queryAnalyzer = new QueryAnalyzer(invertedIndex, dataManager.getTermDictionary(), substringIndex != null);
+        this.facetIndex = new FacetIndex(dataManager.getDocuments());
+        this.prices = facetIndex.getPrices();
     }
 
 
      // Основной метод поиска, который комбинирует несколько алгоритмов
      
     public List<SearchResult> smartSearch(String query) {
+        return search(query).getResults();
+    }
+
+    public SearchResponse search(String query) {
+        return search(query, MAX_RESULTS, null, DEADLINE_MILLIS);
+    }
+
+    public SearchResponse search(String query, long deadlineMillis) {
+        return search(query, MAX_RESULTS, null, deadlineMillis);
+    }
+
+    // Страница из limit результатов после курсора (null — первая страница)
+    public SearchResponse search(String query, int limit, SearchCursor after) {
+        return search(query, limit, after, DEADLINE_MILLIS);
+    }
+
+    public SearchResponse search(String query, int limit, SearchCursor after, long deadlineMillis) {
+        return collect(new SearchRequest(query, limit, null), after, deadlineMillis, null);
+    }
+
+    // Запрос со всеми параметрами: размер страницы, курсор, фасеты
+    public SearchResponse search(SearchRequest request) {
+        return collect(request, decodeCursor(request), DEADLINE_MILLIS, null);
+    }
+
+    // Тот же поиск с трассировкой выполнения: время и объем работы каждого этапа
+    public SearchExplanation explain(String query, int limit, SearchCursor after) {
+        SearchProfile profile = new SearchProfile();
+        return new SearchExplanation(collect(new SearchRequest(query, limit, null), after, DEADLINE_MILLIS, profile),
+                profile);
+    }
+
+    public SearchExplanation explain(SearchRequest request) {
+        SearchProfile profile = new SearchProfile();
+        return new SearchExplanation(collect(request, decodeCursor(request), DEADLINE_MILLIS, profile), profile);
+    }
+
+    // Потоковая выдача: результаты передаются получателю по одному, каждый сразу после материализации.
+    // Страница может быть больше обычной, до MAX_STREAM_PAGE_SIZE
+    public void search(String query, int limit, SearchCursor after, SearchResultSink sink) throws IOException {
+        search(query, limit, after, DEADLINE_MILLIS, sink);
+    }
+
+    public void search(String query, int limit, SearchCursor after, long deadlineMillis,
+                       SearchResultSink sink) throws IOException {
+        stream(new SearchRequest(query, limit, null), after, deadlineMillis, sink);
+    }
+
+    public void search(SearchRequest request, SearchResultSink sink) throws IOException {
+        stream(request, decodeCursor(request), DEADLINE_MILLIS, sink);
+    }
+
+    private SearchResponse collect(SearchRequest request, SearchCursor after, long deadlineMillis,
+                                   SearchProfile profile) {
+        catalogLock.readLock().lock();
+        try {
+            return collectLocked(request, after, deadlineMillis, profile);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    private SearchResponse collectLocked(SearchRequest request, SearchCursor after, long deadlineMillis,
+                                         SearchProfile profile) {
+        Page page = selectPage(request, after, deadlineMillis, MAX_PAGE_SIZE, profile);
+        List<SearchResult> results = new ArrayList<>(page.docs.length);
+        for (int i = 0; i < page.docs.length; i++) {
+            results.add(materialize(page, i));
+        }
+        if (profile != null) {
+            profile.endStage("materialize", results.size());
+            profile.finish();
+        }
+        return new SearchResponse(results, page.partial, page.nextCursor, page.facets);
+    }
+
+    // Проверяет параметры запроса до начала поиска; возвращает размер страницы
+    private static int validate(SearchRequest request) {
+        return validate(request, MAX_PAGE_SIZE);
+    }
+
+    private static int validate(SearchRequest request, int maxPageSize) {
+        int limit = request.getLimit() != null ? request.getLimit() : MAX_RESULTS;
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize + ": " + limit);
+        }
+        SortOrder.fromParameter(request.getSort());
+        EnumSet<ResultField> fields = ResultField.parse(request.getFields());
+        if (fields != null && fields.isEmpty()) {
+            throw new IllegalArgumentException("fields must not be empty");
+        }
+        if (request.getMinPrice() != null && request.getMaxPrice() != null
+                && request.getMinPrice() > request.getMaxPrice()) {
+            throw new IllegalArgumentException("minPrice must not exceed maxPrice");
+        }
+        return limit;
+    }
+
+    // Фильтр по цене в виде битового множества или null, если границы не заданы
+    private DocBitSet priceFilter(SearchRequest request) {
+        if (request.getMinPrice() == null && request.getMaxPrice() == null) {
+            return null;
+        }
+        double min = request.getMinPrice() != null ? request.getMinPrice() : Double.NEGATIVE_INFINITY;
+        double max = request.getMaxPrice() != null ? request.getMaxPrice() : Double.POSITIVE_INFINITY;
+        return prices.range(min, max);
+    }
+
+    private static SearchCursor decodeCursor(SearchRequest request) {
+        return request.getCursor() != null ? SearchCursor.decode(request.getCursor()) : null;
+    }
+
+    // Потоковая выдача. Страница отбирается под блокировкой чтения, затем каждый результат материализуется
+    // под короткой блокировкой и сразу передается получателю уже без нее: первый результат уходит клиенту,
+    // не дожидаясь остальных, а медленный клиент не задерживает изменения каталога. Каталог может измениться
+    // между результатами: каждый результат согласован сам по себе, удаленные за это время продукты пропускаются
+    private void stream(SearchRequest request, SearchCursor after, long deadlineMillis,
+                        SearchResultSink sink) throws IOException {
+        Page page;
+        catalogLock.readLock().lock();
+        try {
+            page = selectPage(request, after, deadlineMillis, MAX_STREAM_PAGE_SIZE, null);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+        sink.start(page.partial, page.nextCursor);
+        if (page.facets != null) {
+            sink.facets(page.facets);
+        }
+        for (int i = 0; i < page.docs.length; i++) {
+            SearchResult result;
+            catalogLock.readLock().lock();
+            try {
+                result = dataManager.isDeleted(page.docs[i]) ? null : materialize(page, i);
+            } finally {
+                catalogLock.readLock().unlock();
+            }
+            if (result != null) {
+                sink.accept(result);
+            }
+        }
+    }
+
+    // Стратегии выполняются параллельно; не завершившиеся к дедлайну отменяются, а ответ помечается как частичный.
+    // Профиль (может быть null) получает трассировку этапов; без него замеры не выполняются.
+    // Вызывается под блокировкой чтения каталога
+    private Page selectPage(SearchRequest request, SearchCursor after, long deadlineMillis, int maxPageSize,
+                            SearchProfile profile) {
+        String query = request.getQuery();
+        int limit = validate(request, maxPageSize);
+        SortOrder sortOrder = SortOrder.fromParameter(request.getSort());
+        EnumSet<ResultField> fields = ResultField.parse(request.getFields());
         if (query == null || query.trim().isEmpty()) {
-            return new ArrayList<>();
+            FacetCounts facets = request.isFacets()
+                    ? new FacetCounts(new LinkedHashMap<>(), new LinkedHashMap<>())
+                    : null;
+            return new Page(false, null, facets, new int[0], new double[0], fields, null);
         }
 
-        QueryIntent intent = queryAnalyzer.analyzeQuery(query);
-        Map<Product, Double> relevanceScores = new HashMap<>();
-        
-        // Применение различных стратегий поиска на основе анализа запроса
-        if (intent.isExactPhrase()) {
-            addPhraseSearchResults(query, relevanceScores, PHRASE_MATCH_BOOST);
+        DocBitSet filter = priceFilter(request);
+
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        ParsedQuery parsed = queryAnalyzer.parse(query);
+        SearchPlan plan = parsed.getIntent().getPlan();
+        ScoreAccumulator accumulator = new ScoreAccumulator(DocScores.totals(dataManager.getDocumentCount()));
+        if (profile != null) {
+            profile.setPlan(plan);
+            profile.endStage("analyze", filter != null ? filter.cardinality() : 0);
         }
         
-        if (intent.hasKeywords()) {
-            addKeywordSearchResults(query, relevanceScores, 1.0);
+        // Первый уровень: дешевые стратегии, выбранные анализатором по статистике индекса
+        boolean partial = runStrategies(plan.getPrimary(), plan.getFuzzyTerms(), parsed, filter, accumulator,
+                deadlineNanos, profile);
+        if (profile != null) {
+            profile.endStage("primary", accumulator.size());
         }
         
-        if (intent.allowsFuzzySearch()) {
-            addFuzzySearchResults(query, relevanceScores, FUZZY_MATCH_PENALTY);
+        // Дорогие стратегии — только если дешевые нашли слишком мало продуктов
+        boolean escalated = !partial && !plan.getEscalation().isEmpty()
+                && accumulator.size() < plan.getEscalationThreshold();
+        if (escalated) {
+            partial = runStrategies(plan.getEscalation(), plan.getEscalationFuzzyTerms(), parsed, filter, accumulator,
+                    deadlineNanos, profile);
+            if (profile != null) {
+                profile.setEscalated(true);
+                profile.endStage("escalation", accumulator.size());
+            }
         }
         
-        // Добавление точных совпадений с наибольшим бустом
-        addExactMatchResults(query, relevanceScores, EXACT_MATCH_BOOST);
+        // Без полного просмотра точные совпадения пересчитываются только для найденных кандидатов
+        if (!escalated && plan.getPrimary().contains(SearchPlan.Strategy.EXACT_RESCORE)) {
+            DocScores exactScores = DocScores.partials(dataManager.getDocumentCount());
+            int[] candidates = accumulator.candidates();
+            addExactMatchResults(parsed, candidates, exactScores, EXACT_MATCH_BOOST);
+            accumulator.merge(exactScores);
+            if (profile != null) {
+                profile.addDocumentsScanned(candidates.length);
+                profile.endStage("exact_rescore", exactScores.size());
+            }
+        }
+
+        DocScores relevanceScores = accumulator.seal();
+        if (profile != null) {
+            profile.setScoredDocuments(relevanceScores.size());
+        }
         
-        // Преобразование в объекты SearchResult и сортировка по релевантности
-        return relevanceScores.entrySet().stream()
-                .map(entry -> new SearchResult(entry.getKey(), entry.getValue()))
-                .sorted((a, b) -> Double.compare(b.getRelevanceScore(), a.getRelevanceScore()))
-                .limit(MAX_RESULTS)
-                .collect(Collectors.toList());
+        // Отбор страницы после курсора; на один документ больше, чтобы узнать, есть ли следующая.
+        // По релевантности — по массиву оценок, по цене — обходом отсортированной перестановки цен.
+        // SearchResult с подсветкой создаются только для результатов страницы
+        int[] topDocs = new int[limit + 1];
+        int count;
+        if (sortOrder == SortOrder.RELEVANCE) {
+            count = after == null
+                    ? relevanceScores.topK(limit + 1, topDocs)
+                    : relevanceScores.topKAfter(limit + 1, topDocs, after.getScore(), after.getDocId());
+        } else {
+            count = prices.collect(sortOrder == SortOrder.PRICE_DESC, after != null ? after.getDocId() : -1,
+                    relevanceScores::contains, limit + 1, topDocs);
+        }
+        int pageSize = Math.min(count, limit);
+        SearchCursor nextCursor = null;
+        if (count > limit) {
+            int last = topDocs[limit - 1];
+            nextCursor = new SearchCursor(sortOrder == SortOrder.RELEVANCE ? relevanceScores.get(last) : prices.get(last),
+                    last);
+        }
+        if (profile != null) {
+            profile.endStage("top_k", pageSize);
+        }
+        // Оценки страницы копируются: буфер оценок переиспользуется следующим запросом этого потока
+        int[] pageDocs = Arrays.copyOf(topDocs, pageSize);
+        double[] pageScores = new double[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            pageScores[i] = relevanceScores.get(pageDocs[i]);
+        }
+
+        // Фасеты по всем найденным документам, а не только по странице
+        FacetCounts facets = null;
+        if (request.isFacets()) {
+            DocBitSet matched = relevanceScores.toBitSet(facetIndex.getDocumentCount());
+            facets = new FacetCounts(facetIndex.countCategories(matched), facetIndex.countPriceRanges(matched));
+            if (profile != null) {
+                profile.endStage("facets", matched.cardinality());
+            }
+        }
+
+        // С выбранными полями Product не собирается, а подсветка строится, только если она запрошена
+        Highlighter highlighter = fields == null || fields.contains(ResultField.HIGHLIGHTED_TEXT)
+                ? new Highlighter(parsed.getHighlightTerms(), FRAGMENT_SIZE)
+                : null;
+        return new Page(partial, nextCursor, facets, pageDocs, pageScores, fields, highlighter);
+    }
+
+    // Результат страницы с номером i; вызывается под блокировкой чтения каталога
+    private SearchResult materialize(Page page, int i) {
+        int doc = page.docs[i];
+        ProductText text = dataManager.getProductTextByDocId(doc);
+        if (page.fields == null) {
+            Product product = dataManager.getProductByDocId(doc);
+            String highlighted = page.highlighter.highlight(product.getName(), product.getDescription(), text);
+            return new SearchResult(product, page.scores[i], highlighted);
+        }
+        String highlighted = page.highlighter != null
+                ? page.highlighter.highlight(dataManager.getNameByDocId(doc), dataManager.getDescriptionByDocId(doc), text)
+                : "";
+        return new ProjectedResult(page.fields, dataManager, doc, page.scores[i], highlighted);
+    }
+
+    // Отобранная страница: документы в порядке выдачи и их оценки, без материализованных результатов
+    private static final class Page {
+        private final boolean partial;
+        private final SearchCursor nextCursor;
+        private final FacetCounts facets;         // null, если фасеты не запрошены
+        private final int[] docs;
+        private final double[] scores;
+        private final EnumSet<ResultField> fields; // null — все поля
+        private final Highlighter highlighter;    // null, если подсветка не нужна
+
+        Page(boolean partial, SearchCursor nextCursor, FacetCounts facets, int[] docs, double[] scores,
+             EnumSet<ResultField> fields, Highlighter highlighter) {
+            this.partial = partial;
+            this.nextCursor = nextCursor;
+            this.facets = facets;
+            this.docs = docs;
+            this.scores = scores;
+            this.fields = fields;
+            this.highlighter = highlighter;
+        }
+    }
+
+    // Запускает стратегии уровня параллельно и складывает их оценки в порядке плана;
+    // возвращает true, если часть из них не уложилась в дедлайн
+    private boolean runStrategies(List<SearchPlan.Strategy> planned, List<String> fuzzyTerms, ParsedQuery query,
+                                  DocBitSet filter, ScoreAccumulator accumulator, long deadlineNanos,
+                                  SearchProfile profile) {
+        List<Future<?>> strategies = new ArrayList<>();
+        for (SearchPlan.Strategy strategy : planned) {
+            switch (strategy) {
+                case PHRASE -> strategies.add(submit(accumulator, strategy, profile,
+                        scores -> addPhraseSearchResults(query.getPhrases(), filter, scores, PHRASE_MATCH_BOOST)));
+                case KEYWORD -> strategies.add(submit(accumulator, strategy, profile,
+                        scores -> addKeywordSearchResults(query, filter, scores, 1.0, profile)));
+                case FUZZY -> strategies.add(submit(accumulator, strategy, profile,
+                        scores -> addFuzzySearchResults(query, fuzzyTerms, filter, scores, FUZZY_MATCH_PENALTY,
+                                profile)));
+                case EXACT_INDEXED, EXACT_SCAN -> strategies.add(submit(accumulator, strategy, profile,
+                        scores -> addExactMatchResults(query, filter, scores, EXACT_MATCH_BOOST, profile)));
+                case EXACT_RESCORE -> {
+                    // выполняется после первого уровня по найденным кандидатам
+                }
+            }
+        }
+        boolean partial = awaitStrategies(strategies, deadlineNanos);
+        accumulator.fold();
+        return partial;
+    }
+
+    private Future<?> submit(ScoreAccumulator accumulator, SearchPlan.Strategy name, SearchProfile profile,
+                             Consumer<DocScores> strategy) {
+        int documentCount = dataManager.getDocumentCount();
+        int slot = accumulator.open();
+        return STRATEGY_EXECUTOR.submit(() -> {
+            // tryLock не встает в очередь за ожидающим писателем: пока запрос держит блокировку чтения,
+            // захват удается всегда, а если запрос уже ушел и каталог меняется, результат не нужен
+            if (!catalogLock.readLock().tryLock()) {
+                return;
+            }
+            try {
+                long startNanos = profile != null ? System.nanoTime() : 0L;
+                long startAllocatedBytes = profile != null ? SearchProfile.allocatedBytes() : 0L;
+                DocScores scores = DocScores.partials(documentCount);
+                strategy.accept(scores);
+                if (profile != null) {
+                    profile.recordStage(name.name().toLowerCase(), startNanos, startAllocatedBytes, scores.size());
+                }
+                if (!Thread.currentThread().isInterrupted()) {
+                    accumulator.merge(slot, scores);
+                }
+            } finally {
+                catalogLock.readLock().unlock();
+            }
+        });
+    }
+
+    // Ожидает стратегии до дедлайна; возвращает true, если хотя бы одна была отменена
+    private boolean awaitStrategies(List<Future<?>> strategies, long deadlineNanos) {
+        boolean partial = false;
+        for (Future<?> strategy : strategies) {
+            try {
+                long remaining = deadlineNanos - System.nanoTime();
+                strategy.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                strategy.cancel(true);
+                partial = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                strategy.cancel(true);
+                partial = true;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search strategy failed", e.getCause());
+            }
+        }
+        return partial;
+    }
+
+    // Пакетный поиск: запросы выполняются параллельно, одинаковые — один раз.
+    // Ответы идут в порядке запросов; неверный limit или курсор отклоняет весь пакет до начала поиска.
+    // Весь пакет выполняется под одной блокировкой чтения, поэтому все запросы видят один и тот же каталог
+    public List<SearchResponse> searchBatch(List<SearchRequest> requests) {
+        if (requests.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch must contain at most " + MAX_BATCH_SIZE + " queries");
+        }
+        Map<SearchRequest, SearchCursor> cursors = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            SearchRequest request = requests.get(i);
+            if (request == null) {
+                throw new IllegalArgumentException("Query " + i + ": must be an object");
+            }
+            try {
+                validate(request);
+                if (request.getCursor() != null) {
+                    cursors.put(request, SearchCursor.decode(request.getCursor()));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Query " + i + ": " + e.getMessage(), e);
+            }
+        }
+
+        catalogLock.readLock().lock();
+        try {
+            return executeBatch(requests, cursors);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    private List<SearchResponse> executeBatch(List<SearchRequest> requests, Map<SearchRequest, SearchCursor> cursors) {
+        Map<SearchRequest, Future<SearchResponse>> distinct = new LinkedHashMap<>();
+        for (SearchRequest request : requests) {
+            distinct.computeIfAbsent(request, key -> BATCH_EXECUTOR.submit(() -> {
+                // Блокировку держит пакет; захват в обход очереди писателей удается всегда, пока пакет ее
+                // не отпустил, — обычный lock() встал бы за ожидающим писателем, который ждет сам пакет
+                if (!catalogLock.readLock().tryLock()) {
+                    throw new IllegalStateException("Batch search was abandoned");
+                }
+                try {
+                    return collectLocked(key, cursors.get(key), DEADLINE_MILLIS, null);
+                } finally {
+                    catalogLock.readLock().unlock();
+                }
+            }));
+        }
+
+        List<SearchResponse> responses = new ArrayList<>(requests.size());
+        try {
+            for (SearchRequest request : requests) {
+                responses.add(distinct.get(request).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            distinct.values().forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Batch search interrupted", e);
+        } catch (ExecutionException e) {
+            distinct.values().forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Batch search failed", e.getCause());
+        }
+        return responses;
+    }
+
+    // Применяет изменения каталога к хранилищу, индексу, Trie и фасетам; работа пропорциональна числу
+    // измененных продуктов. Запросы, начатые до изменения, завершаются на прежнем состоянии,
+    // а новые ждут только на время применения
+    public void applyChanges(List<Product> upserts, List<Integer> removedProductIds) {
+        if (substringIndex != null) {
+            throw new IllegalStateException("Incremental updates are not supported with the suffix array index");
+        }
+        Indexer indexer = new Indexer(invertedIndex, trie);
+        int[] docs = new int[upserts.size() + removedProductIds.size()];
+        String[] categories = new String[docs.length];
+        double[] newPrices = new double[docs.length];
+        int changed = 0;
+
+        writerLock.lock();
+        catalogLock.writeLock().lock();
+        try {
+            // Нехватка места отклоняет изменение целиком, до первой правки хранилища и индекса
+            dataManager.checkCapacity(upserts);
+            for (int productId : removedProductIds) {
+                Product previous = dataManager.getProductById(productId);
+                if (previous != null) {
+                    indexer.removeProduct(previous);
+                    docs[changed++] = dataManager.removeProduct(productId);
+                }
+            }
+            for (Product product : upserts) {
+                Product previous = dataManager.getProductById(product.getId());
+                if (previous != null) {
+                    indexer.removeProduct(previous);
+                }
+                dataManager.addProduct(product);
+                indexer.indexProduct(product);
+                docs[changed] = dataManager.getDocId(product.getId());
+                categories[changed] = product.getCategory();
+                newPrices[changed] = product.getPrice();
+                changed++;
+            }
+            facetIndex = facetIndex.update(dataManager.getDocumentCount(), Arrays.copyOf(docs, changed),
+                    Arrays.copyOf(categories, changed), Arrays.copyOf(newPrices, changed));
+            prices = facetIndex.getPrices();
+        } finally {
+            catalogLock.writeLock().unlock();
+            writerLock.unlock();
+        }
+    }
+
+    // Журнал изменений: получает итог пакета до его применения; ошибка записи отменяет применение
+    public interface ChangeLog {
+        void write(List<Product> upserts, List<Integer> removedProductIds) throws IOException;
+    }
+
+    // Применяет пакет операций загрузки и возвращает статус каждой: created, updated, deleted, conflict
+    // или not_found (см. BulkResult). Существование id проверяется по хранилищу под блокировкой писателей,
+    // поэтому никакое изменение не вклинится между проверкой и применением; внутри пакета для каждого id
+    // побеждает последняя операция. changeLog (может быть null) получает итог пакета до применения
+    public String[] applyBulk(List<BulkOperation> operations, ChangeLog changeLog) throws IOException {
+        String[] statuses = new String[operations.size()];
+        writerLock.lock();
+        try {
+            Map<Integer, Product> finalState = new LinkedHashMap<>(); // null — продукт удален
+            for (int i = 0; i < operations.size(); i++) {
+                BulkOperation operation = operations.get(i);
+                int id = operation.getProductId();
+                boolean exists = finalState.containsKey(id)
+                        ? finalState.get(id) != null
+                        : dataManager.getDocId(id) >= 0;
+                String op = operation.getOp();
+                if (BulkOperation.ADD.equals(op) && exists) {
+                    statuses[i] = BulkResult.CONFLICT;
+                } else if (!BulkOperation.ADD.equals(op) && !exists) {
+                    statuses[i] = BulkResult.NOT_FOUND;
+                } else if (BulkOperation.DELETE.equals(op)) {
+                    finalState.put(id, null);
+                    statuses[i] = BulkResult.DELETED;
+                } else {
+                    finalState.put(id, operation.getProduct());
+                    statuses[i] = BulkOperation.ADD.equals(op) ? BulkResult.CREATED : BulkResult.UPDATED;
+                }
+            }
+
+            if (!finalState.isEmpty()) {
+                List<Product> upserts = new ArrayList<>();
+                List<Integer> removed = new ArrayList<>();
+                for (Map.Entry<Integer, Product> entry : finalState.entrySet()) {
+                    if (entry.getValue() != null) {
+                        upserts.add(entry.getValue());
+                    } else {
+                        removed.add(entry.getKey());
+                    }
+                }
+                if (changeLog != null) {
+                    changeLog.write(upserts, removed);
+                }
+                applyChanges(upserts, removed);
+            }
+            return statuses;
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    // Сравнивает файл каталога с хранилищем и применяет разницу. Сравнение идет параллельно с поиском,
+    // но под блокировкой писателей, поэтому никакое другое изменение не вклинится между ним и применением
+    public CatalogDiff applyCatalog(Path catalog) throws IOException {
+        writerLock.lock();
+        try {
+            CatalogDiff diff = CatalogDiff.compute(catalog, dataManager);
+            if (!diff.isEmpty()) {
+                applyChanges(diff.getUpserts(), diff.getRemovedProductIds());
+            }
+            return diff;
+        } finally {
+            writerLock.unlock();
+        }
     }
 
-    
      // Предоставляет предложения поиска с автодополнением
      
     public List<String> getSearchSuggestions(String prefix) {
@@ -77,11 +664,17 @@ public class SmartSearchEngine {
             return new ArrayList<>();
         }
         
-        List<String> suggestions = trie.autocomplete(prefix.toLowerCase());
-        
-        // Улучшение предложений с помощью поиска с опечатками
-        if (suggestions.size() < 5) {
-            suggestions.addAll(getFuzzyAutocompleteSuggestions(prefix));
+        List<String> suggestions;
+        catalogLock.readLock().lock();
+        try {
+            suggestions = trie.autocomplete(prefix.toLowerCase());
+
+            // Улучшение предложений с помощью поиска с опечатками
+            if (suggestions.size() < 5) {
+                suggestions.addAll(getFuzzyAutocompleteSuggestions(prefix));
+            }
+        } finally {
+            catalogLock.readLock().unlock();
         }
         
         return suggestions.stream()
@@ -90,66 +683,163 @@ public class SmartSearchEngine {
                 .collect(Collectors.toList());
     }
 
-    private void addExactMatchResults(String query, Map<Product, Double> scores, double boost) {
-        String queryLower = query.toLowerCase();
-        for (Product product : dataManager.getAllProducts().values()) {
+    private void addExactMatchResults(ParsedQuery query, DocBitSet filter, DocScores scores, double boost,
+                                      SearchProfile profile) {
+        if (substringIndex != null) {
+            addIndexedExactMatchResults(query, filter, scores, boost);
+            return;
+        }
+
+        // С фильтром просматриваются только документы из битового множества
+        SubstringMatcher matcher = query.getMatcher();
+        int documentCount = dataManager.getDocumentCount();
+        int scanned = 0;
+        for (int doc = filter != null ? filter.nextSetBit(0) : 0; doc >= 0 && doc < documentCount;
+             doc = filter != null ? filter.nextSetBit(doc + 1) : doc + 1) {
+            if (Thread.currentThread().isInterrupted()) {
+                break; // стратегия отменена по дедлайну
+            }
+            addExactMatchScore(matcher, doc, scores, boost);
+            scanned++;
+        }
+        if (profile != null) {
+            profile.addDocumentsScanned(scanned);
+        }
+    }
+
+    // Пересчет точных совпадений только для уже найденных кандидатов
+    private void addExactMatchResults(ParsedQuery query, int[] candidates, DocScores scores, double boost) {
+        SubstringMatcher matcher = query.getMatcher();
+        for (int doc : candidates) {
+            addExactMatchScore(matcher, doc, scores, boost);
+        }
+    }
+
+    private void addExactMatchScore(SubstringMatcher matcher, int doc, DocScores scores, double boost) {
+        double score = 0.0;
+
+        if (matcher.containedIn(dataManager.getLowerName(doc))) {
+            score += boost * 2; // Совпадения в имени более важны
+        }
+        if (matcher.containedIn(dataManager.getLowerDescription(doc))) {
+            score += boost;
+        }
+        if (matcher.containedIn(dataManager.getLowerCategory(doc))) {
+            score += boost * 0.5;
+        }
+
+        if (score > 0) {
+            scores.add(doc, score);
+        }
+    }
+
+    // Точные совпадения через суффиксный массив: те же веса полей, но без перебора каталога
+    private void addIndexedExactMatchResults(ParsedQuery query, DocBitSet filter, DocScores scores, double boost) {
+        for (Map.Entry<Integer, Integer> entry : substringIndex.findFieldMatches(query.getQuery()).entrySet()) {
+            int doc = dataManager.getDocId(entry.getKey());
+            if (!accepts(filter, doc)) {
+                continue;
+            }
+            int fields = entry.getValue();
             double score = 0.0;
-            
-            if (product.getName().toLowerCase().contains(queryLower)) {
-                score += boost * 2; // Совпадения в имени более важны
+
+            if ((fields & SuffixArrayIndex.FIELD_NAME) != 0) {
+                score += boost * 2;
             }
-            if (product.getDescription().toLowerCase().contains(queryLower)) {
+            if ((fields & SuffixArrayIndex.FIELD_DESCRIPTION) != 0) {
                 score += boost;
             }
-            if (product.getCategory().toLowerCase().contains(queryLower)) {
+            if ((fields & SuffixArrayIndex.FIELD_CATEGORY) != 0) {
                 score += boost * 0.5;
             }
-            
-            if (score > 0) {
-                scores.merge(product, score, Double::sum);
-            }
+
+            scores.add(doc, score);
         }
     }
 
-    private void addKeywordSearchResults(String query, Map<Product, Double> scores, double boost) {
-        List<Product> keywordResults = searchCore.search(query);
-        for (Product product : keywordResults) {
-            double score = calculateKeywordRelevance(query, product) * boost;
-            scores.merge(product, score, Double::sum);
+    private void addKeywordSearchResults(ParsedQuery query, DocBitSet filter, DocScores scores, double boost,
+                                         SearchProfile profile) {
+        String[] queryWords = query.getTokens();
+        DocBitSet keywordResults = searchCore.searchDocs(queryWords);
+        if (profile != null) {
+            // Пересечение читает списки всех слов запроса целиком
+            for (String word : queryWords) {
+                profile.addPostingsRead(invertedIndex.getDocumentFrequency(word));
+            }
+        }
+        // Шаблоны слов компилируются один раз на запрос
+        SubstringMatcher[] wordMatchers = new SubstringMatcher[queryWords.length];
+        for (int i = 0; i < queryWords.length; i++) {
+            wordMatchers[i] = SubstringMatcher.compile(queryWords[i]);
+        }
+        for (int doc = keywordResults.nextSetBit(0); doc >= 0; doc = keywordResults.nextSetBit(doc + 1)) {
+            if (!accepts(filter, doc)) {
+                continue; // отфильтрованные документы не оцениваются
+            }
+            double score = calculateKeywordRelevance(wordMatchers, doc) * boost;
+            scores.add(doc, score);
         }
     }
 
-    private void addPhraseSearchResults(String query, Map<Product, Double> scores, double boost) {
-        List<Product> phraseResults = searchCore.searchPhrase(query);
-        for (Product product : phraseResults) {
-            double score = boost;
-            scores.merge(product, score, Double::sum);
+    private void addPhraseSearchResults(List<String> phrases, DocBitSet filter, DocScores scores, double boost) {
+        DocBitSet phraseResults = searchCore.searchPhrasesDocs(phrases);
+        for (int doc = phraseResults.nextSetBit(0); doc >= 0; doc = phraseResults.nextSetBit(doc + 1)) {
+            if (accepts(filter, doc)) {
+                scores.add(doc, boost);
+            }
         }
     }
 
-    private void addFuzzySearchResults(String query, Map<Product, Double> scores, double penalty) {
-        List<Product> fuzzyResults = searchCore.fuzzySearch(query, MAX_FUZZY_DISTANCE);
-        for (Product product : fuzzyResults) {
-            double score = calculateFuzzyRelevance(query, product) * penalty;
-            scores.merge(product, score, Double::sum);
+    private static boolean accepts(DocBitSet filter, int doc) {
+        return filter == null || filter.get(doc);
+    }
+
+    private void addFuzzySearchResults(ParsedQuery query, List<String> fuzzyTerms, DocBitSet filter, DocScores scores,
+                                       double penalty, SearchProfile profile) {
+        DocBitSet fuzzyResults = new DocBitSet(dataManager.getDocumentCount());
+        for (String term : fuzzyTerms) {
+            fuzzyResults.or(searchCore.fuzzySearchDocs(term, MAX_FUZZY_DISTANCE, profile, filter));
+        }
+        if (fuzzyResults.nextSetBit(0) < 0) {
+            return;
+        }
+
+        // Расстояния до терминов словаря вычисляются один раз на слово запроса, а не на каждый продукт
+        String[] queryWords = query.getTokens();
+        TermDistanceCache[] distances = new TermDistanceCache[queryWords.length];
+        for (int i = 0; i < queryWords.length; i++) {
+            distances[i] = new TermDistanceCache(queryWords[i], dataManager.getTermDictionary());
+        }
+
+        // Кандидаты — продукты, близкие хотя бы к одному из выбранных планом терминов; каждый оценивается один раз
+        for (int doc = fuzzyResults.nextSetBit(0); doc >= 0; doc = fuzzyResults.nextSetBit(doc + 1)) {
+            double score = calculateFuzzyRelevance(distances, dataManager.getProductTextByDocId(doc)) * penalty;
+            scores.add(doc, score);
+        }
+        if (profile != null) {
+            for (TermDistanceCache distance : distances) {
+                profile.addLevenshteinCalls(distance.getComputedCount());
+            }
         }
     }
 
-    private double calculateKeywordRelevance(String query, Product product) {
-        String[] queryWords = query.toLowerCase().split("\\W+");
+    private double calculateKeywordRelevance(SubstringMatcher[] wordMatchers, int doc) {
         double relevance = 0.0;
         int matchedWords = 0;
         
-        for (String word : queryWords) {
-            if (product.getName().toLowerCase().contains(word)) {
+        Utf8Slice name = dataManager.getLowerName(doc);
+        Utf8Slice description = dataManager.getLowerDescription(doc); // вне кучи копируется один раз
+        Utf8Slice category = dataManager.getLowerCategory(doc);
+        for (SubstringMatcher word : wordMatchers) {
+            if (word.containedIn(name)) {
                 relevance += 2.0; // Совпадения в имени более ценны
                 matchedWords++;
             }
-            if (product.getDescription().toLowerCase().contains(word)) {
+            if (word.containedIn(description)) {
                 relevance += 1.0;
                 matchedWords++;
             }
-            if (product.getCategory().toLowerCase().contains(word)) {
+            if (word.containedIn(category)) {
                 relevance += 0.5;
                 matchedWords++;
             }
@@ -163,52 +853,44 @@ public class SmartSearchEngine {
         return relevance;
     }
 
-    private double calculateFuzzyRelevance(String query, Product product) {
-        String[] queryWords = query.toLowerCase().split("\\W+");
+    private double calculateFuzzyRelevance(TermDistanceCache[] queryWords, ProductText text) {
         double totalRelevance = 0.0;
         
-        for (String queryWord : queryWords) {
-            double bestMatch = 0.0;
-            
-            // Проверка на совпадения со словами в имени продукта
-            String[] nameWords = product.getName().toLowerCase().split("\\W+");
-            for (String nameWord : nameWords) {
-                int distance = LevenshteinDistance.calculate(queryWord, nameWord);
-                if (distance <= MAX_FUZZY_DISTANCE) {
-                    double similarity = 1.0 - (double) distance / Math.max(queryWord.length(), nameWord.length());
-                    bestMatch = Math.max(bestMatch, similarity * 2.0); // Совпадения в имени более ценны
-                }
-            }
-            
-            // Проверка на совпадения со словами в описании продукта
-            String[] descWords = product.getDescription().toLowerCase().split("\\W+");
-            for (String descWord : descWords) {
-                int distance = LevenshteinDistance.calculate(queryWord, descWord);
-                if (distance <= MAX_FUZZY_DISTANCE) {
-                    double similarity = 1.0 - (double) distance / Math.max(queryWord.length(), descWord.length());
-                    bestMatch = Math.max(bestMatch, similarity);
-                }
-            }
-            
+        for (TermDistanceCache queryWord : queryWords) {
+            // Совпадения в имени более ценны
+            double bestMatch = bestFuzzyMatch(queryWord, text.getNameTerms(), 2.0);
+            bestMatch = Math.max(bestMatch, bestFuzzyMatch(queryWord, text.getDescriptionTerms(), 1.0));
             totalRelevance += bestMatch;
         }
         
         return totalRelevance;
     }
 
+    private double bestFuzzyMatch(TermDistanceCache queryWord, int[] terms, double weight) {
+        TermDictionary termDictionary = dataManager.getTermDictionary();
+        double bestMatch = 0.0;
+        for (int term : terms) {
+            int distance = queryWord.distance(term);
+            if (distance <= MAX_FUZZY_DISTANCE) {
+                int length = Math.max(queryWord.getWord().length(), termDictionary.getTerm(term).length());
+                double similarity = 1.0 - (double) distance / length;
+                bestMatch = Math.max(bestMatch, similarity * weight);
+            }
+        }
+        return bestMatch;
+    }
+
     private List<String> getFuzzyAutocompleteSuggestions(String prefix) {
         Set<String> suggestions = new HashSet<>();
         
-        // Получение всех слов из данных продукта
-        for (Product product : dataManager.getAllProducts().values()) {
-            String[] words = (product.getName() + " " + product.getDescription() + " " + product.getCategory())
-                    .toLowerCase().split("\\W+");
-            
-            for (String word : words) {
-                if (word.length() >= prefix.length() && 
-                    LevenshteinDistance.calculate(prefix.toLowerCase(), word.substring(0, Math.min(prefix.length(), word.length()))) <= 1) {
-                    suggestions.add(word);
-                }
+        // Перебор словаря терминов вместо повторной токенизации всех продуктов
+        String prefixLower = prefix.toLowerCase();
+        TermDictionary termDictionary = dataManager.getTermDictionary();
+        for (int ordinal = 0; ordinal < termDictionary.size(); ordinal++) {
+            String word = termDictionary.getTerm(ordinal);
+            if (word.length() >= prefix.length() && 
+                LevenshteinDistance.calculate(prefixLower, word.substring(0, Math.min(prefix.length(), word.length()))) <= 1) {
+                suggestions.add(word);
             }
         }
         
@@ -218,14 +900,12 @@ public class SmartSearchEngine {
     
      // Получение статистики и аналитики поиска для отладки
      
+    // Счетчики берутся из профиля одного выполнения запроса, а не из повторного запуска каждой стратегии
     public SearchAnalytics getSearchAnalytics(String query) {
         QueryIntent intent = queryAnalyzer.analyzeQuery(query);
-        
-        int keywordResults = searchCore.search(query).size();
-        int phraseResults = searchCore.searchPhrase(query).size();
-        int fuzzyResults = searchCore.fuzzySearch(query, MAX_FUZZY_DISTANCE).size();
+        SearchProfile profile = explain(query, MAX_RESULTS, null).getProfile();
         int suggestions = getSearchSuggestions(query).size();
         
-        return new SearchAnalytics(intent, keywordResults, phraseResults, fuzzyResults, suggestions);
+        return new SearchAnalytics(intent, profile, suggestions);
     }
 } 
\ No newline at end of file
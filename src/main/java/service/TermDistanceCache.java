@@ -0,0 +1,42 @@
+package service;
+
+import algorithm.LevenshteinDistance;
+import index.TermDictionary;
+
+import java.util.Arrays;
+
+// Кэширует расстояния Левенштейна от слова запроса до терминов словаря на время одного запроса,
+// чтобы каждый термин каталога сравнивался со словом не более одного раза
+
+class TermDistanceCache {
+    private final String word;
+    private final TermDictionary termDictionary;
+    private final int[] distances;
+    private int computedCount;
+
+    TermDistanceCache(String word, TermDictionary termDictionary) {
+        this.word = word;
+        this.termDictionary = termDictionary;
+        this.distances = new int[termDictionary.size()];
+        Arrays.fill(distances, -1);
+    }
+
+    int distance(int ordinal) {
+        int distance = distances[ordinal];
+        if (distance < 0) {
+            distance = LevenshteinDistance.calculate(word, termDictionary.getTerm(ordinal));
+            distances[ordinal] = distance;
+            computedCount++;
+        }
+        return distance;
+    }
+
+    String getWord() {
+        return word;
+    }
+
+    // Число фактически вычисленных расстояний Левенштейна
+    int getComputedCount() {
+        return computedCount;
+    }
+}
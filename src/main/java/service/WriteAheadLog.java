@@ -0,0 +1,506 @@
+package service;
+
+import model.Product;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Журнал изменений каталога для восстановления после сбоя. Каждая запись — один пакет изменений
+// (продукты для добавления или замены и id удаленных) с порядковым номером LSN и контрольной суммой CRC32C:
+// [длина данных][CRC32C(LSN + данные)][LSN][данные]. Записи только дописываются в конец сегмента
+// wal-<первый LSN>.log; sync() сбрасывает на диск все дописанные с прошлого вызова записи одним force,
+// поэтому пакет из многих операций стоит одной синхронизации.
+// Когда с прошлой контрольной точки дописано checkpointBytes байт, журнал переходит на новый сегмент,
+// а снимок каталога на этот LSN пишется в фоне в checkpoint-<LSN>.json.gz; после переименования снимка
+// сегменты и снимки, которые он покрывает, удаляются. Восстановление читает последний снимок и записи
+// после него, поэтому его время ограничено размером снимка и checkpointBytes байт журнала.
+// Оборванная при сбое последняя запись отбрасывается при открытии журнала.
+// Построение движка из снимка с догоняющим чтением журнала (переиндексация) закрепляет файлы через
+// retain(): пока закрепление не снято, завершенные контрольные точки не удаляют ни снимки, ни сегменты.
+
+public class WriteAheadLog implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String CHECKPOINT_SUFFIX = ".json.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int HEADER_BYTES = 16;                      // длина, CRC32C, LSN
+    private static final int MAX_RECORD_BYTES = 256 * 1024 * 1024;
+
+    private final Path directory;
+    private final long checkpointBytes;
+    private final ExecutorService checkpointer;
+    private FileChannel segment;
+    private long segmentFirstLsn;
+    private long lastLsn;
+    private long bytesSinceCheckpoint;
+    private Path checkpoint;                                          // null — снимков еще не было
+    private long checkpointLsn;
+    private boolean checkpointRunning;
+    private long syncs;
+    private IOException failure;                                      // после ошибки сброса журнал не принимает записи
+    private int retainers;                                            // активные закрепления файлов
+
+    // Закрепление снимков и сегментов журнала; close() снимает его
+    public interface Retention extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private WriteAheadLog(Path directory, long checkpointBytes) {
+        this.directory = directory;
+        this.checkpointBytes = checkpointBytes;
+        this.checkpointer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "wal-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Открывает журнал в каталоге, создавая его при необходимости, и отбрасывает оборванную запись в конце
+    public static WriteAheadLog open(Path directory, long checkpointBytes) throws IOException {
+        if (checkpointBytes <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        Files.createDirectories(directory);
+        WriteAheadLog log = new WriteAheadLog(directory, checkpointBytes);
+        for (Path temp : list(directory, "", TEMP_SUFFIX)) {
+            Files.delete(temp); // недописанный снимок
+        }
+        List<Path> checkpoints = list(directory, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX);
+        if (!checkpoints.isEmpty()) {
+            log.checkpoint = checkpoints.get(checkpoints.size() - 1);
+            log.checkpointLsn = lsnOf(log.checkpoint, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX);
+        }
+
+        List<Path> segments = list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        if (segments.isEmpty()) {
+            log.lastLsn = log.checkpointLsn;
+            log.openSegment(log.lastLsn + 1);
+            return log;
+        }
+        for (Path segment : segments) {
+            log.bytesSinceCheckpoint += Files.size(segment);
+        }
+        Path last = segments.get(segments.size() - 1);
+        long firstLsn = lsnOf(last, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        SegmentScan scan = scan(last, firstLsn - 1, null);
+        log.segment = FileChannel.open(last, StandardOpenOption.WRITE);
+        if (scan.validBytes < log.segment.size()) {
+            System.err.println("Discarding " + (log.segment.size() - scan.validBytes)
+                    + " bytes of a torn record at the end of " + last.getFileName());
+            log.segment.truncate(scan.validBytes);
+            log.segment.force(true);
+        }
+        log.segment.position(scan.validBytes);
+        log.segmentFirstLsn = firstLsn;
+        log.lastLsn = scan.lastLsn;
+        return log;
+    }
+
+    // Дописывает пакет изменений и возвращает его LSN; на диск запись попадает при следующем sync()
+    public synchronized long append(List<Product> upserts, List<Integer> removedProductIds) throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log is unavailable after an earlier error", failure);
+        }
+        ByteBuffer record = encode(lastLsn + 1, upserts, removedProductIds);
+        long position = segment.position();
+        try {
+            while (record.hasRemaining()) {
+                segment.write(record);
+            }
+        } catch (IOException e) {
+            // Частично записанная запись обрезается, чтобы следующая легла за последней целой
+            segment.truncate(position);
+            segment.position(position);
+            throw e;
+        }
+        bytesSinceCheckpoint += record.limit();
+        return ++lastLsn;
+    }
+
+    // Групповая фиксация: один force на все записи, дописанные с прошлого вызова. После ошибки сброса
+    // неизвестно, какие записи на диске, поэтому журнал перестает принимать новые до перезапуска
+    public synchronized void sync() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log is unavailable after an earlier error", failure);
+        }
+        try {
+            segment.force(false);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+        syncs++;
+    }
+
+    // Передает пакеты с LSN больше afterLsn по порядку и возвращает LSN последнего. Пропуск номеров
+    // (сегменты удалены более новым снимком) — IOException: такие записи восстановить уже нельзя
+    public long replay(long afterLsn, BiConsumer<List<Product>, List<Integer>> consumer) throws IOException {
+        List<Path> segments;
+        synchronized (this) {
+            segments = list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        }
+        long lsn = afterLsn;
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            long nextFirstLsn = i + 1 < segments.size()
+                    ? lsnOf(segments.get(i + 1), SEGMENT_PREFIX, SEGMENT_SUFFIX) : Long.MAX_VALUE;
+            if (nextFirstLsn <= lsn + 1) {
+                continue; // сегмент целиком не новее afterLsn
+            }
+            long firstLsn = lsnOf(segment, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            if (firstLsn > lsn + 1) {
+                throw new IOException("Write-ahead log has a gap: expected LSN " + (lsn + 1)
+                        + ", first available is " + firstLsn);
+            }
+            SegmentScan scan = scan(segment, lsn, consumer);
+            if (scan.validBytes < scan.size && i + 1 < segments.size()) {
+                throw new IOException("Corrupted record in " + segment.getFileName() + " at byte " + scan.validBytes);
+            }
+            lsn = Math.max(lsn, scan.lastLsn);
+        }
+        return lsn;
+    }
+
+    // Закрепляет текущий снимок и все сегменты: пока закрепление не снято, контрольные точки их не удаляют,
+    // и чтение снимка и журнала от его LSN не встретит пропуска. Покрытые файлы удаляются, когда снято
+    // последнее закрепление
+    public synchronized Retention retain() {
+        retainers++;
+        return this::release;
+    }
+
+    private synchronized void release() {
+        if (--retainers == 0) {
+            try {
+                deleteCovered();
+            } catch (IOException e) {
+                // Файлы удалит следующая контрольная точка
+                System.err.println("Cannot delete files covered by checkpoint: " + e.getMessage());
+            }
+        }
+    }
+
+    // Начинает контрольную точку, если с прошлой дописано checkpointBytes байт и снимок не пишется.
+    // Снимок запрашивается сразу, пока изменения после lastLsn не применены; пишется он в фоне
+    public synchronized Future<?> checkpointIfDue(Supplier<Iterable<Product>> snapshot) throws IOException {
+        if (bytesSinceCheckpoint < checkpointBytes) {
+            return null;
+        }
+        return checkpoint(snapshot);
+    }
+
+    // Начинает контрольную точку на текущем LSN; null, если предыдущий снимок еще пишется
+    public synchronized Future<?> checkpoint(Supplier<Iterable<Product>> snapshot) throws IOException {
+        if (checkpointRunning) {
+            return null;
+        }
+        long lsn = lastLsn;
+        if (segmentFirstLsn <= lsn) {
+            segment.force(false);
+            segment.close();
+            openSegment(lsn + 1);
+        }
+        bytesSinceCheckpoint = 0;
+        Iterable<Product> products = snapshot.get();
+        checkpointRunning = true;
+        return checkpointer.submit(() -> {
+            try {
+                writeCheckpoint(lsn, products);
+            } catch (IOException | RuntimeException e) {
+                // Журнал не урезается: восстановление пойдет от предыдущего снимка
+                System.err.println("Checkpoint at LSN " + lsn + " failed: " + e);
+            } finally {
+                synchronized (this) {
+                    checkpointRunning = false;
+                }
+            }
+        });
+    }
+
+    private void writeCheckpoint(long lsn, Iterable<Product> products) throws IOException {
+        long start = System.nanoTime();
+        Path target = directory.resolve(String.format("%s%020d%s", CHECKPOINT_PREFIX, lsn, CHECKPOINT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + TEMP_SUFFIX);
+        long count;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            count = ProductLoader.writeProducts(new NonClosingOutputStream(channel), products);
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+
+        synchronized (this) {
+            checkpoint = target;
+            checkpointLsn = lsn;
+            if (retainers == 0) {
+                deleteCovered();
+            }
+        }
+        System.out.println("Checkpoint at LSN " + lsn + ": " + count + " products in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // Сегменты до первого после снимка и старые снимки больше не нужны для восстановления.
+    // Вызывается под монитором журнала
+    private void deleteCovered() throws IOException {
+        if (checkpoint == null) {
+            return;
+        }
+        for (Path segment : list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (lsnOf(segment, SEGMENT_PREFIX, SEGMENT_SUFFIX) <= checkpointLsn) {
+                Files.delete(segment);
+            }
+        }
+        for (Path old : list(directory, CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX)) {
+            if (!old.equals(checkpoint)) {
+                Files.delete(old);
+            }
+        }
+    }
+
+    // Последний снимок каталога или null
+    public synchronized Path getCheckpoint() {
+        return checkpoint;
+    }
+
+    public synchronized long getCheckpointLsn() {
+        return checkpointLsn;
+    }
+
+    public synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    public synchronized long getSyncs() {
+        return syncs;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        checkpointer.shutdown();
+        segment.force(false);
+        segment.close();
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segment.position(segment.size());
+        segmentFirstLsn = firstLsn;
+        syncDirectory();
+    }
+
+    // Новый или переименованный файл переживает сбой, только если сброшен и каталог
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Не все платформы позволяют открыть каталог; там это делает сама файловая система
+        }
+    }
+
+    // Результат чтения сегмента: LSN последней целой записи и длина целой части файла
+    private static final class SegmentScan {
+        long lastLsn;
+        long validBytes;
+        long size;
+    }
+
+    // Читает записи подряд до конца файла или первой оборванной либо поврежденной записи.
+    // consumer получает записи с LSN больше afterLsn; null — только проверка
+    private static SegmentScan scan(Path path, long afterLsn, BiConsumer<List<Product>, List<Integer>> consumer)
+            throws IOException {
+        SegmentScan scan = new SegmentScan();
+        scan.lastLsn = afterLsn;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan.size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            CRC32C crc = new CRC32C();
+            long position = 0;
+            while (true) {
+                header.clear();
+                if (!readFully(channel, header, position)) {
+                    break;
+                }
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                long lsn = header.getLong();
+                if (length < 0 || length > MAX_RECORD_BYTES || position + HEADER_BYTES + length > scan.size) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                if (!readFully(channel, payload, position + HEADER_BYTES)) {
+                    break;
+                }
+                crc.reset();
+                crc.update(header.array(), 8, 8);
+                crc.update(payload.array(), 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                if (lsn > afterLsn && consumer != null) {
+                    if (lsn != scan.lastLsn + 1) {
+                        throw new IOException("Write-ahead log has a gap: expected LSN " + (scan.lastLsn + 1)
+                                + ", found " + lsn + " in " + path.getFileName());
+                    }
+                    decode(payload.array(), consumer);
+                }
+                scan.lastLsn = Math.max(scan.lastLsn, lsn);
+                position += HEADER_BYTES + length;
+            }
+            scan.validBytes = position;
+        }
+        return scan;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Данные записи: число удаленных и их id, затем число продуктов и их поля; строки — длина в байтах
+    // UTF-8 (-1 для null) и байты
+    private static ByteBuffer encode(long lsn, List<Product> upserts, List<Integer> removedProductIds)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES + 256 * (upserts.size() + 1));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeLong(lsn);
+        out.writeInt(removedProductIds.size());
+        for (int id : removedProductIds) {
+            out.writeInt(id);
+        }
+        out.writeInt(upserts.size());
+        for (Product product : upserts) {
+            out.writeInt(product.getId());
+            writeString(out, product.getName());
+            writeString(out, product.getDescription());
+            writeString(out, product.getCategory());
+            out.writeDouble(product.getPrice());
+            writeString(out, product.getImage());
+        }
+        out.flush();
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        int length = record.limit() - HEADER_BYTES;
+        if (length > MAX_RECORD_BYTES) {
+            throw new IOException("Write-ahead log record of " + length + " bytes exceeds the limit");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 8, record.limit() - 8);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    private static void decode(byte[] payload, BiConsumer<List<Product>, List<Integer>> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int removedCount = in.readInt();
+            List<Integer> removed = new ArrayList<>(removedCount);
+            for (int i = 0; i < removedCount; i++) {
+                removed.add(in.readInt());
+            }
+            int upsertCount = in.readInt();
+            List<Product> upserts = new ArrayList<>(upsertCount);
+            for (int i = 0; i < upsertCount; i++) {
+                int id = in.readInt();
+                String name = readString(in);
+                String description = readString(in);
+                String category = readString(in);
+                double price = in.readDouble();
+                upserts.add(new Product(id, name, description, category, price, readString(in)));
+            }
+            consumer.accept(upserts, removed);
+        } catch (EOFException e) {
+            throw new IOException("Malformed write-ahead log record", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Файлы с префиксом и суффиксом в порядке LSN: номер записан с ведущими нулями
+    private static List<Path> list(Path directory, String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(suffix);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long lsnOf(Path path, String prefix, String suffix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    // Поток в канал, который не закрывает канал: его нужно сбросить на диск после записи снимка
+    private static final class NonClosingOutputStream extends OutputStream {
+        private final FileChannel channel;
+
+        NonClosingOutputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import algorithm.AhoCorasick;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты для автомата Ахо-Корасик
+
+public class AhoCorasickTest {
+
+    @Test
+    public void testFindsAllPatternsInOnePass() {
+        AhoCorasick automaton = AhoCorasick.of("he", "she", "his", "hers");
+        List<String> matches = new ArrayList<>();
+        int count = automaton.search("ushers", (patternIndex, start, end) ->
+                matches.add(automaton.getPattern(patternIndex) + "@" + start + "-" + end));
+
+        assertEquals(3, count);
+        assertEquals(List.of("she@1-4", "he@2-4", "hers@2-6"), matches);
+    }
+
+    @Test
+    public void testMarkFound() {
+        AhoCorasick automaton = AhoCorasick.of("noise cancellation", "wireless", "camera");
+        boolean[] found = new boolean[automaton.getPatternCount()];
+
+        assertEquals(2, automaton.markFound("apple wireless earbuds with noise cancellation", found));
+        assertArrayEquals(new boolean[]{true, true, false}, found);
+        assertEquals(0, automaton.markFound("wireless", found));
+    }
+
+    @Test
+    public void testNonAsciiPatterns() {
+        AhoCorasick automaton = AhoCorasick.of("смартфон", "фон");
+        List<Integer> starts = new ArrayList<>();
+        automaton.search("новый смартфон", (patternIndex, start, end) -> starts.add(start));
+        assertEquals(List.of(6, 11), starts);
+    }
+
+    @Test
+    public void testDuplicateAndEmptyPatterns() {
+        AhoCorasick automaton = AhoCorasick.of("apple", "", "apple");
+        assertEquals(1, automaton.getPatternCount());
+        assertEquals(2, automaton.search("apple apple", (patternIndex, start, end) -> { }));
+        assertEquals(0, AhoCorasick.of().search("apple", (patternIndex, start, end) -> { }));
+    }
+
+    @Test
+    public void testMatchesNaiveSearch() {
+        Random random = new Random(11);
+        for (int iteration = 0; iteration < 200; iteration++) {
+            String[] patterns = new String[1 + random.nextInt(5)];
+            for (int i = 0; i < patterns.length; i++) {
+                patterns[i] = randomString(random, 1 + random.nextInt(4));
+            }
+            String text = randomString(random, random.nextInt(80));
+            AhoCorasick automaton = AhoCorasick.of(patterns);
+
+            int expected = 0;
+            for (int p = 0; p < automaton.getPatternCount(); p++) {
+                String pattern = automaton.getPattern(p);
+                for (int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1)) {
+                    expected++;
+                }
+            }
+            int actual = automaton.search(text, (patternIndex, start, end) ->
+                    assertEquals(automaton.getPattern(patternIndex), text.substring(start, end)));
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(3)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,82 @@
+import algorithm.BoyerMoore;
+import model.Product;
+import service.ProductLoader;
+
+import java.util.List;
+
+// Бенчмарк: исходный BoyerMoore.search против предкомпилированного BoyerMoore.Pattern
+// на описаниях из products.json. Запуск:
+// mvn test-compile exec:java -Dexec.mainClass=BoyerMooreBenchmark -Dexec.classpathScope=test
+
+public class BoyerMooreBenchmark {
+    private static final String[] PATTERNS = {"mascara", "long-lasting", "smartphone", "stainless steel", "zzzz"};
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 1000;
+
+    public static void main(String[] args) {
+        List<Product> products = ProductLoader.loadProductsFromJson("products.json");
+        String[] descriptions = products.stream()
+                .map(product -> product.getDescription().toLowerCase())
+                .toArray(String[]::new);
+
+        long chars = 0;
+        for (String description : descriptions) {
+            chars += description.length();
+        }
+        System.out.println("Descriptions: " + descriptions.length + ", total chars: " + chars);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runLegacy(descriptions);
+            runCompiled(descriptions);
+        }
+
+        long legacyHits = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            legacyHits += runLegacy(descriptions);
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        long compiledHits = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            compiledHits += runCompiled(descriptions);
+        }
+        long compiledNanos = System.nanoTime() - start;
+
+        if (legacyHits != compiledHits) {
+            throw new IllegalStateException("Hit counts differ: " + legacyHits + " vs " + compiledHits);
+        }
+
+        long scans = (long) MEASURED_ROUNDS * PATTERNS.length * descriptions.length;
+        System.out.printf("BoyerMoore.search:          %8.1f ns/scan%n", (double) legacyNanos / scans);
+        System.out.printf("BoyerMoore.Pattern.indexOf: %8.1f ns/scan%n", (double) compiledNanos / scans);
+        System.out.printf("Speedup: %.2fx%n", (double) legacyNanos / compiledNanos);
+    }
+
+    private static int runLegacy(String[] descriptions) {
+        int hits = 0;
+        for (String pattern : PATTERNS) {
+            for (String description : descriptions) {
+                if (BoyerMoore.search(description, pattern) != -1) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    // Шаблон компилируется один раз на «запрос», как в SearchCore.searchPhrase
+    private static int runCompiled(String[] descriptions) {
+        int hits = 0;
+        for (String pattern : PATTERNS) {
+            BoyerMoore.Pattern compiled = BoyerMoore.compile(pattern);
+            for (String description : descriptions) {
+                if (compiled.indexOf(description) != -1) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+}
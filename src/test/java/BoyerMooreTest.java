@@ -1,6 +1,10 @@
 import algorithm.BoyerMoore;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 // Тесты для алгоритма Бойера-Мура
@@ -62,5 +66,58 @@ public class BoyerMooreTest {
         int result = BoyerMoore.search(text, pattern);
         assertEquals(2, result);
     }
-}
 
+    @Test
+    public void testCompiledPatternIndexOf() {
+        BoyerMoore.Pattern pattern = BoyerMoore.compile("world");
+        assertEquals(6, pattern.indexOf("hello world"));
+        assertEquals(-1, pattern.indexOf("hello"));
+        assertEquals(12, pattern.indexOf("hello world world", 7));
+        assertEquals(0, BoyerMoore.compile("").indexOf("abc"));
+    }
+
+    @Test
+    public void testCompiledPatternFindAllOverlapping() {
+        List<Integer> positions = new ArrayList<>();
+        int count = BoyerMoore.compile("ana").findAll(new StringBuilder("bananarama ana"), positions::add);
+        assertEquals(3, count);
+        assertEquals(List.of(1, 3, 11), positions);
+    }
+
+    @Test
+    public void testCompiledPatternNonLatinCharacters() {
+        // Символы с одинаковым младшим байтом попадают в одну ячейку таблицы сдвигов
+        String text = "смартфон \u0441\u0141 камера \u0141\u0441";
+        BoyerMoore.Pattern pattern = BoyerMoore.compile("\u0141\u0441");
+        assertEquals(text.indexOf("\u0141\u0441"), pattern.indexOf(text));
+        assertEquals(text.indexOf("камера"), BoyerMoore.compile("камера").indexOf(text));
+    }
+
+    @Test
+    public void testCompiledPatternMatchesStringIndexOf() {
+        Random random = new Random(7);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            String text = randomString(random, 1 + random.nextInt(60));
+            String needle = randomString(random, 1 + random.nextInt(5));
+            BoyerMoore.Pattern pattern = BoyerMoore.compile(needle);
+
+            assertEquals(text.indexOf(needle), pattern.indexOf(text), text + " / " + needle);
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = text.indexOf(needle); i >= 0; i = text.indexOf(needle, i + 1)) {
+                expected.add(i);
+            }
+            List<Integer> actual = new ArrayList<>();
+            pattern.findAll(text, actual::add);
+            assertEquals(expected, actual, text + " / " + needle);
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(3)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,202 @@
+import model.BulkOperation;
+import model.BulkResult;
+import model.Product;
+import model.SearchResult;
+import service.BulkIngestor;
+import service.EngineHandle;
+import service.SearchEngineBuilder;
+import service.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты пакетной загрузки изменений в работающий движок
+
+public class BulkIngestorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private EngineHandle buildEngine() throws IOException {
+        Path catalog = tempDir.resolve("products.json");
+        Files.writeString(catalog, "{\"products\": ["
+                + "{\"id\": 1, \"title\": \"Desk lamp\", \"description\": \"Bright lamp\", \"category\": \"lighting\", \"price\": 20},"
+                + "{\"id\": 2, \"title\": \"Office chair\", \"description\": \"Ergonomic chair\", \"category\": \"furniture\", \"price\": 150}"
+                + "]}");
+        return new SearchEngineBuilder(catalog.toString(), 1, false, 0).build();
+    }
+
+    private static Supplier<EngineHandle> acquiring(EngineHandle handle) {
+        return () -> {
+            assertTrue(handle.tryAcquire());
+            return handle;
+        };
+    }
+
+    private static List<Integer> ids(EngineHandle handle, String query) {
+        return handle.getEngine().search(query).getResults().stream()
+                .map(SearchResult::getProduct).map(Product::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static List<String> statuses(List<CompletableFuture<BulkResult>> results) {
+        return results.stream().map(CompletableFuture::join).map(BulkResult::getStatus).collect(Collectors.toList());
+    }
+
+    @Test
+    void testOperationsAreAppliedInBatches() throws Exception {
+        EngineHandle handle = buildEngine();
+        try (BulkIngestor ingestor = new BulkIngestor(acquiring(handle), 3, 20, 100)) {
+            List<CompletableFuture<BulkResult>> results = new ArrayList<>();
+            // Очередь заполняется до запуска потока применения: 7 операций дают пакеты 3, 3 и 1
+            results.add(ingestor.submit(1, BulkOperation.add(new Product(3, "Floor lamp", "Tall lamp", "lighting", 60, null)), 0));
+            results.add(ingestor.submit(2, BulkOperation.add(new Product(1, "Desk lamp", "Duplicate", "lighting", 20, null)), 0));
+            results.add(ingestor.submit(3, BulkOperation.update(new Product(2, "Office chair", "Breathable chair", "furniture", 120, null)), 0));
+            results.add(ingestor.submit(4, BulkOperation.update(new Product(9, "Ghost", "Missing", "misc", 1, null)), 0));
+            results.add(ingestor.submit(5, BulkOperation.add(new Product(4, "Wall lamp", "Brass lamp", "decor", 80, null)), 0));
+            results.add(ingestor.submit(6, BulkOperation.delete(4), 0));
+            results.add(ingestor.submit(7, BulkOperation.delete(3), 0));
+            assertEquals(7, ingestor.getQueued());
+            ingestor.start();
+
+            assertEquals(List.of(BulkResult.CREATED, BulkResult.CONFLICT, BulkResult.UPDATED, BulkResult.NOT_FOUND,
+                    BulkResult.CREATED, BulkResult.DELETED, BulkResult.DELETED), statuses(results));
+            assertEquals(3, ingestor.getBatchesApplied());
+            assertEquals(5, ingestor.getOperationsApplied());
+            assertEquals(1, results.get(0).join().getLine());
+        }
+
+        assertEquals(List.of(1), ids(handle, "lamp"));
+        assertEquals(List.of(2), ids(handle, "breathable"));
+        assertTrue(ids(handle, "ergonomic").isEmpty(), "Updated product is reindexed with its new text");
+        assertTrue(ids(handle, "brass").isEmpty(), "Product added and deleted in one batch is not indexed");
+    }
+
+    @Test
+    void testLastOperationWinsWithinBatch() throws Exception {
+        EngineHandle handle = buildEngine();
+        try (BulkIngestor ingestor = new BulkIngestor(acquiring(handle), 10, 20, 100)) {
+            List<CompletableFuture<BulkResult>> results = new ArrayList<>();
+            results.add(ingestor.submit(1, BulkOperation.delete(1), 0));
+            results.add(ingestor.submit(2, BulkOperation.add(new Product(1, "Reading lamp", "Dimmable", "lighting", 25, null)), 0));
+            results.add(ingestor.submit(3, BulkOperation.update(new Product(1, "Reading lamp", "Warm light", "lighting", 30, null)), 0));
+            ingestor.start();
+
+            assertEquals(List.of(BulkResult.DELETED, BulkResult.CREATED, BulkResult.UPDATED), statuses(results));
+            assertEquals(1, ingestor.getBatchesApplied());
+        }
+        assertEquals(List.of(1), ids(handle, "warm"));
+        assertTrue(ids(handle, "dimmable").isEmpty());
+        assertEquals(30.0, handle.getDataManager().getProductById(1).getPrice());
+    }
+
+    @Test
+    void testInvalidOperationsAreRejectedBeforeQueueing() throws Exception {
+        EngineHandle handle = buildEngine();
+        try (BulkIngestor ingestor = new BulkIngestor(acquiring(handle), 10, 20, 100)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> ingestor.submit(1, new BulkOperation(null, 1, null), 0));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ingestor.submit(2, new BulkOperation("upsert", 1, null), 0));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ingestor.submit(3, new BulkOperation(BulkOperation.ADD, 1, null), 0));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ingestor.submit(4, new BulkOperation(BulkOperation.DELETE, null, null), 0));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ingestor.submit(5, new BulkOperation(BulkOperation.UPDATE, 5,
+                            new Product(6, "Lamp", "Lamp", "lighting", 1, null)), 0));
+            assertEquals(0, ingestor.getQueued());
+        }
+    }
+
+    @Test
+    void testLinesThatAreNotOperationObjectsAreInvalid() throws Exception {
+        EngineHandle handle = buildEngine();
+        try (BulkIngestor ingestor = new BulkIngestor(acquiring(handle), 10, 20, 100)) {
+            List<CompletableFuture<BulkResult>> results = new ArrayList<>();
+            results.add(ingestor.submit(1, "null", 0));
+            results.add(ingestor.submit(2, "[{\"op\": \"delete\", \"id\": 1}]", 0));
+            results.add(ingestor.submit(3, "42", 0));
+            results.add(ingestor.submit(4, "{\"op\": \"delete\"", 0));
+            results.add(ingestor.submit(5, "{\"op\": \"delete\", \"id\": -1}", 0));
+            results.add(ingestor.submit(6, "{\"op\": \"delete\", \"id\": 2}", 0));
+            ingestor.start();
+
+            assertEquals(List.of(BulkResult.INVALID, BulkResult.INVALID, BulkResult.INVALID, BulkResult.INVALID,
+                    BulkResult.INVALID, BulkResult.DELETED), statuses(results));
+            assertEquals("Operation must be a JSON object", results.get(0).join().getError());
+            assertEquals(BulkOperation.DELETE, results.get(4).join().getOp());
+        }
+        assertTrue(ids(handle, "chair").isEmpty(), "Invalid lines do not stop the rest of the request");
+    }
+
+    @Test
+    void testProductsWithoutTextFieldsAreInvalidAndNotLogged() throws Exception {
+        EngineHandle handle = buildEngine();
+        try (WriteAheadLog wal = WriteAheadLog.open(tempDir.resolve("wal"), 1L << 20);
+             BulkIngestor ingestor = new BulkIngestor(acquiring(handle), 10, 20, 100, wal)) {
+            List<CompletableFuture<BulkResult>> results = new ArrayList<>();
+            // Строки в том виде, в каком их передает /api/products/bulk
+            results.add(ingestor.submit(1, "{\"op\": \"add\", \"product\": {\"id\": 999}}", 0));
+            results.add(ingestor.submit(2, "{\"op\": \"update\", \"product\": {\"id\": 1, \"title\": \"Desk lamp\","
+                    + " \"description\": \" \", \"category\": \"lighting\"}}", 0));
+            results.add(ingestor.submit(3, "{\"op\": \"add\", \"product\": {\"id\": 3, \"title\": \"Floor lamp\","
+                    + " \"description\": \"Tall lamp\", \"category\": \"lighting\"}}", 0));
+            ingestor.start();
+
+            assertEquals(List.of(BulkResult.INVALID, BulkResult.INVALID, BulkResult.CREATED), statuses(results));
+            assertEquals("Product requires a non-empty title", results.get(0).join().getError());
+            assertEquals("Product requires a non-empty description", results.get(1).join().getError());
+            assertEquals(1, wal.getLastLsn(), "Only the valid operation is logged");
+        }
+        assertEquals(List.of(1, 3), ids(handle, "lamp"));
+        assertEquals(List.of(1), ids(handle, "bright"));
+    }
+
+    @Test
+    void testLoggedBatchThatFailsToApplyIsIndeterminateAndStopsIngest() throws Exception {
+        Path catalog = tempDir.resolve("products.json");
+        Files.writeString(catalog, "{\"products\": ["
+                + "{\"id\": 1, \"title\": \"Desk lamp\", \"description\": \"Bright lamp\", \"category\": \"lighting\", \"price\": 20}"
+                + "]}");
+        // Движок с суффиксным массивом не принимает изменений: применение падает уже после записи в журнал
+        EngineHandle handle = new SearchEngineBuilder(catalog.toString(), 1, true, 0).build();
+        try (WriteAheadLog wal = WriteAheadLog.open(tempDir.resolve("wal"), 1L << 20);
+             BulkIngestor ingestor = new BulkIngestor(acquiring(handle), 10, 5, 100, wal)) {
+            ingestor.start();
+            BulkResult logged = ingestor.submit(1, BulkOperation.delete(1), 0).join();
+            assertEquals(BulkResult.INDETERMINATE, logged.getStatus(), "Durable records are not reported as failed");
+            assertFalse(logged.isApplied());
+            assertEquals(1, wal.getLastLsn());
+
+            BulkResult next = ingestor.submit(2, BulkOperation.delete(1), 0).join();
+            assertEquals(BulkResult.FAILED, next.getStatus(), "Ingest refuses writes after the index diverged");
+            assertEquals(1, wal.getLastLsn());
+        }
+    }
+
+    @Test
+    void testFullQueueRejectsOperations() throws Exception {
+        EngineHandle handle = buildEngine();
+        BulkIngestor ingestor = new BulkIngestor(acquiring(handle), 10, 20, 1);
+        // Поток применения не запущен: очередь на одну операцию заполняется первой же
+        CompletableFuture<BulkResult> queued = ingestor.submit(1, BulkOperation.delete(1), 0);
+        CompletableFuture<BulkResult> rejected = ingestor.submit(2, BulkOperation.delete(2), 10);
+        assertFalse(queued.isDone());
+        assertEquals(BulkResult.REJECTED, rejected.join().getStatus());
+
+        ingestor.close();
+        assertEquals(BulkResult.REJECTED, queued.join().getStatus(), "Queued operations are rejected on shutdown");
+        assertEquals(List.of(1), ids(handle, "lamp"), "Rejected operations are not applied");
+        assertEquals(List.of(2), ids(handle, "chair"));
+    }
+}
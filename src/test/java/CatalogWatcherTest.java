@@ -0,0 +1,95 @@
+import index.InvertedIndex;
+import index.Trie;
+import model.Product;
+import model.SearchRequest;
+import model.SearchResponse;
+import model.SearchResult;
+import service.CatalogDiff;
+import service.CatalogWatcher;
+import service.DataManager;
+import service.Indexer;
+import service.ProductLoader;
+import service.SmartSearchEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты перезагрузки каталога по разнице между файлом и хранилищем
+
+public class CatalogWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String product(int id, String title, String description, String category, double price) {
+        return String.format(Locale.ROOT,
+                "{\"id\": %d, \"title\": \"%s\", \"description\": \"%s\", \"category\": \"%s\", \"price\": %.2f}",
+                id, title, description, category, price);
+    }
+
+    private static void writeCatalog(Path path, String... products) throws IOException {
+        Files.writeString(path, "{\"products\": [" + String.join(",", products) + "]}");
+    }
+
+    private static List<Integer> ids(SearchResponse response) {
+        return response.getResults().stream().map(r -> r.getProduct().getId()).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    void testReloadAppliesOnlyTheDifference() throws IOException {
+        Path catalog = tempDir.resolve("products.json");
+        writeCatalog(catalog,
+                product(1, "Desk lamp", "Bright desk lamp", "lighting", 20),
+                product(2, "Floor lamp", "Tall floor lamp", "lighting", 60),
+                product(3, "Office chair", "Ergonomic chair", "furniture", 150));
+
+        DataManager dataManager = new DataManager();
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        ProductLoader.streamProducts(catalog, dataManager::addProduct);
+        new Indexer(invertedIndex, trie).indexProducts(dataManager.getDocuments());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, dataManager);
+        CatalogWatcher watcher = new CatalogWatcher(catalog, engine);
+        assertEquals(List.of(1, 2), ids(engine.search("lamp")));
+
+        // Лампа 2 удалена, у лампы 1 изменились описание и цена, добавлен продукт 4, стул не изменился
+        writeCatalog(catalog,
+                product(1, "Desk lamp", "Dimmable reading light", "lighting", 25),
+                product(3, "Office chair", "Ergonomic chair", "furniture", 150),
+                product(4, "Wall sconce", "Brass lamp", "decor", 80));
+        CatalogDiff diff = watcher.reload();
+
+        assertEquals(1, diff.getAdded());
+        assertEquals(1, diff.getChanged());
+        assertEquals(1, diff.getRemoved());
+        assertEquals(3, diff.getScanned());
+        assertEquals(List.of(1, 4), ids(engine.search("lamp")));
+        assertEquals(List.of(1), ids(engine.search("dimmable")));
+        assertTrue(engine.search("floor").getResults().isEmpty(), "Removed product must not be found");
+        assertFalse(ids(engine.search("\"tall floor\"")).contains(2), "Phrase scan must skip removed documents");
+        assertFalse(trie.autocomplete("tal").contains("tall"), "Words of removed products leave the trie");
+        assertTrue(trie.autocomplete("lam").contains("lamp"), "Words still used by other products stay");
+        assertTrue(engine.getSearchSuggestions("scon").contains("sconce"));
+
+        SearchRequest request = new SearchRequest("lamp", 10, null);
+        request.setFacets(true);
+        request.setSort("price_asc");
+        SearchResponse response = engine.search(request);
+        assertEquals(List.of(25.0, 80.0), response.getResults().stream()
+                .map(SearchResult::getProduct).map(Product::getPrice).collect(Collectors.toList()));
+        assertEquals(1, response.getFacets().getCategories().get("decor"));
+        assertEquals(1, response.getFacets().getCategories().get("lighting"));
+
+        assertTrue(watcher.reload().isEmpty(), "Unchanged file produces an empty diff");
+        assertNull(watcher.poll(), "Poll skips files whose timestamp and size did not change");
+        watcher.close();
+    }
+}
@@ -0,0 +1,223 @@
+import index.IntIntHashMap;
+import index.InvertedIndex;
+import index.Trie;
+import index.Utf8Column;
+import model.Product;
+import model.SearchResult;
+import org.junit.jupiter.api.Test;
+import service.DataManager;
+import service.Indexer;
+import service.SmartSearchEngine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты для колоночного хранилища продуктов, в том числе с описаниями вне кучи
+
+public class DataManagerTest {
+
+    @Test
+    public void testProductsRoundTripThroughColumns() {
+        DataManager dataManager = new DataManager();
+        dataManager.addProduct(new Product(42, "Смартфон X", "Экран 6\", чехол в комплекте", "phones", 199.5, "x.webp"));
+        dataManager.addProduct(new Product(7, "Cable", null, "accessories", 3.0, null));
+
+        Product phone = dataManager.getProductById(42);
+        assertEquals("Смартфон X", phone.getName());
+        assertEquals("Экран 6\", чехол в комплекте", phone.getDescription());
+        assertEquals(199.5, phone.getPrice());
+        assertEquals("x.webp", phone.getImage());
+
+        Product cable = dataManager.getProductByDocId(dataManager.getDocId(7));
+        assertNull(cable.getDescription());
+        assertNull(cable.getImage());
+        assertNull(dataManager.getProductById(8));
+        assertEquals(-1, dataManager.getDocId(8));
+
+        // Повторное добавление заменяет значения, но сохраняет внутренний id
+        dataManager.addProduct(new Product(42, "Смартфон X2", "Новое описание", "phones", 149.0, null));
+        assertEquals(0, dataManager.getDocId(42));
+        assertEquals(2, dataManager.getDocumentCount());
+        assertEquals("Смартфон X2", dataManager.getProductById(42).getName());
+        assertEquals(149.0, dataManager.getDocuments().get(0).getPrice());
+    }
+
+    @Test
+    public void testLowerCaseFieldsAreKeptInColumns() {
+        DataManager dataManager = new DataManager();
+        dataManager.addProduct(new Product(1, "Смартфон X", null, "Phones", 199.5, null));
+        dataManager.addProduct(new Product(2, "\u0130zmir Towel", "Soft", "Home", 9.0, null));
+
+        assertEquals("смартфон x", dataManager.getLowerName(0).toString());
+        assertEquals("", dataManager.getLowerDescription(0).toString(), "Missing field is searched as empty");
+        assertEquals("phones", dataManager.getLowerCategory(0).toString());
+        assertNotNull(dataManager.getProductTextByDocId(0).getNameOffsets());
+        // 'İ' в нижнем регистре дает два символа: границы токенов не переносятся на исходное имя
+        assertNull(dataManager.getProductTextByDocId(1).getNameOffsets());
+
+        dataManager.addProduct(new Product(1, "Ноутбук", "Новый", "Laptops", 999.0, null));
+        assertEquals("ноутбук", dataManager.getLowerName(0).toString());
+        assertEquals("новый", dataManager.getLowerDescription(0).toString());
+        dataManager.removeProduct(1);
+        assertEquals(0, dataManager.getLowerName(0).length());
+        // ASCII-поля ищутся по исходной колонке со сверткой регистра: копий в нижнем регистре нет
+        DataManager ascii = new DataManager();
+        ascii.addProduct(new Product(1, "iPhone 14", "Apple Smartphone", "Electronics", 999.0, null));
+        assertEquals("iphone 14", ascii.getLowerName(0).toString());
+        assertEquals("iPhone 14Apple SmartphoneElectronics".length(), ascii.getTextColumnBytes());
+    }
+
+    @Test
+    public void testUtf8ColumnGrowth() {
+        Utf8Column column = new Utf8Column();
+        for (int doc = 0; doc < 1000; doc++) {
+            column.set(doc, doc % 10 == 0 ? null : "значение-" + doc);
+        }
+        assertEquals(1000, column.size());
+        assertNull(column.get(500));
+        assertEquals("значение-999", column.get(999));
+        assertEquals("значение-1".getBytes(java.nio.charset.StandardCharsets.UTF_8).length, column.byteLength(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> column.get(1000));
+        assertThrows(IndexOutOfBoundsException.class, () -> column.set(1001, "gap"));
+    }
+
+    @Test
+    public void testUtf8ColumnCompactsOverwrittenValues() {
+        Utf8Column column = new Utf8Column(false, 4096);
+        for (int doc = 0; doc < 10; doc++) {
+            column.set(doc, "value-" + doc);
+        }
+        // Без сжатия перезаписанные значения давно вышли бы за предел массива
+        for (int round = 0; round < 1000; round++) {
+            column.set(round % 10, "значение-" + round);
+        }
+        for (int doc = 0; doc < 10; doc++) {
+            assertEquals("значение-" + (990 + doc), column.get(doc));
+        }
+        assertTrue(column.getArenaBytes() <= 4096);
+
+        // Живые значения сверх предела отклоняются до изменения колонки
+        String large = "x".repeat(4000);
+        assertThrows(IllegalStateException.class, () -> column.set(3, large));
+        assertEquals("значение-993", column.get(3));
+        assertThrows(IllegalStateException.class, () -> column.checkCapacity(4000));
+        column.set(3, "x".repeat(3900)); // место прежнего значения освобождается
+        assertEquals(3900, column.byteLength(3));
+        assertEquals("значение-994", column.get(4));
+    }
+
+    @Test
+    public void testOffHeapDescriptionsMatchHeap() {
+        Utf8Column column = new Utf8Column(true);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            large.append('я');
+        }
+        column.set(0, "short");
+        column.set(1, large.toString()); // больше блока: получает собственный буфер
+        column.set(2, null);
+        column.set(0, "rewritten");
+        assertTrue(column.isOffHeap());
+        assertEquals("rewritten", column.get(0));
+        assertEquals(large.toString(), column.get(1));
+        assertNull(column.get(2));
+
+        DataManager heap = new DataManager(false);
+        DataManager offHeap = new DataManager(true);
+        List<Product> products = List.of(
+                new Product(1, "iPhone 14", "Apple smartphone iPhone 14 with advanced camera", "Electronics"),
+                new Product(2, "AirPods Pro", "Apple wireless earbuds with \"noise cancellation\"", "Accessories"),
+                new Product(3, "Cable", "", "Accessories"));
+        for (Product product : products) {
+            heap.addProduct(product);
+            offHeap.addProduct(product);
+        }
+        assertTrue(offHeap.isOffHeapText());
+        for (int doc = 0; doc < products.size(); doc++) {
+            assertEquals(heap.getProductByDocId(doc), offHeap.getProductByDocId(doc));
+            assertEquals(heap.getProductByDocId(doc).getDescription(), offHeap.getProductByDocId(doc).getDescription());
+            assertEquals(heap.getLowerDescription(doc).toString(), offHeap.getLowerDescription(doc).toString());
+        }
+
+        for (String query : new String[]{"apple", "\"noise cancellation\"", "earbds", "camera"}) {
+            assertEquals(search(heap, query), search(offHeap, query), "Mismatch for: " + query);
+        }
+    }
+
+    private static List<String> search(DataManager dataManager, String query) {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        new Indexer(invertedIndex, trie).indexProducts(dataManager.getDocuments());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, dataManager);
+        List<String> results = new ArrayList<>();
+        for (SearchResult result : engine.smartSearch(query)) {
+            results.add(result.getProduct().getId() + ":" + result.getRelevanceScore() + ":" + result.getHighlightedText());
+        }
+        return results;
+    }
+
+    @Test
+    public void testIntIntHashMapMatchesHashMap() {
+        IntIntHashMap map = new IntIntHashMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(5_000) - 2_500;
+            int value = random.nextInt(1_000_000);
+            map.put(key, value);
+            expected.put(key, value);
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -3_000; key < 3_000; key++) {
+            assertEquals(expected.getOrDefault(key, -1), map.get(key), "Mismatch for key " + key);
+        }
+    }
+
+    @Test
+    public void testIntIntHashMapRemoveMatchesHashMap() {
+        IntIntHashMap map = new IntIntHashMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.containsKey(key) ? expected.remove(key) : -1, map.remove(key));
+            } else {
+                int value = random.nextInt(1_000);
+                map.put(key, value);
+                expected.put(key, value);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 2_000; key++) {
+            assertEquals(expected.getOrDefault(key, -1), map.get(key), "Mismatch for key " + key);
+        }
+    }
+
+    @Test
+    public void testRemovedProductLeavesEmptyDocument() {
+        DataManager dataManager = new DataManager();
+        dataManager.addProduct(new Product(1, "Lamp", "Desk lamp", "lighting", 20.0, null));
+        dataManager.addProduct(new Product(2, "Chair", "Office chair", "furniture", 80.0, null));
+        long hash = dataManager.getContentHash(1);
+
+        assertEquals(0, dataManager.removeProduct(1));
+        assertEquals(-1, dataManager.removeProduct(1));
+        assertNull(dataManager.getProductById(1));
+        assertTrue(dataManager.isDeleted(0));
+        assertEquals(1, dataManager.getDocId(2), "Other documents keep their ids");
+        assertEquals(1, dataManager.getProductCount());
+        assertEquals(List.of(2), List.copyOf(dataManager.getAllProducts().keySet()));
+        assertEquals(0, dataManager.getProductTextByDocId(0).getDescriptionTerms().length);
+
+        dataManager.addProduct(new Product(2, "Chair", "Office chair", "furniture", 80.0, null));
+        assertEquals(hash, dataManager.getContentHash(1), "Same content gives the same hash");
+        dataManager.addProduct(new Product(2, "Chair", "Office chair", "furniture", 85.0, null));
+        assertNotEquals(hash, dataManager.getContentHash(1));
+    }
+}
@@ -0,0 +1,214 @@
+import index.DocBitSet;
+import index.FacetIndex;
+import index.PriceColumn;
+import model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты для битовых множеств документов, фасетного индекса и колонки цен
+
+public class FacetIndexTest {
+
+    @Test
+    public void testBitSetOperationsMatchNaive() {
+        Random random = new Random(7);
+        int size = 1000;
+        DocBitSet a = new DocBitSet(size);
+        DocBitSet b = new DocBitSet(size);
+        boolean[] inA = new boolean[size];
+        boolean[] inB = new boolean[size];
+        for (int i = 0; i < 300; i++) {
+            int docA = random.nextInt(size);
+            int docB = random.nextInt(size);
+            a.set(docA);
+            b.set(docB);
+            inA[docA] = true;
+            inB[docB] = true;
+        }
+
+        int expectedA = 0;
+        int expectedBoth = 0;
+        for (int doc = 0; doc < size; doc++) {
+            assertEquals(inA[doc], a.get(doc));
+            expectedA += inA[doc] ? 1 : 0;
+            expectedBoth += inA[doc] && inB[doc] ? 1 : 0;
+        }
+        assertEquals(expectedA, a.cardinality());
+        assertEquals(expectedBoth, a.intersectionCount(b));
+
+        int iterated = 0;
+        for (int doc = a.nextSetBit(0); doc >= 0; doc = a.nextSetBit(doc + 1)) {
+            assertTrue(inA[doc]);
+            iterated++;
+        }
+        assertEquals(expectedA, iterated);
+    }
+
+    @Test
+    public void testFacetCounts() {
+        List<Product> documents = List.of(
+                new Product(10, "Phone A", "", "smartphones", 299.0, null),
+                new Product(11, "Phone B", "", "smartphones", 999.0, null),
+                new Product(12, "Case", "", "mobile-accessories", 19.99, null),
+                new Product(13, "Laptop", "", "laptops", 1499.0, null));
+        FacetIndex facetIndex = new FacetIndex(documents);
+
+        DocBitSet matched = new DocBitSet(documents.size());
+        matched.set(0);
+        matched.set(1);
+        matched.set(2);
+
+        Map<String, Integer> categories = facetIndex.countCategories(matched);
+        assertEquals(List.of("smartphones", "mobile-accessories"), List.copyOf(categories.keySet()),
+                     "Categories should be ordered by count and omit empty ones");
+        assertEquals(2, categories.get("smartphones"));
+
+        Map<String, Integer> prices = facetIndex.countPriceRanges(matched);
+        assertEquals(1, prices.get("10-50"));
+        assertEquals(1, prices.get("100-500"));
+        assertEquals(1, prices.get("500-1000"));
+        assertEquals(0, prices.get("1000+"));
+    }
+
+    @Test
+    public void testPriceColumnRangeAndOrder() {
+        List<Product> documents = List.of(
+                new Product(1, "A", "", "x", 50.0, null),
+                new Product(2, "B", "", "x", 10.0, null),
+                new Product(3, "C", "", "x", 50.0, null),
+                new Product(4, "D", "", "x", 5.0, null),
+                new Product(5, "E", "", "x", 100.0, null));
+        PriceColumn prices = new PriceColumn(documents);
+
+        DocBitSet range = prices.range(10.0, 50.0);
+        assertEquals(3, range.cardinality(), "Bounds are inclusive");
+        assertTrue(range.get(0) && range.get(1) && range.get(2));
+
+        int[] out = new int[5];
+        assertEquals(5, prices.collect(false, -1, doc -> true, 5, out));
+        assertArrayEquals(new int[]{3, 1, 0, 2, 4}, out, "Ascending by price, ties by doc id");
+
+        assertEquals(2, prices.collect(true, -1, doc -> doc != 4, 2, out));
+        assertEquals(2, out[0]);
+        assertEquals(0, out[1]);
+
+        // Продолжение после документа 0 в порядке убывания
+        assertEquals(2, prices.collect(true, 0, doc -> true, 5, out));
+        assertEquals(1, out[0]);
+        assertEquals(3, out[1]);
+    }
+
+    @Test
+    public void testIncrementalUpdateMatchesRebuild() {
+        Random random = new Random(11);
+        String[] categories = {"a", "b", "c"};
+        List<Product> documents = new ArrayList<>();
+        for (int doc = 0; doc < 200; doc++) {
+            documents.add(new Product(doc, "P", "", categories[random.nextInt(3)], random.nextInt(50), null));
+        }
+        FacetIndex facetIndex = new FacetIndex(documents);
+
+        // Изменение цен и категорий, удаление (категория null) и новые документы
+        int[] docs = {5, 17, 17, 120, 199, 200, 201};
+        String[] newCategories = {"d", "a", "b", null, "c", "d", "a"};
+        double[] newPrices = {0, 49, 12, 0, 3, 25, 25};
+        FacetIndex updated = facetIndex.update(202, docs, newCategories, newPrices);
+
+        List<Product> expected = new ArrayList<>(documents);
+        expected.add(null);
+        expected.add(null);
+        for (int i = 0; i < docs.length; i++) {
+            expected.set(docs[i], new Product(docs[i], "P", "", newCategories[i], newPrices[i], null));
+        }
+        FacetIndex rebuilt = new FacetIndex(expected);
+
+        DocBitSet all = new DocBitSet(202);
+        for (int doc = 0; doc < 202; doc++) {
+            all.set(doc);
+        }
+        assertEquals(rebuilt.countCategories(all), updated.countCategories(all));
+        assertEquals(rebuilt.countPriceRanges(all), updated.countPriceRanges(all));
+        int[] expectedOrder = new int[202];
+        int[] actualOrder = new int[202];
+        rebuilt.getPrices().collect(false, -1, doc -> true, 202, expectedOrder);
+        updated.getPrices().collect(false, -1, doc -> true, 202, actualOrder);
+        assertArrayEquals(expectedOrder, actualOrder);
+        assertEquals(200, facetIndex.getDocumentCount(), "The previous index is left unchanged");
+    }
+
+    @Test
+    public void testRepeatedSmallUpdatesMatchRebuildAndKeepPreviousIndex() {
+        Random random = new Random(5);
+        String[] categories = {"a", "b", "c", "d"};
+        List<Product> documents = new ArrayList<>();
+        for (int doc = 0; doc < 5_000; doc++) {
+            documents.add(new Product(doc, "P", "", categories[random.nextInt(4)], random.nextInt(2_000) / 4.0, null));
+        }
+        FacetIndex facetIndex = new FacetIndex(documents);
+
+        for (int round = 0; round < 40; round++) {
+            // Пакеты в несколько документов меняют только свои блоки; каждый десятый крупный пересобирает порядок
+            int size = round % 10 == 9 ? 800 : 1 + random.nextInt(6);
+            int documentCount = facetIndex.getDocumentCount() + random.nextInt(3);
+            int[] docs = new int[size];
+            String[] newCategories = new String[size];
+            double[] newPrices = new double[size];
+            List<Product> expected = new ArrayList<>(documents);
+            while (expected.size() < documentCount) {
+                expected.add(new Product(expected.size(), "P", "", null, 0, null));
+            }
+            for (int i = 0; i < size; i++) {
+                docs[i] = random.nextInt(documentCount);
+                newCategories[i] = random.nextInt(10) == 0 ? null : categories[random.nextInt(4)];
+                newPrices[i] = random.nextInt(2_000) / 4.0;
+                expected.set(docs[i], new Product(docs[i], "P", "", newCategories[i], newPrices[i], null));
+            }
+
+            FacetIndex previous = facetIndex;
+            Map<String, Integer> previousCounts = previous.countCategories(all(previous.getDocumentCount()));
+            int[] previousOrder = order(previous.getPrices(), false, -1);
+
+            facetIndex = facetIndex.update(documentCount, docs, newCategories, newPrices);
+            documents = expected;
+            FacetIndex rebuilt = new FacetIndex(expected);
+
+            DocBitSet all = all(documentCount);
+            assertEquals(rebuilt.countCategories(all), facetIndex.countCategories(all), "Round " + round);
+            assertEquals(rebuilt.countPriceRanges(all), facetIndex.countPriceRanges(all));
+            int afterDoc = random.nextInt(documentCount);
+            for (boolean descending : new boolean[]{false, true}) {
+                assertArrayEquals(order(rebuilt.getPrices(), descending, -1), order(facetIndex.getPrices(), descending, -1));
+                assertArrayEquals(order(rebuilt.getPrices(), descending, afterDoc),
+                        order(facetIndex.getPrices(), descending, afterDoc));
+            }
+            double min = random.nextInt(500);
+            assertEquals(rebuilt.getPrices().range(min, min + 20).cardinality(),
+                    facetIndex.getPrices().range(min, min + 20).cardinality());
+
+            assertEquals(previousCounts, previous.countCategories(all(previous.getDocumentCount())),
+                    "The previous index is left unchanged");
+            assertArrayEquals(previousOrder, order(previous.getPrices(), false, -1));
+        }
+    }
+
+    private static DocBitSet all(int size) {
+        DocBitSet all = new DocBitSet(size);
+        for (int doc = 0; doc < size; doc++) {
+            all.set(doc);
+        }
+        return all;
+    }
+
+    private static int[] order(PriceColumn prices, boolean descending, int afterDoc) {
+        int[] out = new int[prices.size()];
+        int count = prices.collect(descending, afterDoc, doc -> true, out.length, out);
+        return Arrays.copyOf(out, count);
+    }
+}
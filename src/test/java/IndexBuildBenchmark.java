@@ -0,0 +1,63 @@
+import index.InvertedIndex;
+import index.Trie;
+import model.Product;
+import service.DataManager;
+import service.Indexer;
+import service.ProductLoader;
+
+import java.util.List;
+
+// Бенчмарк: время построения индекса в одном потоке и параллельно с разным числом потоков
+// на синтетическом каталоге, в 100 раз большем products.json. Запуск:
+// mvn test-compile exec:java -Dexec.mainClass=IndexBuildBenchmark -Dexec.classpathScope=test
+
+public class IndexBuildBenchmark {
+    private static final int COPIES = 100;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        List<Product> products = ProductLoader.loadProductsFromJson("products.json");
+        DataManager dataManager = new DataManager();
+        for (int copy = 0; copy < COPIES; copy++) {
+            for (Product product : products) {
+                dataManager.addProduct(new Product(copy * 100_000 + product.getId(), product.getName(),
+                        product.getDescription() + " #" + copy, product.getCategory(), product.getPrice(),
+                        product.getImage()));
+            }
+        }
+        // Продукты собираются заранее, чтобы измерялась только индексация
+        List<Product> documents = List.copyOf(dataManager.getDocuments());
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("Catalog: " + documents.size() + " products, " + cores + " cores");
+
+        // Прогрев JIT
+        buildSequential(documents);
+        build(documents, Math.max(2, cores));
+
+        double sequential = measure(() -> buildSequential(documents));
+        System.out.printf("Sequential:  %8.1f ms%n", sequential);
+        for (int threads = 1; threads <= Math.max(4, cores); threads *= 2) {
+            int count = threads;
+            double millis = measure(() -> build(documents, count));
+            System.out.printf("%2d threads:  %8.1f ms (x%.2f)%n", threads, millis, sequential / millis);
+        }
+    }
+
+    private static void buildSequential(List<Product> documents) {
+        new Indexer(new InvertedIndex(), new Trie()).indexProducts(documents);
+    }
+
+    private static void build(List<Product> documents, int threads) {
+        new Indexer(new InvertedIndex(), new Trie()).indexProducts(documents, threads);
+    }
+
+    private static double measure(Runnable build) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            build.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+}
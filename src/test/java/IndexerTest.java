@@ -0,0 +1,94 @@
+import index.InvertedIndex;
+import index.Trie;
+import model.Product;
+import service.Indexer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexerTest {
+
+    private static final String[] WORDS = {"apple", "phone", "case", "leather", "steel", "watch", "lamp", "desk",
+            "wireless", "charger", "camera", "lens", "mascara", "lipstick", "sofa", "chair", "Ёлка", "café"};
+
+    private static List<Product> catalog(int size) {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= size; id++) {
+            products.add(new Product(id, phrase(random, 3) + " " + id, phrase(random, 12), phrase(random, 1)));
+        }
+        // Повторно добавленный id должен попасть в одно множество без дубликатов
+        products.add(new Product(7, "apple lamp", "desk lamp", "lighting"));
+        return products;
+    }
+
+    private static String phrase(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(i > 0 ? " " : "").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    @Test
+    void testParallelBuildMatchesSequential() {
+        List<Product> products = catalog(5_000);
+
+        InvertedIndex sequentialIndex = new InvertedIndex();
+        Trie sequentialTrie = new Trie();
+        new Indexer(sequentialIndex, sequentialTrie).indexProducts(products);
+
+        for (int threads : new int[]{2, 3, 4}) {
+            InvertedIndex parallelIndex = new InvertedIndex();
+            Trie parallelTrie = new Trie();
+            new Indexer(parallelIndex, parallelTrie).indexProducts(products, threads);
+
+            assertEquals(sequentialIndex.getIndex(), parallelIndex.getIndex(), "Postings differ with " + threads + " threads");
+            for (String prefix : new String[]{"", "a", "ca", "ё", "1", "49"}) {
+                assertEquals(new HashSet<>(sequentialTrie.autocomplete(prefix)),
+                             new HashSet<>(parallelTrie.autocomplete(prefix)));
+            }
+            assertTrue(parallelIndex.getVersion() > 0, "Bulk postings should bump the index version");
+        }
+    }
+
+    @Test
+    void testParallelBuildMergesIntoExistingIndex() {
+        List<Product> products = catalog(3_000);
+        InvertedIndex index = new InvertedIndex();
+        Trie trie = new Trie();
+        Indexer indexer = new Indexer(index, trie);
+        indexer.indexProduct(new Product(100_000, "Apple Vision", "headset", "electronics"));
+
+        indexer.indexProducts(products, 3);
+
+        assertTrue(index.search("apple").contains(100_000));
+        assertTrue(index.search("apple").contains(7));
+        assertTrue(trie.autocomplete("vis").contains("vision"));
+    }
+
+    @Test
+    void testProductsWithMissingFieldsAreIndexedAsEmpty() {
+        List<Product> products = new ArrayList<>();
+        for (int id = 1; id <= 2_000; id++) {
+            products.add(new Product(id, id == 5 ? null : "lamp " + id, null, id == 7 ? null : "lighting"));
+        }
+        InvertedIndex index = new InvertedIndex();
+        Trie trie = new Trie();
+        Indexer indexer = new Indexer(index, trie);
+        indexer.indexProducts(products, 2);
+        indexer.indexProduct(new Product(3_000, "Desk", null, null));
+
+        assertFalse(index.search("lamp").contains(5));
+        assertTrue(index.search("lighting").contains(5));
+        assertTrue(index.search("desk").contains(3_000));
+
+        indexer.removeProduct(new Product(3_000, "Desk", null, null));
+        assertFalse(trie.autocomplete("de").contains("desk"));
+    }
+}
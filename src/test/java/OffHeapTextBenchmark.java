@@ -0,0 +1,112 @@
+import index.InvertedIndex;
+import index.Trie;
+import model.Product;
+import service.DataManager;
+import service.Indexer;
+import service.ProductLoader;
+import service.SmartSearchEngine;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+// Бенчмарк: куча и паузы сборщика мусора при описаниях в куче и вне кучи (-Dsearch.offHeapText)
+// на синтетическом каталоге, в 100 раз большем products.json. Запуск:
+// mvn test-compile exec:java -Dexec.mainClass=OffHeapTextBenchmark -Dexec.classpathScope=test
+
+public class OffHeapTextBenchmark {
+    private static final int COPIES = 100;
+    private static final int FULL_GCS = 5;
+    private static final String[] QUERIES = {"smartphone", "\"stainless steel\"", "leather bag", "mascra", "apple"};
+    private static final int QUERY_ROUNDS = 20;
+
+    public static void main(String[] args) {
+        List<Product> products = ProductLoader.loadProductsFromJson("products.json");
+        System.out.println("Catalog: " + products.size() * COPIES + " products (" + COPIES + "x products.json)");
+
+        // Первый проход прогревает JIT и не выводится, чтобы режимы сравнивались в равных условиях
+        run(null, products, false);
+        run("Heap descriptions", products, false);
+        run("Off-heap descriptions", products, true);
+    }
+
+    private static void run(String label, List<Product> products, boolean offHeap) {
+        long baseline = usedHeapAfterGc();
+        long directBaseline = directMemoryUsed();
+
+        DataManager dataManager = new DataManager(offHeap);
+        for (int copy = 0; copy < COPIES; copy++) {
+            for (Product product : products) {
+                // Описания делаются уникальными, чтобы копии не делили одни и те же строки
+                dataManager.addProduct(new Product(copy * 100_000 + product.getId(), product.getName(),
+                        product.getDescription() + " #" + copy, product.getCategory(), product.getPrice(),
+                        product.getImage()));
+            }
+        }
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        new Indexer(invertedIndex, trie).indexProducts(dataManager.getDocuments());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, dataManager);
+
+        long retained = usedHeapAfterGc() - baseline;
+        long direct = directMemoryUsed() - directBaseline;
+
+        // Полные сборки при живом каталоге: их длительность растет с числом объектов, которые нужно пройти
+        long[] before = gcTotals();
+        for (int i = 0; i < FULL_GCS; i++) {
+            System.gc();
+        }
+        long[] after = gcTotals();
+        double fullGcMillis = (double) (after[1] - before[1]) / FULL_GCS;
+
+        // Поисковая нагрузка: время и сборки мусора во время запросов
+        before = gcTotals();
+        long start = System.nanoTime();
+        int results = 0;
+        for (int round = 0; round < QUERY_ROUNDS; round++) {
+            for (String query : QUERIES) {
+                results += engine.search(query, 10_000).getResults().size();
+            }
+        }
+        double queryMillis = (System.nanoTime() - start) / 1e6 / (QUERY_ROUNDS * QUERIES.length);
+        after = gcTotals();
+
+        if (label == null) {
+            return;
+        }
+        System.out.println(label + ":");
+        System.out.printf("  retained heap:      %8.1f MB%n", retained / (1024.0 * 1024));
+        System.out.printf("  direct memory:      %8.1f MB%n", direct / (1024.0 * 1024));
+        System.out.printf("  full GC pause:      %8.1f ms (average of %d)%n", fullGcMillis, FULL_GCS);
+        System.out.printf("  search:             %8.2f ms/query, %d GCs, %d ms GC time (%d results)%n",
+                queryMillis, after[0] - before[0], after[1] - before[1], results);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    // Число сборок и суммарное время всех сборщиков
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+}
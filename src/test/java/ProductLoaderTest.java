@@ -0,0 +1,73 @@
+import model.Product;
+import service.ProductLoader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductLoaderTest {
+
+    private static final String CATALOG = "{\"total\": 2, \"products\": ["
+            + "{\"id\": 1, \"title\": \"iPhone 14\", \"description\": \"Apple smartphone\", \"category\": \"smartphones\","
+            + " \"price\": 999.5, \"tags\": [\"apple\", {\"nested\": true}], \"thumbnail\": \"a.png\"},"
+            + "{\"id\": 2, \"title\": \"Кружка\", \"description\": \"Керамическая кружка\", \"category\": \"kitchen\"}"
+            + "], \"limit\": 30}";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testStreamsPlainAndGzipFiles() throws IOException {
+        Path plain = tempDir.resolve("products.json");
+        Files.writeString(plain, CATALOG);
+        Path gzip = tempDir.resolve("products.json.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            out.write(CATALOG.getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (Path path : List.of(plain, gzip)) {
+            List<Product> products = new ArrayList<>();
+            assertEquals(2, ProductLoader.streamProducts(path, products::add));
+            assertEquals("iPhone 14", products.get(0).getName());
+            assertEquals(999.5, products.get(0).getPrice());
+            assertEquals("a.png", products.get(0).getImage());
+            assertEquals("Керамическая кружка", products.get(1).getDescription());
+        }
+    }
+
+    @Test
+    void testStreamsTopLevelArray() throws IOException {
+        Path path = tempDir.resolve("array.json");
+        Files.writeString(path, "[{\"id\": 7, \"title\": \"Lamp\", \"description\": \"Desk lamp\", \"category\": \"lighting\"}]");
+
+        List<Product> products = new ArrayList<>();
+        assertEquals(1, ProductLoader.streamProducts(path, products::add));
+        assertEquals(7, products.get(0).getId());
+    }
+
+    @Test
+    void testTruncatedCatalogFails() throws IOException {
+        Path path = tempDir.resolve("truncated.json");
+        Files.writeString(path, CATALOG.substring(0, CATALOG.indexOf("{\"id\": 2")));
+
+        List<Product> products = new ArrayList<>();
+        assertThrows(IOException.class, () -> ProductLoader.streamProducts(path, products::add));
+        assertEquals(1, products.size(), "Products before the damage are delivered");
+    }
+
+    @Test
+    void testBundledCatalogLoads() {
+        List<Product> products = ProductLoader.loadProductsFromJson("products.json");
+        assertFalse(products.isEmpty());
+        assertTrue(products.stream().allMatch(p -> p.getName() != null && p.getCategory() != null));
+    }
+}
@@ -0,0 +1,129 @@
+import model.SearchResult;
+import service.EngineHandle;
+import service.ReindexJob;
+import service.ReindexStatus;
+import service.SearchEngineBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты полной переиндексации с атомарной заменой движка
+
+public class ReindexJobTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String product(int id, String title, String description) {
+        return String.format(Locale.ROOT,
+                "{\"id\": %d, \"title\": \"%s\", \"description\": \"%s\", \"category\": \"misc\", \"price\": 10.00}",
+                id, title, description);
+    }
+
+    private static void writeCatalog(Path path, String... products) throws IOException {
+        Files.writeString(path, "{\"products\": [" + String.join(",", products) + "]}");
+    }
+
+    private static List<Integer> ids(EngineHandle handle, String query) {
+        return handle.getEngine().search(query).getResults().stream()
+                .map(SearchResult::getProduct).map(p -> p.getId()).sorted().collect(Collectors.toList());
+    }
+
+    private static ReindexStatus awaitFinished(ReindexJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        ReindexStatus status = job.getStatus();
+        while ("running".equals(status.getState()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = job.getStatus();
+        }
+        return status;
+    }
+
+    @Test
+    void testHandleIsReleasedOnlyAfterLastRequest() throws IOException {
+        Path catalog = tempDir.resolve("products.json");
+        writeCatalog(catalog, product(1, "Desk lamp", "Bright lamp"));
+        EngineHandle handle = new SearchEngineBuilder(catalog.toString(), 1, false, 0).build();
+
+        assertTrue(handle.tryAcquire());
+        assertTrue(handle.tryAcquire());
+        assertEquals(2, handle.getInFlight());
+
+        handle.retire();
+        assertFalse(handle.isReleased(), "Requests in flight keep the engine alive");
+        assertEquals(List.of(1), ids(handle, "lamp"));
+
+        handle.close();
+        assertFalse(handle.isReleased());
+        handle.close();
+        assertTrue(handle.isReleased());
+        assertFalse(handle.tryAcquire(), "Released engine cannot be acquired again");
+        assertThrows(IllegalStateException.class, handle::getEngine);
+    }
+
+    @Test
+    void testReindexSwapsEngineAndReleasesPrevious() throws Exception {
+        Path catalog = tempDir.resolve("products.json");
+        writeCatalog(catalog, product(1, "Desk lamp", "Bright lamp"));
+        EngineHandle initial = new SearchEngineBuilder(catalog.toString(), 1, false, 0).build();
+        AtomicReference<EngineHandle> current = new AtomicReference<>(initial);
+
+        // Запрос, начатый на старом движке, продолжает работать после замены
+        assertTrue(initial.tryAcquire());
+
+        writeCatalog(catalog, product(1, "Desk lamp", "Bright lamp"), product(2, "Floor lamp", "Tall lamp"));
+        try (ReindexJob job = new ReindexJob(current, () -> new SearchEngineBuilder(catalog.toString(), 2, false, 0))) {
+            ReindexStatus started = job.start();
+            assertEquals("running", started.getState());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (current.get() == initial && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            EngineHandle next = current.get();
+            assertNotSame(initial, next);
+            assertEquals(List.of(1, 2), ids(next, "lamp"));
+            assertEquals(List.of(1), ids(initial, "lamp"), "In-flight request still sees the old engine");
+            assertThrows(IllegalStateException.class, job::start, "Only one reindex at a time");
+
+            initial.close();
+            ReindexStatus status = awaitFinished(job);
+            assertEquals("done", status.getState(), String.valueOf(status.getError()));
+            assertTrue(status.isPreviousReleased());
+            assertEquals(1, status.getInFlightAtSwap());
+            assertEquals(2, status.getProductsLoaded());
+            assertTrue(status.getPeakHeapBytes() > 0);
+            assertTrue(initial.isReleased());
+            assertFalse(next.isReleased());
+        }
+    }
+
+    @Test
+    void testFailedReindexKeepsCurrentEngine() throws Exception {
+        Path catalog = tempDir.resolve("products.json");
+        writeCatalog(catalog, product(1, "Desk lamp", "Bright lamp"));
+        EngineHandle initial = new SearchEngineBuilder(catalog.toString(), 1, false, 0).build();
+        AtomicReference<EngineHandle> current = new AtomicReference<>(initial);
+
+        Path missing = tempDir.resolve("missing.json");
+        try (ReindexJob job = new ReindexJob(current, () -> new SearchEngineBuilder(missing.toString(), 1, false, 0))) {
+            job.start();
+            ReindexStatus status = awaitFinished(job);
+            assertEquals("failed", status.getState());
+            assertNotNull(status.getError());
+        }
+        assertSame(initial, current.get());
+        assertFalse(initial.isReleased());
+        assertEquals(List.of(1), ids(initial, "lamp"));
+    }
+}
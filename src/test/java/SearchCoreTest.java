@@ -1,4 +1,5 @@
 import index.InvertedIndex;
+import index.SuffixArrayIndex;
 import index.Trie;
 import model.Product;
 import service.DataManager;
@@ -16,11 +17,13 @@ import static org.junit.jupiter.api.Assertions.*;
 public class SearchCoreTest {
     private SearchCore searchCore;
     private DataManager dataManager;
+    private InvertedIndex invertedIndex;
+    private Trie trie;
 
     @BeforeEach
     public void setUp() {
-        InvertedIndex invertedIndex = new InvertedIndex();
-        Trie trie = new Trie();
+        invertedIndex = new InvertedIndex();
+        trie = new Trie();
         dataManager = new DataManager();
         Indexer indexer = new Indexer(invertedIndex, trie);
 
@@ -57,6 +60,33 @@ public class SearchCoreTest {
         assertTrue(results.isEmpty());
     }
 
+    @Test
+    public void testMultiPhraseSearch() {
+        List<Product> results = searchCore.searchPhrases(List.of("apple", "great camera"));
+        assertEquals(1, results.size());
+        assertEquals("iPhone 14", results.get(0).getName());
+
+        results = searchCore.searchPhrases(List.of("smartphone", "apple laptop"));
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void testPhraseSearchWithSuffixArray() {
+        SuffixArrayIndex substringIndex = new SuffixArrayIndex(dataManager.getAllProducts().values());
+        SearchCore indexedCore = new SearchCore(invertedIndex, trie, dataManager, substringIndex);
+
+        List<Product> results = indexedCore.searchPhrase("Great Camera");
+        assertEquals(1, results.size());
+        assertEquals("iPhone 14", results.get(0).getName());
+
+        results = indexedCore.searchPhrase("m2 proc");
+        assertEquals(1, results.size());
+        assertEquals("MacBook Pro", results.get(0).getName());
+
+        // Категория не участвует во фразовом поиске
+        assertTrue(indexedCore.searchPhrase("computers").isEmpty());
+    }
+
     @Test
     public void testFuzzySearch() {
         // Тест с точным совпадением
@@ -1,12 +1,26 @@
 import index.InvertedIndex;
 import index.Trie;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
 import model.Product;
+import model.SearchCursor;
+import model.SearchRequest;
+import model.SearchResponse;
 import model.SearchResult;
 import service.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -158,4 +172,570 @@ public class SmartSearchEngineTest {
                       "Should classify as high relevance or exact match");
         }
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testHighlightedText() {
+        List<SearchResult> results = smartSearchEngine.smartSearch("\"noise cancellation\" wireless");
+
+        SearchResult airPods = results.stream()
+            .filter(r -> r.getProduct().getId() == 5)
+            .findFirst()
+            .orElseThrow();
+        assertEquals("Apple <em>wireless</em> earbuds with <em>noise cancellation</em>",
+                     airPods.getHighlightedText());
+    }
+
+    @Test
+    void testHighlightFragment() {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            description.append("filler text ");
+        }
+        description.append("with a <sturdy> tripod mount");
+        for (int i = 0; i < 40; i++) {
+            description.append(" more filler");
+        }
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        DataManager catalog = new DataManager();
+        catalog.addProduct(new Product(50, "Camera Rig", description.toString(), "Photo"));
+        new Indexer(invertedIndex, trie).indexProducts(catalog.getAllProducts().values());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, catalog);
+
+        SearchResult rig = engine.smartSearch("tripod").stream()
+            .filter(r -> r.getProduct().getId() == 50)
+            .findFirst()
+            .orElseThrow();
+        String snippet = rig.getHighlightedText();
+        assertTrue(snippet.startsWith("...") && snippet.endsWith("..."), "Long fields should be cut to a fragment: " + snippet);
+        assertTrue(snippet.contains("&lt;sturdy&gt; <em>tripod</em> mount"), snippet);
+        assertTrue(snippet.length() < 200, "Fragment should stay close to the configured size");
+
+        // Слово внутри другого слова не подсвечивается: совпадения ищутся по токенам
+        SearchResult airPods = smartSearchEngine.smartSearch("ear").stream()
+            .filter(r -> r.getProduct().getId() == 5)
+            .findFirst()
+            .orElse(null);
+        if (airPods != null) {
+            assertFalse(airPods.getHighlightedText().contains("<em>ear</em>"));
+        }
+    }
+
+    @Test
+    void testParsedQueryCache() {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        invertedIndex.addDocument("apple wireless earbuds", 1);
+        QueryAnalyzer analyzer = new QueryAnalyzer(invertedIndex, dataManager.getTermDictionary(), false);
+
+        assertSame(analyzer.analyzeQuery("apple earbuds"), analyzer.analyzeQuery("apple earbuds"),
+            "Repeated queries should be served from the cache");
+        assertNotSame(analyzer.analyzeQuery("apple earbuds"), analyzer.analyzeQuery("Apple earbuds"));
+
+        // После изменения индекса план строится заново по новой статистике
+        Object before = analyzer.analyzeQuery("apple earbuds");
+        invertedIndex.addDocument("apple earbuds case", 2);
+        Object after = analyzer.analyzeQuery("apple earbuds");
+        assertNotSame(before, after);
+        assertSame(after, analyzer.analyzeQuery("apple earbuds"));
+    }
+
+    @Test
+    void testExtractPhrasesMatchesRegex() {
+        java.util.regex.Pattern quoted = java.util.regex.Pattern.compile("\"([^\"]+)\"");
+        String[] samples = {
+            "\"noise cancellation\" wireless",
+            "\"a\" \"b c\"",
+            "\"\"x\"",
+            "\"unterminated",
+            "\" \" \"apple\"",
+            "no quotes"
+        };
+        QueryAnalyzer analyzer = new QueryAnalyzer();
+        for (String sample : samples) {
+            List<String> expected = new ArrayList<>();
+            java.util.regex.Matcher matcher = quoted.matcher(sample);
+            while (matcher.find()) {
+                String phrase = matcher.group(1).trim().toLowerCase();
+                if (!phrase.isEmpty()) {
+                    expected.add(phrase);
+                }
+            }
+            assertEquals(expected, analyzer.extractPhrases(sample), "Mismatch for: " + sample);
+            Object intent = analyzer.analyzeQuery(sample);
+            assertTrue(intent.toString().contains("exactPhrase=" + quoted.matcher(sample).find()));
+        }
+    }
+
+    @Test
+    void testSearchResponseWithinDeadline() {
+        SearchResponse response = smartSearchEngine.search("Apple", 10_000);
+
+        assertFalse(response.isPartial(), "All strategies should finish within a generous deadline");
+        assertEquals(smartSearchEngine.smartSearch("Apple").size(), response.getResults().size());
+    }
+
+    @Test
+    void testExpiredDeadlineReturnsPartialResponse() {
+        // Большой каталог с уникальными словами, чтобы нечеткий поиск не успел завершиться
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        DataManager largeCatalog = new DataManager();
+        Random random = new Random(1);
+        for (int id = 1; id <= 3000; id++) {
+            StringBuilder description = new StringBuilder();
+            for (int word = 0; word < 20; word++) {
+                for (int c = 0; c < 8; c++) {
+                    description.append((char) ('a' + random.nextInt(26)));
+                }
+                description.append(' ');
+            }
+            largeCatalog.addProduct(new Product(id, "Product " + id, description.toString(), "Misc"));
+        }
+        new Indexer(invertedIndex, trie).indexProducts(largeCatalog.getAllProducts().values());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, largeCatalog);
+
+        SearchResponse response = engine.search("Prodcut", 0);
+        assertTrue(response.isPartial(), "Strategies that miss the deadline should mark the response partial");
+    }
+
+    @Test
+    void testPlanSkipsFuzzySearchForKnownTerms() {
+        SearchPlan plan = smartSearchEngine.getSearchAnalytics("Apple laptop").getSearchPlan();
+
+        assertFalse(plan.getPrimary().contains(SearchPlan.Strategy.FUZZY),
+                    "Terms present in the index should not trigger fuzzy search");
+        assertTrue(plan.getPrimary().contains(SearchPlan.Strategy.KEYWORD));
+    }
+
+    @Test
+    void testPlanUsesFuzzySearchForUnknownTerms() {
+        SearchPlan plan = smartSearchEngine.getSearchAnalytics("Smasung phone").getSearchPlan();
+
+        assertTrue(plan.getPrimary().contains(SearchPlan.Strategy.FUZZY));
+        assertTrue(plan.getFuzzyTerms().contains("smasung"), "Out-of-vocabulary term should be fuzzed");
+    }
+
+    @Test
+    void testOutOfVocabularyTypoIsFuzzedInPrimaryTier() {
+        // "flagshp" отсутствует в словаре: нечеткий поиск выполняется сразу, без эскалации
+        SearchPlan plan = smartSearchEngine.getSearchAnalytics("flagshp").getSearchPlan();
+        assertTrue(plan.getFuzzyTerms().contains("flagshp"));
+        List<SearchResult> results = smartSearchEngine.smartSearch("flagshp");
+
+        assertTrue(results.stream().anyMatch(r -> r.getProduct().getName().contains("Samsung")));
+    }
+
+    @Test
+    void testEscalationFuzzesRareInVocabularyTerms() {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        DataManager catalog = new DataManager();
+        catalog.addProduct(new Product(1, "Wireless earbuds", "Bluetooth earbuds", "Audio"));
+        catalog.addProduct(new Product(2, "Wireless headphones", "Over-ear headphones", "Audio"));
+        catalog.addProduct(new Product(3, "Wireless charger", "Fast charging pad", "Accessories"));
+        // Опечатка в каталоге: "wirelss" есть в словаре, но только у одного продукта
+        catalog.addProduct(new Product(4, "Wirelss speaker", "Portable speaker", "Audio"));
+        new Indexer(invertedIndex, trie).indexProducts(catalog.getAllProducts().values());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, catalog);
+
+        SearchExplanation explanation = engine.explain("wirelss", 20, null);
+        SearchProfile profile = explanation.getProfile();
+        SearchPlan plan = engine.getSearchAnalytics("wirelss").getSearchPlan();
+
+        assertFalse(plan.getPrimary().contains(SearchPlan.Strategy.FUZZY), "Term is in the vocabulary");
+        assertEquals(List.of("wirelss"), plan.getEscalationFuzzyTerms(), "Rare term is fuzzed only on escalation");
+        assertTrue(profile.isEscalated(), "One keyword match is below the escalation threshold");
+        assertTrue(profile.getStages().stream().anyMatch(stage -> stage.getName().equals("escalation")));
+        List<Integer> ids = explanation.getResponse().getResults().stream()
+                .map(r -> r.getProduct().getId()).sorted().collect(Collectors.toList());
+        assertEquals(List.of(1, 2, 3, 4), ids, "Escalated fuzzy search finds the correctly spelled products");
+    }
+
+    @Test
+    void testReusedScoreBuffersDoNotLeakBetweenQueries() {
+        List<SearchResult> first = smartSearchEngine.smartSearch("Apple");
+        smartSearchEngine.smartSearch("Samsung camera");
+        List<SearchResult> second = smartSearchEngine.smartSearch("Apple");
+
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getProduct().getId(), second.get(i).getProduct().getId());
+            assertEquals(first.get(i).getRelevanceScore(), second.get(i).getRelevanceScore(), 1e-9);
+        }
+        for (int i = 1; i < second.size(); i++) {
+            assertTrue(second.get(i - 1).getRelevanceScore() >= second.get(i).getRelevanceScore(),
+                       "Results should be sorted by relevance");
+        }
+    }
+
+    @Test
+    void testReaddedProductKeepsDocId() {
+        int docId = dataManager.getDocId(3);
+        dataManager.addProduct(new Product(3, "MacBook Air", "Apple laptop MacBook Air", "Computers"));
+
+        assertEquals(docId, dataManager.getDocId(3));
+        assertEquals(5, dataManager.getDocumentCount());
+        assertEquals("MacBook Air", dataManager.getProductByDocId(docId).getName());
+        assertEquals(-1, dataManager.getDocId(42));
+    }
+
+    @Test
+    void testCursorPaginationWalksAllResultsInOrder() {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        DataManager catalog = new DataManager();
+        for (int id = 1; id <= 120; id++) {
+            String extra = id % 3 == 0 ? " waterproof" : "";
+            catalog.addProduct(new Product(id, "Widget " + id, "Sturdy widget" + extra, "Tools"));
+        }
+        new Indexer(invertedIndex, trie).indexProducts(catalog.getAllProducts().values());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, catalog);
+
+        List<SearchResult> paged = new ArrayList<>();
+        SearchCursor cursor = null;
+        int pages = 0;
+        do {
+            SearchResponse page = engine.search("widget", 7, cursor, 10_000);
+            assertTrue(page.getResults().size() <= 7);
+            paged.addAll(page.getResults());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(120, paged.size(), "Every matching product should appear exactly once");
+        assertEquals(120, new HashSet<>(paged.stream().map(r -> r.getProduct().getId()).toList()).size());
+        assertEquals(18, pages);
+        for (int i = 1; i < paged.size(); i++) {
+            assertTrue(paged.get(i - 1).getRelevanceScore() >= paged.get(i).getRelevanceScore());
+        }
+
+        List<SearchResult> firstPage = engine.search("widget", 50, null, 10_000).getResults();
+        for (int i = 0; i < firstPage.size(); i++) {
+            assertEquals(firstPage.get(i).getProduct().getId(), paged.get(i).getProduct().getId());
+        }
+    }
+
+    @Test
+    void testCursorEncodingRoundTrip() {
+        SearchCursor cursor = new SearchCursor(3.141592653589793, 42);
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+
+        assertEquals(cursor.getScore(), decoded.getScore());
+        assertEquals(42, decoded.getDocId());
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("not-a-cursor"));
+        assertThrows(IllegalArgumentException.class, () -> smartSearchEngine.search("Apple", 0, null));
+    }
+
+    @Test
+    void testBatchSearchMatchesIndividualQueries() {
+        List<SearchRequest> batch = List.of(
+                new SearchRequest("Apple", 2, null),
+                new SearchRequest("Samsung", null, null),
+                new SearchRequest("Apple", 2, null));
+
+        List<SearchResponse> responses = smartSearchEngine.searchBatch(batch);
+
+        assertEquals(3, responses.size(), "One response per query, in request order");
+        SearchResponse single = smartSearchEngine.search("Apple", 2, null);
+        assertEquals(single.getResults().size(), responses.get(0).getResults().size());
+        assertEquals(single.getNextCursor().encode(), responses.get(0).getNextCursor().encode());
+        assertSame(responses.get(0), responses.get(2), "Duplicate queries should be executed once");
+        assertTrue(responses.get(1).getResults().get(0).getProduct().getName().contains("Samsung"));
+    }
+
+    @Test
+    void testBatchSearchRejectsInvalidQueries() {
+        assertThrows(IllegalArgumentException.class, () -> smartSearchEngine.searchBatch(
+                List.of(new SearchRequest("Apple", null, null), new SearchRequest("Apple", 500, null))));
+        assertThrows(IllegalArgumentException.class, () -> smartSearchEngine.searchBatch(
+                List.of(new SearchRequest("Apple", null, "garbage"))));
+
+        // null в JSON-массиве запросов
+        List<SearchRequest> withNull = new ArrayList<>();
+        withNull.add(new SearchRequest("Apple", null, null));
+        withNull.add(null);
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> smartSearchEngine.searchBatch(withNull));
+        assertEquals("Query 1: must be an object", error.getMessage());
+    }
+
+    @Test
+    void testBatchQueryWithUnknownFieldIsRejected() {
+        ObjectMapper mapper = new ObjectMapper();
+        UnrecognizedPropertyException error = assertThrows(UnrecognizedPropertyException.class,
+                () -> mapper.readValue("[{\"q\": \"apple\"}, {\"query\": \"apple\"}]",
+                        new TypeReference<List<SearchRequest>>() {}));
+        assertEquals("query", error.getPropertyName());
+        assertEquals(1, error.getPath().get(0).getIndex());
+    }
+
+    @Test
+    void testStreamingSearchDeliversSamePage() throws Exception {
+        SearchResponse collected = smartSearchEngine.search("Apple", 3, null);
+        List<String> events = new ArrayList<>();
+
+        smartSearchEngine.search("Apple", 3, null, new SearchResultSink() {
+            @Override
+            public void start(boolean partial, SearchCursor nextCursor) {
+                events.add("start:" + (nextCursor != null));
+            }
+
+            @Override
+            public void accept(SearchResult result) {
+                events.add(result.getProduct().getName());
+            }
+        });
+
+        assertEquals("start:" + (collected.getNextCursor() != null), events.get(0),
+                     "Page metadata should arrive before the first result");
+        assertEquals(collected.getResults().size() + 1, events.size());
+        for (int i = 0; i < collected.getResults().size(); i++) {
+            assertEquals(collected.getResults().get(i).getProduct().getName(), events.get(i + 1));
+        }
+    }
+
+    @Test
+    void testStreamingWritesEachResultBeforeMaterializingTheNext() {
+        List<SearchResult> page = smartSearchEngine.search("Apple", 3, null).getResults();
+        assertEquals(3, page.size());
+        int lastId = page.get(2).getProduct().getId();
+        List<Integer> streamed = new ArrayList<>();
+
+        // Получатель меняет каталог посреди выдачи: блокировка каталога при этом не удерживается,
+        // а еще не материализованный результат отражает изменение
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> smartSearchEngine.search("Apple", 3, null,
+                new SearchResultSink() {
+                    @Override
+                    public void start(boolean partial, SearchCursor nextCursor) {
+                    }
+
+                    @Override
+                    public void accept(SearchResult result) {
+                        if (streamed.isEmpty()) {
+                            smartSearchEngine.applyChanges(List.of(), List.of(lastId));
+                        }
+                        streamed.add(result.getProduct().getId());
+                    }
+                }));
+
+        assertEquals(List.of(page.get(0).getProduct().getId(), page.get(1).getProduct().getId()), streamed,
+                "Product deleted before its turn is skipped");
+    }
+
+    @Test
+    void testStreamingAllowsLargerPages() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> smartSearchEngine.search("Apple", 500, null));
+        List<SearchResult> streamed = new ArrayList<>();
+        smartSearchEngine.search("Apple", 500, null, new SearchResultSink() {
+            @Override
+            public void start(boolean partial, SearchCursor nextCursor) {
+                assertNull(nextCursor);
+            }
+
+            @Override
+            public void accept(SearchResult result) {
+                streamed.add(result);
+            }
+        });
+        assertFalse(streamed.isEmpty());
+    }
+
+    @Test
+    void testExplainRecordsExecutionProfile() {
+        SearchExplanation explanation = smartSearchEngine.explain("Smasung camera", 5, null);
+        SearchProfile profile = explanation.getProfile();
+
+        assertEquals(smartSearchEngine.search("Smasung camera", 5, null).getResults().size(),
+                     explanation.getResponse().getResults().size());
+        assertTrue(profile.getStages().stream().anyMatch(stage -> stage.getName().equals("fuzzy")));
+        assertTrue(profile.getStages().stream().anyMatch(stage -> stage.getName().equals("materialize")));
+        assertTrue(profile.getLevenshteinCalls() > 0, "Fuzzy search should report distance computations");
+        assertTrue(profile.getPostingsRead() > 0, "Keyword search should report postings read");
+        assertTrue(profile.getTotalNanos() > 0);
+        assertTrue(profile.getScoredDocuments() >= explanation.getResponse().getResults().size());
+    }
+
+    @Test
+    void testSearchAnalyticsUsesProfileCounts() {
+        SearchAnalytics analytics = smartSearchEngine.getSearchAnalytics("Apple");
+
+        assertNotNull(analytics.getProfile());
+        assertEquals(analytics.getProfile().getCandidates("keyword"), analytics.getKeywordMatches());
+        assertEquals(4, analytics.getKeywordMatches(), "Four products mention Apple");
+        assertTrue(analytics.getPerformanceReport().contains("Timings"));
+    }
+
+    @Test
+    void testFacetsCoverAllMatchesNotJustPage() {
+        SearchRequest request = new SearchRequest("Apple", 1, null);
+        request.setFacets(true);
+
+        SearchResponse response = smartSearchEngine.search(request);
+
+        assertEquals(1, response.getResults().size());
+        assertNotNull(response.getFacets());
+        int total = response.getFacets().getCategories().values().stream().mapToInt(Integer::intValue).sum();
+        assertEquals(4, total, "Facets should count every product mentioning Apple");
+        assertEquals(4, response.getFacets().getPriceRanges().values().stream().mapToInt(Integer::intValue).sum());
+        assertNull(smartSearchEngine.search("Apple", 1, null).getFacets(), "Facets are computed only on request");
+    }
+
+    @Test
+    void testPriceFilterAndSort() {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        DataManager catalog = new DataManager();
+        for (int id = 1; id <= 60; id++) {
+            catalog.addProduct(new Product(id, "Lamp " + id, "Desk lamp", "Lighting", (id * 37) % 200, null));
+        }
+        new Indexer(invertedIndex, trie).indexProducts(catalog.getAllProducts().values());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, catalog);
+
+        SearchRequest request = new SearchRequest("lamp", 100, null);
+        request.setMinPrice(50.0);
+        request.setMaxPrice(120.0);
+        List<SearchResult> filtered = engine.search(request).getResults();
+        assertFalse(filtered.isEmpty());
+        assertTrue(filtered.stream().allMatch(r -> r.getProduct().getPrice() >= 50 && r.getProduct().getPrice() <= 120));
+        long expected = catalog.getAllProducts().values().stream()
+                .filter(p -> p.getPrice() >= 50 && p.getPrice() <= 120).count();
+        assertEquals(expected, filtered.size());
+
+        // Постраничная выдача по убыванию цены
+        List<Double> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchRequest page = new SearchRequest("lamp", 7, cursor);
+            page.setSort("price_desc");
+            SearchResponse response = engine.search(page);
+            response.getResults().forEach(r -> walked.add(r.getProduct().getPrice()));
+            cursor = response.getNextCursor() != null ? response.getNextCursor().encode() : null;
+        } while (cursor != null);
+        assertEquals(60, walked.size());
+        for (int i = 1; i < walked.size(); i++) {
+            assertTrue(walked.get(i - 1) >= walked.get(i), "Results should be sorted by price descending");
+        }
+
+        SearchRequest invalid = new SearchRequest("lamp", 10, null);
+        invalid.setSort("popularity");
+        assertThrows(IllegalArgumentException.class, () -> engine.search(invalid));
+    }
+
+    @Test
+    void testFieldProjectionSerializesOnlySelectedFields() throws Exception {
+        SearchRequest request = new SearchRequest("Apple", 10, null);
+        request.setFields("id,name,relevanceScore");
+        SearchResponse projected = smartSearchEngine.search(request);
+        SearchResponse full = smartSearchEngine.search("Apple", 10, null);
+
+        assertEquals(full.getResults().size(), projected.getResults().size());
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < full.getResults().size(); i++) {
+            SearchResult result = projected.getResults().get(i);
+            assertNull(result.getProduct(), "Projected results should not materialize products");
+            JsonNode json = mapper.readTree(mapper.writeValueAsString(result));
+            assertEquals(json, mapper.readTree(mapper.writeValueAsBytes(result)), "Byte output copies UTF-8 from columns");
+            Product expected = full.getResults().get(i).getProduct();
+            assertEquals(expected.getId(), json.get("product").get("id").asInt());
+            assertEquals(expected.getName(), json.get("product").get("name").asText());
+            assertFalse(json.get("product").has("description"));
+            assertFalse(json.has("highlightedText"));
+            assertEquals(full.getResults().get(i).getRelevanceScore(), json.get("relevanceScore").asDouble(), 1e-9);
+        }
+
+        SearchRequest invalid = new SearchRequest("Apple", 10, null);
+        invalid.setFields("id,password");
+        assertThrows(IllegalArgumentException.class, () -> smartSearchEngine.search(invalid));
+    }
+
+    @Test
+    void testProjectedFieldsAreConsistentDuringConcurrentUpdates() throws Exception {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        DataManager catalog = new DataManager();
+        for (int id = 1; id <= 50; id++) {
+            catalog.addProduct(new Product(id, "Lamp " + id, "Desk lamp", "Lighting", id, null));
+        }
+        new Indexer(invertedIndex, trie).indexProducts(catalog.getAllProducts().values());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, catalog);
+
+        // Каждая перезапись удлиняет названия и заставляет колонку переразмещать массив байт
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> writerError = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int round = 1; !stop.get(); round++) {
+                    List<Product> upserts = new ArrayList<>();
+                    for (int id = 1; id <= 50; id++) {
+                        upserts.add(new Product(id, "Lamp " + id + " " + "x".repeat(round % 64), "Desk lamp", "Lighting", id, null));
+                    }
+                    engine.applyChanges(upserts, List.of());
+                }
+            } catch (Throwable e) {
+                writerError.set(e);
+            }
+        });
+        writer.start();
+        try {
+            ObjectMapper mapper = new ObjectMapper();
+            for (int i = 0; i < 300; i++) {
+                SearchRequest request = new SearchRequest("lamp", 50, null);
+                request.setFields("id,name");
+                for (SearchResult result : engine.search(request).getResults()) {
+                    JsonNode product = mapper.readTree(mapper.writeValueAsBytes(result)).get("product");
+                    String name = product.get("name").asText();
+                    assertTrue(name.matches("Lamp " + product.get("id").asInt() + "( x*)?"),
+                            "Projected name must be a whole value written for this product: " + name);
+                }
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+        assertNull(writerError.get());
+    }
+
+    @Test
+    void testBatchSeesOneCatalogSnapshotDuringUpdates() throws Exception {
+        InvertedIndex invertedIndex = new InvertedIndex();
+        Trie trie = new Trie();
+        DataManager catalog = new DataManager();
+        for (int id = 1; id <= 20; id++) {
+            catalog.addProduct(new Product(id, "Lamp " + id, "Desk lamp", "Lighting", id, null));
+        }
+        new Indexer(invertedIndex, trie).indexProducts(catalog.getAllProducts().values());
+        SmartSearchEngine engine = new SmartSearchEngine(invertedIndex, trie, catalog);
+
+        // Писатель то удаляет, то возвращает половину ламп и постоянно ждет блокировку записи
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            List<Product> half = new ArrayList<>();
+            List<Integer> halfIds = new ArrayList<>();
+            for (int id = 11; id <= 20; id++) {
+                half.add(new Product(id, "Lamp " + id, "Desk lamp", "Lighting", id, null));
+                halfIds.add(id);
+            }
+            for (int round = 0; !stop.get(); round++) {
+                engine.applyChanges(round % 2 == 0 ? List.of() : half, round % 2 == 0 ? halfIds : List.of());
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 100; i++) {
+                List<SearchRequest> batch = new ArrayList<>();
+                for (int limit = 40; limit < 48; limit++) {
+                    batch.add(new SearchRequest("lamp", limit, null));
+                }
+                List<SearchResponse> responses = engine.searchBatch(batch);
+                int expected = responses.get(0).getResults().size();
+                assertTrue(expected == 10 || expected == 20);
+                for (SearchResponse response : responses) {
+                    assertEquals(expected, response.getResults().size(), "All queries of a batch see one catalog state");
+                }
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+    }
+}
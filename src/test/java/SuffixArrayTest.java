@@ -0,0 +1,82 @@
+import algorithm.SuffixArray;
+import index.SuffixArrayIndex;
+import model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты для суффиксного массива и подстрочного индекса
+
+public class SuffixArrayTest {
+
+    @Test
+    public void testBanana() {
+        char[] text = "banana".toCharArray();
+        int[] sa = SuffixArray.build(text);
+        assertArrayEquals(new int[]{5, 3, 1, 0, 4, 2}, sa);
+
+        int[] lcp = SuffixArray.buildLcp(text, sa);
+        assertArrayEquals(new int[]{0, 1, 3, 0, 0, 2}, lcp);
+    }
+
+    @Test
+    public void testMatchesNaiveSortOnRandomStrings() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 200; iteration++) {
+            int length = 1 + random.nextInt(300);
+            int alphabet = 1 + random.nextInt(4);
+            char[] text = new char[length];
+            for (int i = 0; i < length; i++) {
+                text[i] = (char) ('a' + random.nextInt(alphabet));
+            }
+
+            String s = new String(text);
+            Integer[] expected = new Integer[length];
+            for (int i = 0; i < length; i++) {
+                expected[i] = i;
+            }
+            Arrays.sort(expected, (a, b) -> s.substring(a).compareTo(s.substring(b)));
+
+            int[] sa = SuffixArray.build(text);
+            for (int i = 0; i < length; i++) {
+                assertEquals(expected[i].intValue(), sa[i], "Mismatch for " + s);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyText() {
+        assertEquals(0, SuffixArray.build(new char[0]).length);
+    }
+
+    @Test
+    public void testIndexFindsSubstringsByField() {
+        List<Product> products = List.of(
+                new Product(1, "iPhone 14", "Apple smartphone with great camera", "Electronics"),
+                new Product(2, "Samsung Galaxy", "Android smartphone SM-S911B", "Electronics"),
+                new Product(3, "MacBook Pro", "Apple laptop", "Computers"));
+        SuffixArrayIndex index = new SuffixArrayIndex(products);
+
+        Map<Integer, Integer> matches = index.findFieldMatches("PHONE");
+        assertEquals(2, matches.size());
+        assertEquals(SuffixArrayIndex.FIELD_NAME | SuffixArrayIndex.FIELD_DESCRIPTION, matches.get(1));
+        assertEquals(SuffixArrayIndex.FIELD_DESCRIPTION, matches.get(2));
+
+        Set<Integer> skuMatches = index.findProducts("s911", SuffixArrayIndex.FIELD_DESCRIPTION);
+        assertEquals(Set.of(2), skuMatches);
+
+        assertEquals(Set.of(1, 2), index.findProducts("electro", SuffixArrayIndex.FIELD_CATEGORY));
+        assertTrue(index.findProducts("electro", SuffixArrayIndex.FIELD_NAME).isEmpty());
+
+        // Совпадение не должно пересекать границу полей
+        assertTrue(index.findFieldMatches("14apple").isEmpty());
+        assertTrue(index.findFieldMatches("nonexistent").isEmpty());
+        assertTrue(index.getMemoryFootprintBytes() > 0);
+    }
+}
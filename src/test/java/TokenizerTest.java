@@ -0,0 +1,54 @@
+import index.TermDictionary;
+import index.Tokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты для токенизатора и словаря терминов
+
+public class TokenizerTest {
+
+    @Test
+    public void testMatchesRegexSplit() {
+        String[] samples = {
+                "apple iphone smartphone",
+                "\"noise cancellation\"",
+                "  leading and trailing  ",
+                "SM-S911B, 128GB_ram!",
+                "",
+                "!!!"
+        };
+        for (String sample : samples) {
+            String[] expected = Arrays.stream(sample.split("\\W+"))
+                    .filter(word -> !word.isEmpty())
+                    .toArray(String[]::new);
+            assertArrayEquals(expected, Tokenizer.tokenize(sample), "Mismatch for: " + sample);
+        }
+    }
+
+    @Test
+    public void testTokenOffsets() {
+        String text = "  SM-S911B, 128GB_ram!";
+        int[] offsets = Tokenizer.tokenOffsets(text);
+        String[] tokens = Tokenizer.tokenize(text);
+        assertEquals(tokens.length * 2, offsets.length);
+        for (int i = 0; i < tokens.length; i++) {
+            assertEquals(tokens[i], text.substring(offsets[2 * i], offsets[2 * i + 1]));
+        }
+        assertEquals(0, Tokenizer.tokenOffsets("!!!").length);
+    }
+
+    @Test
+    public void testTermDictionaryOrdinals() {
+        TermDictionary dictionary = new TermDictionary();
+        assertEquals(0, dictionary.getOrAdd("apple"));
+        assertEquals(1, dictionary.getOrAdd("iphone"));
+        assertEquals(0, dictionary.getOrAdd("apple"));
+
+        assertEquals(2, dictionary.size());
+        assertEquals("iphone", dictionary.getTerm(1));
+        assertEquals(-1, dictionary.getOrdinal("samsung"));
+    }
+}
@@ -0,0 +1,151 @@
+import algorithm.BoyerMoore;
+import algorithm.SubstringMatcher;
+import algorithm.VectorizedSearch;
+import model.Product;
+import service.ProductLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Бенчмарк: скалярный BoyerMoore.Pattern против векторизованного поиска по описаниям из products.json.
+// Запуск (Vector API нужно подключить к JVM Maven):
+// MAVEN_OPTS="--add-modules jdk.incubator.vector" mvn test-compile exec:java \
+//     -Dexec.classpathScope=test -Dexec.mainClass=VectorizedSearchBenchmark
+
+public class VectorizedSearchBenchmark {
+    private static final String[] PATTERNS = {"mascara", "long-lasting", "smartphone", "stainless steel", "zzzz"};
+    private static final int WARMUP_ROUNDS = 500;
+    private static final int MEASURED_ROUNDS = 2000;
+
+    public static void main(String[] args) {
+        System.out.println("Platform: " + System.getProperty("os.name") + " / " + System.getProperty("os.arch")
+                + ", Java " + System.getProperty("java.version")
+                + ", CPUs: " + Runtime.getRuntime().availableProcessors());
+
+        List<Product> products = ProductLoader.loadProductsFromJson("products.json");
+        String[] lowerTexts = new String[products.size()];
+        byte[][] utf8Texts = new byte[products.size()][];
+        long bytes = 0;
+        for (int i = 0; i < products.size(); i++) {
+            String description = products.get(i).getDescription();
+            lowerTexts[i] = description.toLowerCase();
+            utf8Texts[i] = description.getBytes(StandardCharsets.UTF_8);
+            bytes += utf8Texts[i].length;
+        }
+        double megabytesPerRound = (double) bytes * PATTERNS.length / (1024 * 1024);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runScalar(lowerTexts);
+        }
+        long start = System.nanoTime();
+        long scalarHits = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            scalarHits += runScalar(lowerTexts);
+        }
+        report("Scalar BoyerMoore.Pattern", megabytesPerRound, System.nanoTime() - start);
+
+        if (!SubstringMatcher.isVectorModuleAvailable()) {
+            System.out.println("jdk.incubator.vector is not available: run with --add-modules jdk.incubator.vector");
+            return;
+        }
+        System.out.println("Vector lanes (bytes): " + VectorizedSearch.getLaneCount());
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runVectorized(utf8Texts);
+        }
+        start = System.nanoTime();
+        long vectorHits = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            vectorHits += runVectorized(utf8Texts);
+        }
+        report("SIMD indexOfIgnoreCaseAscii", megabytesPerRound, System.nanoTime() - start);
+
+        if (scalarHits != vectorHits) {
+            throw new IllegalStateException("Hit counts differ: " + scalarHits + " vs " + vectorHits);
+        }
+
+        // Сравнение без учета регистра: каждое описание с его копией в верхнем регистре
+        byte[][] upperTexts = new byte[utf8Texts.length][];
+        for (int i = 0; i < utf8Texts.length; i++) {
+            upperTexts[i] = products.get(i).getDescription().toUpperCase().getBytes(StandardCharsets.UTF_8);
+        }
+        double compareMegabytes = (double) bytes / (1024 * 1024);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runScalarCompare(utf8Texts, upperTexts);
+            runVectorizedCompare(utf8Texts, upperTexts);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            runScalarCompare(utf8Texts, upperTexts);
+        }
+        report("Scalar equalsIgnoreCaseAscii", compareMegabytes, System.nanoTime() - start);
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            runVectorizedCompare(utf8Texts, upperTexts);
+        }
+        report("SIMD equalsIgnoreCaseAscii", compareMegabytes, System.nanoTime() - start);
+    }
+
+    private static void report(String name, double megabytesPerRound, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%-30s %10.1f MB/s%n", name, megabytesPerRound * MEASURED_ROUNDS / seconds);
+    }
+
+    private static int runScalar(String[] texts) {
+        int hits = 0;
+        for (String pattern : PATTERNS) {
+            BoyerMoore.Pattern compiled = BoyerMoore.compile(pattern);
+            for (String text : texts) {
+                if (compiled.indexOf(text) >= 0) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static int runVectorized(byte[][] texts) {
+        int hits = 0;
+        for (String pattern : PATTERNS) {
+            byte[] compiled = pattern.getBytes(StandardCharsets.US_ASCII);
+            for (byte[] text : texts) {
+                if (VectorizedSearch.indexOfIgnoreCaseAscii(text, compiled) >= 0) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static int runScalarCompare(byte[][] left, byte[][] right) {
+        int equal = 0;
+        for (int i = 0; i < left.length; i++) {
+            byte[] a = left[i];
+            byte[] b = right[i];
+            int length = Math.min(a.length, b.length);
+            boolean same = true;
+            for (int j = 0; j < length && same; j++) {
+                same = toLowerAscii(a[j]) == toLowerAscii(b[j]);
+            }
+            if (same) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+    private static int runVectorizedCompare(byte[][] left, byte[][] right) {
+        int equal = 0;
+        for (int i = 0; i < left.length; i++) {
+            int length = Math.min(left[i].length, right[i].length);
+            if (VectorizedSearch.equalsIgnoreCaseAscii(left[i], 0, right[i], 0, length)) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+    private static byte toLowerAscii(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b | 0x20) : b;
+    }
+}
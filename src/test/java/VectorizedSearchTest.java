@@ -0,0 +1,105 @@
+import algorithm.SubstringMatcher;
+import algorithm.Utf8Slice;
+import algorithm.VectorizedSearch;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты для векторизованного поиска (surefire запускает тесты с --add-modules jdk.incubator.vector)
+
+public class VectorizedSearchTest {
+
+    @Test
+    public void testIndexOfIgnoreCase() {
+        byte[] text = bytes("The Essence Mascara Lash Princess is a popular MASCARA known for volumizing effects.");
+        assertEquals(12, VectorizedSearch.indexOfIgnoreCaseAscii(text, bytes("mascara")));
+        assertEquals(4, VectorizedSearch.indexOfIgnoreCaseAscii(text, bytes("ESSENCE")));
+        assertEquals(-1, VectorizedSearch.indexOfIgnoreCaseAscii(text, bytes("lipstick")));
+        assertEquals(0, VectorizedSearch.indexOfIgnoreCaseAscii(text, new byte[0]));
+        assertEquals(-1, VectorizedSearch.indexOfIgnoreCaseAscii(bytes("short"), bytes("much longer pattern")));
+    }
+
+    @Test
+    public void testAsciiPatternInUtf8Text() {
+        byte[] text = bytes("Смартфон Galaxy SM-S911B с камерой");
+        int offset = VectorizedSearch.indexOfIgnoreCaseAscii(text, bytes("sm-s911b"));
+        assertEquals("Смартфон Galaxy ".getBytes(StandardCharsets.UTF_8).length, offset);
+    }
+
+    @Test
+    public void testIndexOfIgnoreCaseInRange() {
+        byte[] text = bytes("camera | phone camera | lens");
+        assertEquals(6, VectorizedSearch.indexOfIgnoreCaseAscii(text, 9, 12, bytes("camera")),
+                "Position is counted from the start of the range");
+        assertEquals(-1, VectorizedSearch.indexOfIgnoreCaseAscii(text, 9, 12, bytes("lens")),
+                "Bytes after the range are not searched");
+        assertEquals(-1, VectorizedSearch.indexOfIgnoreCaseAscii(text, 2, 10, bytes("camera")));
+    }
+
+    @Test
+    public void testEqualsIgnoreCaseAscii() {
+        byte[] a = bytes("Wireless Earbuds With Noise Cancellation And Long Battery Life");
+        byte[] b = bytes("wireless earbuds with noise cancellation and long battery life");
+        assertTrue(VectorizedSearch.equalsIgnoreCaseAscii(a, 0, b, 0, a.length));
+        assertFalse(VectorizedSearch.equalsIgnoreCaseAscii(a, 0, b, 1, a.length - 1));
+        // '@' и '[' соседствуют с A-Z, но не являются буквами
+        assertFalse(VectorizedSearch.equalsIgnoreCaseAscii(bytes("@["), 0, bytes("`{"), 0, 2));
+    }
+
+    @Test
+    public void testMatchesScalarSearchOnRandomText() {
+        Random random = new Random(3);
+        for (int iteration = 0; iteration < 300; iteration++) {
+            String text = randomString(random, random.nextInt(200));
+            String pattern = randomString(random, 1 + random.nextInt(6));
+            int expected = text.toLowerCase().indexOf(pattern.toLowerCase());
+            assertEquals(expected, VectorizedSearch.indexOfIgnoreCaseAscii(bytes(text), bytes(pattern)),
+                    text + " / " + pattern);
+        }
+    }
+
+    @Test
+    public void testSubstringMatcherFallsBackToScalar() {
+        // Без -Dsearch.simd=true используется скалярный Бойер-Мур
+        assertFalse(SubstringMatcher.isVectorized());
+        SubstringMatcher matcher = SubstringMatcher.compile("Great Camera");
+        assertTrue(matcher.containedIn(Utf8Slice.of("smartphone with great camera")));
+        assertFalse(matcher.containedIn(Utf8Slice.of("smartphone")));
+    }
+
+    @Test
+    public void testVectorizedAndScalarPathsAgreeOnNonAsciiText() {
+        String[] fields = {"Смартфон Galaxy SM-S911B", "КАМЕРА с подсветкой", "Термометр 300 \u212A", "\u0130zmir towel",
+                "Wireless Earbuds", null};
+        String[] patterns = {"galaxy", "камера", "k", "i", "earbuds", "sm-s911", "подсвет", "смартфон galaxy"};
+        for (String field : fields) {
+            String lower = field != null ? field.toLowerCase() : "";
+            // Поле в нижнем регистре посреди общего массива, как в колонке DataManager
+            byte[] arena = bytes("prefix " + lower + " suffix");
+            Utf8Slice text = new Utf8Slice(arena, bytes("prefix ").length, bytes(lower).length);
+            for (String pattern : patterns) {
+                boolean expected = lower.contains(pattern);
+                assertEquals(expected, SubstringMatcher.compile(pattern, false).containedIn(text),
+                        "scalar: " + field + " / " + pattern);
+                assertEquals(expected, SubstringMatcher.compile(pattern, true).containedIn(text),
+                        "vectorized: " + field + " / " + pattern);
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String randomString(Random random, int length) {
+        String alphabet = "abAB c";
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
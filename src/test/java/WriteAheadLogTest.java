@@ -0,0 +1,256 @@
+import model.BulkOperation;
+import model.BulkResult;
+import model.Product;
+import model.SearchResult;
+import service.BulkIngestor;
+import service.EngineHandle;
+import service.ProductLoader;
+import service.ReindexJob;
+import service.SearchEngineBuilder;
+import service.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты журнала изменений: формат записей, оборванный хвост, контрольные точки и восстановление движка
+
+public class WriteAheadLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Product product(int id, String name) {
+        return new Product(id, name, name + " описание", "misc", id * 1.5, id % 2 == 0 ? "img" + id : null);
+    }
+
+    // Итоговое состояние каталога после записей журнала: id -> имя (null — удален)
+    private static Map<Integer, String> replayAll(WriteAheadLog wal, long afterLsn) throws IOException {
+        Map<Integer, String> state = new TreeMap<>();
+        wal.replay(afterLsn, (upserts, removed) -> {
+            removed.forEach(id -> state.put(id, null));
+            upserts.forEach(p -> state.put(p.getId(), p.getName()));
+        });
+        return state;
+    }
+
+    private static List<Path> files(Path directory, String prefix) throws IOException {
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.filter(p -> p.getFileName().toString().startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void testRecordsSurviveReopen() throws IOException {
+        Path directory = tempDir.resolve("wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1 << 20)) {
+            assertEquals(1, wal.append(List.of(product(1, "Лампа"), product(2, "Chair")), List.of()));
+            assertEquals(2, wal.append(List.of(product(3, "Desk")), List.of(1)));
+            wal.sync();
+            assertEquals(1, wal.getSyncs());
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1 << 20)) {
+            assertEquals(2, wal.getLastLsn());
+            List<Product> replayed = new ArrayList<>();
+            List<Integer> removed = new ArrayList<>();
+            assertEquals(2, wal.replay(0, (u, r) -> {
+                replayed.addAll(u);
+                removed.addAll(r);
+            }));
+            assertEquals(List.of(1), removed);
+            Product lamp = replayed.get(0);
+            assertEquals("Лампа", lamp.getName());
+            assertEquals("Лампа описание", lamp.getDescription());
+            assertEquals(1.5, lamp.getPrice());
+            assertNull(lamp.getImage());
+            assertEquals("img2", replayed.get(1).getImage());
+            Map<Integer, String> tail = new TreeMap<>();
+            tail.put(1, null);
+            tail.put(3, "Desk");
+            assertEquals(tail, replayAll(wal, 1));
+        }
+    }
+
+    @Test
+    void testTornTailIsDiscarded() throws IOException {
+        Path directory = tempDir.resolve("wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1 << 20)) {
+            wal.append(List.of(product(1, "One")), List.of());
+            wal.append(List.of(product(2, "Two")), List.of());
+            wal.sync();
+        }
+        // Сбой посреди записи третьей: заголовок есть, данных не хватает
+        Path segment = files(directory, "wal-").get(0);
+        long intact = Files.size(segment);
+        Files.write(segment, new byte[] {0, 0, 0, 100, 1, 2, 3, 4, 0, 0, 0, 0, 0, 0, 0, 3, 42}, StandardOpenOption.APPEND);
+
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1 << 20)) {
+            assertEquals(intact, Files.size(segment));
+            assertEquals(2, wal.getLastLsn());
+            assertEquals(3, wal.append(List.of(product(3, "Three")), List.of()));
+            wal.sync();
+        }
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1 << 20)) {
+            assertEquals(Map.of(1, "One", 2, "Two", 3, "Three"), replayAll(wal, 0));
+        }
+    }
+
+    @Test
+    void testCorruptedLastRecordFailsChecksum() throws IOException {
+        Path directory = tempDir.resolve("wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1 << 20)) {
+            wal.append(List.of(product(1, "One")), List.of());
+            wal.append(List.of(product(2, "Two")), List.of());
+            wal.sync();
+        }
+        Path segment = files(directory, "wal-").get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[bytes.length - 3] ^= 0x55;
+        Files.write(segment, bytes);
+
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1 << 20)) {
+            assertEquals(1, wal.getLastLsn());
+            assertEquals(Map.of(1, "One"), replayAll(wal, 0));
+        }
+    }
+
+    @Test
+    void testCheckpointTruncatesLog() throws Exception {
+        Path directory = tempDir.resolve("wal");
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1)) {
+            wal.append(List.of(product(1, "One"), product(2, "Two")), List.of());
+            wal.append(List.of(), List.of(2));
+            wal.sync();
+            List<Product> snapshot = List.of(product(1, "One"));
+            wal.checkpointIfDue(() -> snapshot).get();
+            assertEquals(2, wal.getCheckpointLsn());
+
+            wal.append(List.of(product(4, "Four")), List.of());
+            wal.sync();
+        }
+        assertEquals(1, files(directory, "checkpoint-").size());
+        assertEquals(1, files(directory, "wal-").size(), "Segments covered by the checkpoint are deleted");
+
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1)) {
+            assertEquals(2, wal.getCheckpointLsn());
+            assertEquals(3, wal.getLastLsn());
+            List<Product> checkpointed = new ArrayList<>();
+            ProductLoader.streamProducts(wal.getCheckpoint(), checkpointed::add);
+            assertEquals(List.of(1), checkpointed.stream().map(Product::getId).collect(Collectors.toList()));
+            assertEquals("One", checkpointed.get(0).getName(), "Checkpoint is written in the catalog format");
+            assertEquals(Map.of(4, "Four"), replayAll(wal, wal.getCheckpointLsn()));
+            assertThrows(IOException.class, () -> replayAll(wal, 0), "Records before the checkpoint are gone");
+        }
+    }
+
+    @Test
+    void testEngineRecoversFromCheckpointAndLogTail() throws Exception {
+        Path catalog = tempDir.resolve("products.json");
+        Files.writeString(catalog, "{\"products\": ["
+                + "{\"id\": 1, \"title\": \"Desk lamp\", \"description\": \"Bright lamp\", \"category\": \"lighting\", \"price\": 20},"
+                + "{\"id\": 2, \"title\": \"Office chair\", \"description\": \"Ergonomic chair\", \"category\": \"furniture\", \"price\": 150}"
+                + "]}");
+        Path directory = tempDir.resolve("wal");
+
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1L << 20)) {
+            EngineHandle handle = new SearchEngineBuilder(catalog.toString(), 1, false, 0, wal).build();
+            try (BulkIngestor ingestor = new BulkIngestor(() -> acquire(handle), 10, 5, 100, wal)) {
+                ingestor.start();
+                assertEquals(BulkResult.CREATED, ingestor.submit(1, BulkOperation.add(
+                        new Product(3, "Floor lamp", "Tall lamp", "lighting", 60, null)), 0).join().getStatus());
+                assertEquals(BulkResult.DELETED, ingestor.submit(2, BulkOperation.delete(2), 0).join().getStatus());
+                wal.checkpoint(() -> handle.getDataManager().getAllProducts().values()).get();
+                assertEquals(BulkResult.UPDATED, ingestor.submit(3, BulkOperation.update(
+                        new Product(1, "Desk lamp", "Dimmable lamp", "lighting", 25, null)), 0).join().getStatus());
+                assertEquals(BulkResult.CREATED, ingestor.submit(4, BulkOperation.add(
+                        new Product(5, "Wall sconce", "Brass lamp", "decor", 80, null)), 0).join().getStatus());
+            }
+        }
+
+        // Перезапуск: снимок с лампами 1 и 3, затем хвост журнала с изменением лампы 1 и новым продуктом 5
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1L << 20)) {
+            SearchEngineBuilder builder = new SearchEngineBuilder(catalog.toString(), 1, false, 0, wal);
+            EngineHandle recovered = builder.build();
+            assertEquals(wal.getLastLsn(), builder.getRecoveredLsn());
+            assertEquals(3, recovered.getDataManager().getProductCount());
+            assertEquals(3, recovered.getDataManager().getDocumentCount(), "Replay leaves no deleted documents");
+            assertEquals(List.of(1, 3, 5), recovered.getEngine().search("lamp").getResults().stream()
+                    .map(SearchResult::getProduct).map(Product::getId).sorted().collect(Collectors.toList()));
+            assertEquals(25.0, recovered.getDataManager().getProductById(1).getPrice());
+            assertNull(recovered.getDataManager().getProductById(2));
+        }
+    }
+
+    @Test
+    void testReindexCatchesUpAcrossCheckpointDuringBuild() throws Exception {
+        Path catalog = tempDir.resolve("products.json");
+        Files.writeString(catalog, "{\"products\": ["
+                + "{\"id\": 1, \"title\": \"Desk lamp\", \"description\": \"Bright lamp\", \"category\": \"lighting\", \"price\": 20}"
+                + "]}");
+        Path directory = tempDir.resolve("wal");
+
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, 1L << 20)) {
+            EngineHandle initial = new SearchEngineBuilder(catalog.toString(), 1, false, 0, wal).build();
+            AtomicReference<EngineHandle> current = new AtomicReference<>(initial);
+            wal.append(List.of(new Product(2, "Floor lamp", "Tall lamp", "lighting", 60, null)), List.of());
+            wal.sync();
+            initial.getEngine().applyChanges(List.of(new Product(2, "Floor lamp", "Tall lamp", "lighting", 60, null)), List.of());
+
+            // Пока новый движок строился, в журнал попал еще пакет, и контрольная точка покрыла все записи
+            Supplier<SearchEngineBuilder> builders = () -> new SearchEngineBuilder(catalog.toString(), 1, false, 0, wal) {
+                @Override
+                public EngineHandle build() throws IOException {
+                    EngineHandle built = super.build();
+                    Product sconce = new Product(3, "Wall sconce", "Brass lamp", "decor", 80, null);
+                    wal.append(List.of(sconce), List.of());
+                    wal.sync();
+                    initial.getEngine().applyChanges(List.of(sconce), List.of());
+                    try {
+                        wal.checkpoint(() -> initial.getDataManager().getAllProducts().values()).get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new IOException(e);
+                    }
+                    assertEquals(2, wal.getCheckpointLsn());
+                    return built;
+                }
+            };
+
+            try (ReindexJob job = new ReindexJob(current, builders, wal)) {
+                job.start();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                while ("running".equals(job.getStatus().getState()) && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals("done", job.getStatus().getState(), String.valueOf(job.getStatus().getError()));
+            }
+            EngineHandle next = current.get();
+            assertNotSame(initial, next);
+            assertEquals(List.of(1, 2, 3), next.getEngine().search("lamp").getResults().stream()
+                    .map(SearchResult::getProduct).map(Product::getId).sorted().collect(Collectors.toList()),
+                    "Records covered by the checkpoint during the build are caught up from retained segments");
+            assertEquals(1, files(directory, "checkpoint-").size());
+            assertEquals(1, files(directory, "wal-").size(), "Covered segments are deleted once the reindex is done");
+        }
+    }
+
+    private static EngineHandle acquire(EngineHandle handle) {
+        assertTrue(handle.tryAcquire());
+        return handle;
+    }
+}
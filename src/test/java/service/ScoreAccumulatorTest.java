@@ -0,0 +1,81 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Тесты сложения оценок параллельных стратегий (в пакете service: накопитель не публичный)
+
+public class ScoreAccumulatorTest {
+    private static final int DOCUMENTS = 10;
+    // (0.1 + 0.2) + 0.3 и (0.3 + 0.2) + 0.1 различаются в последнем бите
+    private static final double[] STRATEGY_SCORES = {0.1, 0.2, 0.3};
+
+    // Стратегии завершаются в порядке completion, слоты открыты в порядке плана
+    private static ScoreAccumulator accumulate(int... completion) {
+        ScoreAccumulator accumulator = new ScoreAccumulator(new DocScores());
+        int[] slots = new int[STRATEGY_SCORES.length];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = accumulator.open();
+        }
+        for (int strategy : completion) {
+            // Буфер рабочего потока переиспользуется следующей стратегией
+            DocScores partial = DocScores.partials(DOCUMENTS);
+            for (int doc = 0; doc < DOCUMENTS; doc++) {
+                partial.add(doc, STRATEGY_SCORES[strategy]);
+            }
+            assertTrue(accumulator.merge(slots[strategy], partial));
+        }
+        accumulator.fold();
+        return accumulator;
+    }
+
+    @Test
+    void testScoresDoNotDependOnCompletionOrder() {
+        DocScores forward = accumulate(0, 1, 2).seal();
+        DocScores backward = accumulate(2, 1, 0).seal();
+        for (int doc = 0; doc < DOCUMENTS; doc++) {
+            assertEquals(Double.doubleToLongBits(forward.get(doc)), Double.doubleToLongBits(backward.get(doc)));
+        }
+    }
+
+    @Test
+    void testPagesAcrossCompletionOrdersNeitherOverlapNorSkip() {
+        int[][] orders = {{0, 1, 2}, {2, 1, 0}, {1, 2, 0}};
+        List<Integer> walked = new ArrayList<>();
+        double afterScore = Double.POSITIVE_INFINITY;
+        int afterDoc = -1;
+        // Каждая страница — новый запрос со своим порядком завершения стратегий
+        for (int page = 0; page < 4; page++) {
+            DocScores scores = accumulate(orders[page % orders.length]).seal();
+            int[] top = new int[3];
+            int count = scores.topKAfter(top.length, top, afterScore, afterDoc);
+            for (int i = 0; i < count; i++) {
+                walked.add(top[i]);
+            }
+            if (count > 0) {
+                afterDoc = top[count - 1];
+                afterScore = scores.get(afterDoc);
+            }
+        }
+        Set<Integer> distinct = new HashSet<>(walked);
+        assertEquals(walked.size(), distinct.size(), "Pages overlap: " + walked);
+        assertEquals(DOCUMENTS, distinct.size(), "Pages skip results: " + walked);
+    }
+
+    @Test
+    void testLateStrategyIsDiscardedAfterFold() {
+        ScoreAccumulator accumulator = new ScoreAccumulator(new DocScores());
+        int slot = accumulator.open();
+        accumulator.fold();
+        DocScores partial = DocScores.partials(DOCUMENTS);
+        partial.add(1, 1.0);
+        assertFalse(accumulator.merge(slot, partial), "Strategy cancelled at the deadline must not change the total");
+        assertEquals(0, accumulator.size());
+    }
+}